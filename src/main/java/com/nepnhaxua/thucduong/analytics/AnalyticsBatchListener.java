@@ -0,0 +1,14 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+
+import java.util.List;
+
+/**
+ * Receives every batch after it has been stored, on the analytics writer thread.
+ * Implementations must be fast; they delay the next insert.
+ */
+public interface AnalyticsBatchListener {
+
+    void onBatch(List<AnalyticsEvent> events);
+}
@@ -0,0 +1,214 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import com.nepnhaxua.thucduong.service.ProductCounterService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fire-and-forget ingestion of analytics events. Request threads only enqueue into a bounded
+ * lock-free queue (dropping and counting when it is full); a dedicated writer thread drains it
+ * and stores events with one insertMany per batch, flushing when a batch is full or has lingered.
+ * Batch listeners (rollups, bestsellers, recommendations) see every batch, stored or not, and
+ * purchases are never dropped, so those aggregates do not depend on the raw event store.
+ */
+@Slf4j
+@Component
+public class AnalyticsPipeline {
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerNanos;
+
+    private final Queue<AnalyticsEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final List<AnalyticsBatchListener> listeners;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public AnalyticsPipeline(MongoTemplate mongoTemplate,
+                             ObjectProvider<MeterRegistry> meterRegistry,
+                             ObjectProvider<AnalyticsBatchListener> listeners,
+                             @Value("${app.analytics.queue-capacity:100000}") int capacity,
+                             @Value("${app.analytics.batch-size:500}") int batchSize,
+                             @Value("${app.analytics.linger:1000}") long lingerMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.listeners = listeners.orderedStream().toList();
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (meterRegistry != null) {
+            Gauge.builder("analytics.queue.size", size, AtomicInteger::get).register(meterRegistry);
+            FunctionCounter.builder("analytics.events.dropped", dropped, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("analytics.events.written", written, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("analytics.events.failed", failed, LongAdder::sum).register(meterRegistry);
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "analytics-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Enqueue an event without blocking; returns false (and counts a drop) when the queue is full.
+     * Purchases are taken regardless: they are few and feed the bestseller leaderboard.
+     */
+    public boolean record(AnalyticsEvent event) {
+        if (size.incrementAndGet() > capacity && !AnalyticsEvent.PURCHASE.equals(event.getType())) {
+            size.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        if (event.getTimestamp() == null) {
+            event.setTimestamp(LocalDateTime.now());
+        }
+        queue.offer(event);
+        // Wake the writer early once a full batch is waiting
+        if (size.get() == batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    public boolean record(String type, String userId, String sessionId, Map<String, Object> data) {
+        return record(AnalyticsEvent.builder()
+                .type(type)
+                .userId(userId)
+                .sessionId(sessionId)
+                .data(data)
+                .build());
+    }
+
+    public void trackProductView(String productId, String userId, String sessionId) {
+        record(AnalyticsEvent.PRODUCT_VIEW, userId, sessionId, Map.of("productId", productId));
+    }
+
+    public void trackProductView(String productId, HttpServletRequest request) {
+        trackProductView(productId, userId(request), ProductCounterService.visitorId(request));
+    }
+
+    public void trackSearch(String query, long resultCount, String userId, String sessionId) {
+        record(AnalyticsEvent.SEARCH, userId, sessionId, Map.of("query", query, "resultCount", resultCount));
+    }
+
+    public void trackSearch(String query, long resultCount, HttpServletRequest request) {
+        trackSearch(query, resultCount, userId(request), ProductCounterService.visitorId(request));
+    }
+
+    public void trackPurchase(String productId, String category, int quantity, String userId, String sessionId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("productId", productId);
+        data.put("quantity", quantity);
+        if (category != null) {
+            data.put("category", category);
+        }
+        record(AnalyticsEvent.PURCHASE, userId, sessionId, data);
+    }
+
+    public void trackHealthMapInteraction(String bodyPart, String action, String userId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("bodyPart", bodyPart);
+        data.put("action", action);
+        record(AnalyticsEvent.HEALTH_MAP_INTERACTION, userId, null, data);
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueueSize() {
+        return size.get();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private static String userId(HttpServletRequest request) {
+        return request.getUserPrincipal() != null ? request.getUserPrincipal().getName() : null;
+    }
+
+    private void writeLoop() {
+        List<AnalyticsEvent> batch = new ArrayList<>(batchSize);
+        long batchStarted = 0;
+        while (running || size.get() > 0) {
+            AnalyticsEvent event = queue.poll();
+            if (event != null) {
+                size.decrementAndGet();
+                if (batch.isEmpty()) {
+                    batchStarted = System.nanoTime();
+                }
+                batch.add(event);
+                if (batch.size() >= batchSize) {
+                    write(batch);
+                }
+                continue;
+            }
+            if (!batch.isEmpty() && (!running || System.nanoTime() - batchStarted >= lingerNanos)) {
+                write(batch);
+                continue;
+            }
+            // Idle: sleep until the linger deadline or until a producer fills a batch
+            long wait = batch.isEmpty() ? lingerNanos : lingerNanos - (System.nanoTime() - batchStarted);
+            LockSupport.parkNanos(this, Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<AnalyticsEvent> batch) {
+        List<AnalyticsEvent> events = new ArrayList<>(batch);
+        batch.clear();
+        try {
+            mongoTemplate.insert(events, AnalyticsEvent.class);
+            written.add(events.size());
+        } catch (Exception e) {
+            // Raw events are best effort: count and move on rather than back up the queue
+            failed.add(events.size());
+            log.warn("Could not write {} analytics events", events.size(), e);
+        }
+        for (AnalyticsBatchListener listener : listeners) {
+            try {
+                listener.onBatch(events);
+            } catch (Exception e) {
+                log.warn("Analytics batch listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import com.nepnhaxua.thucduong.entity.AnalyticsRollup;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.service.ScheduledJobLock;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Keeps minute / hour / day rollups of the raw analytics events, per event type and per
+ * product, body part and overall. Buckets are fed either straight from the ingest pipeline
+ * ({@code source: stream}) or by a resumable cursor over {@code analytics.timestamp}
+ * ({@code source: cursor}), which also backfills from whatever raw events are still retained.
+ */
+@Slf4j
+@Service
+public class AnalyticsRollupService implements AnalyticsBatchListener {
+
+    private static final String CHECKPOINT_COLLECTION = "analytics_rollup_state";
+    private static final String CHECKPOINT_ID = "cursor";
+
+    // Below the hourly cron period, above any clock skew between nodes
+    private static final Duration CONVERSION_LOCK_PERIOD = Duration.ofMinutes(50);
+
+    private final MongoTemplate mongoTemplate;
+    private final ScheduledJobLock jobLock;
+    private final boolean cursorSource;
+    private final int cursorPageSize;
+    private final long cursorLagMillis;
+    private final Duration cursorInterval;
+    private final int minuteRetentionDays;
+    private final int hourRetentionDays;
+    private final int conversionWindowDays;
+
+    public AnalyticsRollupService(MongoTemplate mongoTemplate,
+                                  ScheduledJobLock jobLock,
+                                  @Value("${app.analytics.rollup.source:stream}") String source,
+                                  @Value("${app.analytics.rollup.cursor-page-size:5000}") int cursorPageSize,
+                                  @Value("${app.analytics.rollup.cursor-lag:60000}") long cursorLagMillis,
+                                  @Value("${app.analytics.rollup.cursor-interval:60000}") long cursorIntervalMillis,
+                                  @Value("${app.analytics.rollup.minute-retention-days:7}") int minuteRetentionDays,
+                                  @Value("${app.analytics.rollup.hour-retention-days:180}") int hourRetentionDays,
+                                  @Value("${app.analytics.rollup.conversion-window-days:30}") int conversionWindowDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobLock = jobLock;
+        this.cursorSource = "cursor".equalsIgnoreCase(source);
+        this.cursorPageSize = cursorPageSize;
+        this.cursorLagMillis = cursorLagMillis;
+        this.cursorInterval = Duration.ofMillis(cursorIntervalMillis);
+        this.minuteRetentionDays = minuteRetentionDays;
+        this.hourRetentionDays = hourRetentionDays;
+        this.conversionWindowDays = conversionWindowDays;
+    }
+
+    @Override
+    public void onBatch(List<AnalyticsEvent> events) {
+        if (!cursorSource) {
+            apply(events);
+        }
+    }
+
+    /**
+     * Add the events to their buckets with one unordered bulk upsert
+     */
+    public void apply(Collection<AnalyticsEvent> events) {
+        RollupAccumulator accumulator = new RollupAccumulator();
+        events.forEach(accumulator::add);
+        if (accumulator.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AnalyticsRollup.class);
+        for (RollupAccumulator.Delta delta : accumulator.deltas()) {
+            Update update = new Update()
+                    .inc("total", delta.getTotal())
+                    .setOnInsert("granularity", delta.getGranularity().name())
+                    .setOnInsert("dimension", delta.getDimension())
+                    .setOnInsert("key", delta.getKey())
+                    .setOnInsert("type", delta.getType())
+                    .setOnInsert("start", delta.getStart());
+            delta.getSlots().forEach((slot, count) -> update.inc("slots." + slot, count));
+            LocalDateTime expireAt = expireAt(delta.getGranularity(), delta.getStart());
+            if (expireAt != null) {
+                update.setOnInsert("expireAt", expireAt);
+            }
+            bulk.upsert(Query.query(Criteria.where("_id").is(delta.getId())), update);
+        }
+        bulk.execute();
+    }
+
+    /**
+     * Cursor mode: roll up events stored since the checkpoint, page by page. Events younger than
+     * the configured lag are left for the next run, since the writer inserts them with a delay
+     * and a later insert must not land behind the checkpoint. One node runs per interval, and each
+     * page is claimed by moving the shared checkpoint with a compare-and-set before it is applied,
+     * so a run that outlasts the interval and races another node never counts a page twice.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.rollup.cursor-interval:60000}")
+    public void catchUp() {
+        if (cursorSource) {
+            jobLock.runOncePer("rollup-cursor", cursorInterval, this::rollUpSinceCheckpoint);
+        }
+    }
+
+    synchronized void rollUpSinceCheckpoint() {
+        LocalDateTime horizon = LocalDateTime.now().minusNanos(cursorLagMillis * 1_000_000);
+        Document checkpoint = mongoTemplate.findById(CHECKPOINT_ID, Document.class, CHECKPOINT_COLLECTION);
+        LocalDateTime after = checkpoint != null ? toLocalDateTime(checkpoint.getDate("timestamp")) : null;
+        String afterId = checkpoint != null ? checkpoint.getString("lastId") : null;
+
+        long processed = 0;
+        while (true) {
+            Criteria criteria = Criteria.where("timestamp").lte(horizon);
+            if (after != null) {
+                criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                        Criteria.where("timestamp").gt(after),
+                        Criteria.where("timestamp").is(after).and("_id").gt(afterId)));
+            }
+            Query query = Query.query(criteria)
+                    .with(Sort.by(Sort.Direction.ASC, "timestamp", "_id"))
+                    .limit(cursorPageSize);
+            List<AnalyticsEvent> page = mongoTemplate.find(query, AnalyticsEvent.class);
+            if (page.isEmpty()) {
+                break;
+            }
+            AnalyticsEvent last = page.get(page.size() - 1);
+            // A crash between the claim and apply skips at most one page
+            if (!claim(after, afterId, last.getTimestamp(), last.getId())) {
+                log.warn("Analytics rollup checkpoint moved by another node, stopping this run");
+                break;
+            }
+            apply(page);
+            after = last.getTimestamp();
+            afterId = last.getId();
+            processed += page.size();
+            if (page.size() < cursorPageSize) {
+                break;
+            }
+        }
+        if (processed > 0) {
+            log.info("Rolled up {} analytics events up to {}", processed, after);
+        }
+    }
+
+    // Move the checkpoint from (after, afterId) to (to, toId) unless someone else moved it first
+    private boolean claim(LocalDateTime after, String afterId, LocalDateTime to, String toId) {
+        if (after == null) {
+            try {
+                mongoTemplate.insert(new Document("_id", CHECKPOINT_ID)
+                        .append("timestamp", toDate(to))
+                        .append("lastId", toId), CHECKPOINT_COLLECTION);
+                return true;
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+        }
+        Query current = Query.query(Criteria.where("_id").is(CHECKPOINT_ID)
+                .and("timestamp").is(toDate(after))
+                .and("lastId").is(afterId));
+        Update update = new Update().set("timestamp", toDate(to)).set("lastId", toId);
+        return mongoTemplate.updateFirst(current, update, CHECKPOINT_COLLECTION).getModifiedCount() > 0;
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Slot counts of one series between from (inclusive) and to (exclusive), oldest first;
+     * slots without events are absent
+     */
+    public SortedMap<LocalDateTime, Long> series(String dimension, String key, String type,
+                                                 RollupGranularity granularity,
+                                                 LocalDateTime from, LocalDateTime to) {
+        Query query = Query.query(Criteria.where("dimension").is(dimension)
+                .and("key").is(key)
+                .and("type").is(type)
+                .and("granularity").is(granularity.name())
+                .and("start").gte(granularity.bucketStart(from)).lt(to));
+        SortedMap<LocalDateTime, Long> series = new TreeMap<>();
+        for (AnalyticsRollup bucket : mongoTemplate.find(query, AnalyticsRollup.class)) {
+            bucket.getSlots().forEach((slot, count) -> {
+                LocalDateTime time = granularity.slotStart(bucket.getStart(), Integer.parseInt(slot));
+                if (!time.isBefore(from) && time.isBefore(to)) {
+                    series.put(time, count);
+                }
+            });
+        }
+        return series;
+    }
+
+    /**
+     * Recompute Product.analytics.conversionRate as purchases / views over the trailing window,
+     * summed from the day slots of the product rollups. Runs on one node per hour.
+     */
+    @Scheduled(cron = "${app.analytics.rollup.conversion-cron:0 10 * * * *}")
+    public void refreshConversionRates() {
+        jobLock.runOncePer("conversion-rates", CONVERSION_LOCK_PERIOD, this::writeConversionRates);
+    }
+
+    private void writeConversionRates() {
+        LocalDateTime from = LocalDateTime.now().toLocalDate().minusDays(conversionWindowDays).atStartOfDay();
+        Query query = Query.query(Criteria.where("granularity").is(RollupGranularity.DAY.name())
+                .and("type").in(AnalyticsEvent.PRODUCT_VIEW, AnalyticsEvent.PURCHASE)
+                .and("start").gte(RollupGranularity.DAY.bucketStart(from))
+                .and("dimension").is(AnalyticsRollup.DIMENSION_PRODUCT));
+
+        Map<String, long[]> totals = new HashMap<>(); // productId -> {views, purchases}
+        try (Stream<AnalyticsRollup> buckets = mongoTemplate.stream(query, AnalyticsRollup.class)) {
+            buckets.forEach(bucket -> {
+                long count = sumSince(bucket, from);
+                int index = AnalyticsEvent.PRODUCT_VIEW.equals(bucket.getType()) ? 0 : 1;
+                totals.computeIfAbsent(bucket.getKey(), k -> new long[2])[index] += count;
+            });
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        int updates = 0;
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            long views = entry.getValue()[0];
+            // No purchase data (yet) is not a rate of 0: keep what the product has
+            if (views == 0 || entry.getValue()[1] == 0) {
+                continue;
+            }
+            double rate = Math.min(1.0, (double) entry.getValue()[1] / views);
+            bulk.updateOne(Query.query(Criteria.where("_id").is(entry.getKey())),
+                    Update.update("analytics.conversionRate", rate).inc(Product.REVISION, 1));
+            updates++;
+        }
+        if (updates > 0) {
+            bulk.execute();
+            log.info("Refreshed conversion rates of {} products", updates);
+        }
+    }
+
+    private static long sumSince(AnalyticsRollup bucket, LocalDateTime from) {
+        long sum = 0;
+        for (Map.Entry<String, Long> slot : bucket.getSlots().entrySet()) {
+            LocalDateTime day = RollupGranularity.DAY.slotStart(bucket.getStart(), Integer.parseInt(slot.getKey()));
+            if (!day.isBefore(from)) {
+                sum += slot.getValue();
+            }
+        }
+        return sum;
+    }
+
+    private LocalDateTime expireAt(RollupGranularity granularity, LocalDateTime start) {
+        return switch (granularity) {
+            case MINUTE -> start.plusDays(minuteRetentionDays);
+            case HOUR -> start.plusDays(hourRetentionDays);
+            case DAY -> null;
+        };
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+}
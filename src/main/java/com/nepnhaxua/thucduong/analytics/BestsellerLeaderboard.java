@@ -0,0 +1,300 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import com.nepnhaxua.thucduong.service.ScheduledJobLock;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Bestseller rankings kept incrementally from purchase events instead of sorting the catalog.
+ * Purchases are added to Redis sorted sets: one per day (for the rolling 7 / 30 day windows) and
+ * one all-time, both globally and per main category. One node per tick recomputes the rolling
+ * windows; each node mirrors the top entries of every ranking in memory, so reads never leave the JVM.
+ */
+@Slf4j
+@Component
+public class BestsellerLeaderboard implements AnalyticsBatchListener {
+
+    private static final String PREFIX = "thucduong:bestsellers:";
+    private static final String CATEGORIES_KEY = PREFIX + "categories";
+    private static final String GLOBAL = "global";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final int SEED_BATCH_SIZE = 1000;
+    // Below the hourly flag cron period, above any clock skew between nodes
+    private static final Duration FLAG_LOCK_PERIOD = Duration.ofMinutes(50);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledJobLock jobLock;
+    private final Duration refreshInterval;
+    private final int topK;
+    private final int flagCount;
+    private final BestsellerWindow flagWindow;
+
+    private volatile Map<String, List<Ranked>> mirror = Map.of();
+
+    public BestsellerLeaderboard(StringRedisTemplate redisTemplate,
+                                 MongoTemplate mongoTemplate,
+                                 ApplicationEventPublisher eventPublisher,
+                                 ScheduledJobLock jobLock,
+                                 @Value("${app.bestsellers.refresh-interval:30000}") long refreshIntervalMillis,
+                                 @Value("${app.bestsellers.top-k:50}") int topK,
+                                 @Value("${app.bestsellers.flag-count:20}") int flagCount,
+                                 @Value("${app.bestsellers.flag-window:30d}") String flagWindow) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.jobLock = jobLock;
+        this.refreshInterval = Duration.ofMillis(refreshIntervalMillis);
+        this.topK = topK;
+        this.flagCount = flagCount;
+        this.flagWindow = BestsellerWindow.fromCode(flagWindow);
+    }
+
+    /**
+     * Top products of a window, globally (category null) or within one main category
+     */
+    public List<Ranked> top(BestsellerWindow window, String category, int limit) {
+        List<Ranked> ranking = mirror.getOrDefault(mirrorKey(window, category), List.of());
+        return ranking.size() <= limit ? ranking : ranking.subList(0, limit);
+    }
+
+    @Override
+    public void onBatch(List<AnalyticsEvent> events) {
+        List<AnalyticsEvent> purchases = events.stream()
+                .filter(e -> AnalyticsEvent.PURCHASE.equals(e.getType()) && e.getData() != null
+                        && e.getData().get("productId") != null)
+                .toList();
+        if (purchases.isEmpty()) {
+            return;
+        }
+        String today = LocalDate.now().format(DAY);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (AnalyticsEvent purchase : purchases) {
+                    byte[] member = bytes(purchase.getData().get("productId").toString());
+                    Object quantity = purchase.getData().get("quantity");
+                    double amount = quantity instanceof Number n ? n.doubleValue() : 1;
+                    Object category = purchase.getData().get("category");
+                    List<String> scopes = category != null ? List.of(GLOBAL, "cat:" + category) : List.of(GLOBAL);
+                    for (String scope : scopes) {
+                        byte[] dayKey = bytes(PREFIX + "d:" + today + ":" + scope);
+                        connection.zSetCommands().zIncrBy(dayKey, amount, member);
+                        // Day sets only feed the rolling windows
+                        connection.keyCommands().expire(dayKey, Duration.ofDays(BestsellerWindow.DAYS_30.getDays() + 2).toSeconds());
+                        connection.zSetCommands().zIncrBy(bytes(PREFIX + "all:" + scope), amount, member);
+                    }
+                    if (category != null) {
+                        connection.setCommands().sAdd(bytes(CATEGORIES_KEY), bytes(category.toString()));
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Could not add {} purchases to the bestseller leaderboard", purchases.size(), e);
+        }
+    }
+
+    /**
+     * First start against an empty Redis: seed the all-time rankings from Product.analytics.purchased
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedAndRefresh() {
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(PREFIX + "all:" + GLOBAL))) {
+                seedAllTime();
+            }
+        } catch (Exception e) {
+            log.warn("Could not seed bestseller leaderboard", e);
+        }
+        refresh();
+    }
+
+    /**
+     * Recompute the rolling windows from the day sets (one node per tick) and reload the in-memory mirror
+     */
+    @Scheduled(fixedDelayString = "${app.bestsellers.refresh-interval:30000}",
+            initialDelayString = "${app.bestsellers.refresh-interval:30000}")
+    public void refresh() {
+        try {
+            Set<String> categories = redisTemplate.opsForSet().members(CATEGORIES_KEY);
+            List<String> scopes = new ArrayList<>();
+            scopes.add(GLOBAL);
+            if (categories != null) {
+                categories.forEach(c -> scopes.add("cat:" + c));
+            }
+            // A window key missing here (first start, expired) is rebuilt on the next tick that takes the lock
+            jobLock.runOncePer("bestseller-windows", refreshInterval, () -> storeWindows(scopes));
+            Map<String, List<Ranked>> next = new HashMap<>();
+            for (String scope : scopes) {
+                String category = GLOBAL.equals(scope) ? null : scope.substring(4);
+                for (BestsellerWindow window : BestsellerWindow.values()) {
+                    next.put(mirrorKey(window, category), load(window, scope));
+                }
+            }
+            mirror = next;
+        } catch (Exception e) {
+            // Keep serving the previous mirror
+            log.warn("Could not refresh bestseller leaderboard", e);
+        }
+    }
+
+    /**
+     * Set flags.isBestseller on the current top products and clear it everywhere else
+     */
+    @Scheduled(cron = "${app.bestsellers.flag-cron:0 20 * * * *}")
+    public void refreshBestsellerFlags() {
+        jobLock.runOncePer("bestseller-flags", FLAG_LOCK_PERIOD, this::writeBestsellerFlags);
+    }
+
+    private void writeBestsellerFlags() {
+        List<Ranked> top = top(flagWindow, null, flagCount);
+        if (top.isEmpty()) {
+            // No purchase data (or Redis unavailable): leave the editorial flags alone
+            return;
+        }
+        Set<String> ids = new HashSet<>();
+        top.forEach(r -> ids.add(r.getProductId()));
+
+        Query flagged = Query.query(Criteria.where("flags.isBestseller").is(true));
+        flagged.fields().include("_id");
+        Set<String> current = new HashSet<>();
+        mongoTemplate.find(flagged, Product.class).forEach(p -> current.add(p.getId()));
+
+        Set<String> added = new HashSet<>(ids);
+        added.removeAll(current);
+        Set<String> removed = new HashSet<>(current);
+        removed.removeAll(ids);
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        if (!added.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(added)),
+                    Update.update("flags.isBestseller", true).inc(Product.REVISION, 1), Product.class);
+        }
+        if (!removed.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(removed)),
+                    Update.update("flags.isBestseller", false).inc(Product.REVISION, 1), Product.class);
+        }
+
+        // Bulk updates bypass the repository listeners, so announce the changed products ourselves
+        Set<String> changed = new HashSet<>(added);
+        changed.addAll(removed);
+        Query changedQuery = Query.query(Criteria.where("_id").in(changed));
+        changedQuery.fields().include("_id", "slug");
+        mongoTemplate.find(changedQuery, Product.class)
+                .forEach(p -> eventPublisher.publishEvent(new ProductChangedEvent(p.getId(), p.getSlug(), false)));
+        log.info("Bestseller flags updated: {} added, {} removed", added.size(), removed.size());
+    }
+
+    // ZUNIONSTORE the day sets of every rolling window into its window key
+    private void storeWindows(List<String> scopes) {
+        LocalDate today = LocalDate.now();
+        for (String scope : scopes) {
+            for (BestsellerWindow window : BestsellerWindow.values()) {
+                if (window == BestsellerWindow.ALL_TIME) {
+                    continue;
+                }
+                List<String> days = new ArrayList<>(window.getDays());
+                for (int i = 0; i < window.getDays(); i++) {
+                    days.add(PREFIX + "d:" + today.minusDays(i).format(DAY) + ":" + scope);
+                }
+                String key = windowKey(window, scope);
+                redisTemplate.opsForZSet().unionAndStore(days.get(0), days.subList(1, days.size()), key);
+                redisTemplate.expire(key, Duration.ofDays(1));
+            }
+        }
+    }
+
+    private List<Ranked> load(BestsellerWindow window, String scope) {
+        String key = windowKey(window, scope);
+        Set<ZSetOperations.TypedTuple<String>> tuples = redisTemplate.opsForZSet().reverseRangeWithScores(key, 0, topK - 1);
+        if (tuples == null) {
+            return List.of();
+        }
+        List<Ranked> ranking = new ArrayList<>(tuples.size());
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            ranking.add(new Ranked(tuple.getValue(), tuple.getScore() != null ? tuple.getScore() : 0));
+        }
+        return List.copyOf(ranking);
+    }
+
+    private void seedAllTime() {
+        Query query = Query.query(Criteria.where("analytics.purchased").gt(0));
+        query.fields().include("_id", "category.main", "analytics.purchased");
+        List<Product> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        int seeded = 0;
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            Iterator<Product> it = products.iterator();
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() == SEED_BATCH_SIZE || !it.hasNext()) {
+                    seedBatch(batch);
+                    seeded += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        log.info("Seeded bestseller leaderboard with {} products", seeded);
+    }
+
+    // One pipelined round trip per batch instead of a command per product
+    private void seedBatch(List<Product> products) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Product product : products) {
+                double purchased = product.getAnalytics().getPurchased();
+                byte[] member = bytes(product.getId());
+                connection.zSetCommands().zAdd(bytes(PREFIX + "all:" + GLOBAL), purchased, member);
+                if (product.getCategory() != null && product.getCategory().getMain() != null) {
+                    String category = product.getCategory().getMain();
+                    connection.zSetCommands().zAdd(bytes(PREFIX + "all:cat:" + category), purchased, member);
+                    connection.setCommands().sAdd(bytes(CATEGORIES_KEY), bytes(category));
+                }
+            }
+            return null;
+        });
+    }
+
+    private static String windowKey(BestsellerWindow window, String scope) {
+        return window == BestsellerWindow.ALL_TIME ? PREFIX + "all:" + scope : PREFIX + window.getCode() + ":" + scope;
+    }
+
+    private static String mirrorKey(BestsellerWindow window, String category) {
+        return window.getCode() + "|" + (category != null ? category : "");
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Ranked {
+        private final String productId;
+        private final double score;
+    }
+}
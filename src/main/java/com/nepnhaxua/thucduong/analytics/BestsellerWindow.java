@@ -0,0 +1,30 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import lombok.Getter;
+
+/**
+ * Ranking window of the bestseller leaderboard
+ */
+@Getter
+public enum BestsellerWindow {
+    DAYS_7("7d", 7),
+    DAYS_30("30d", 30),
+    ALL_TIME("all", 0);
+
+    private final String code;
+    private final int days; // 0 = unbounded
+
+    BestsellerWindow(String code, int days) {
+        this.code = code;
+        this.days = days;
+    }
+
+    public static BestsellerWindow fromCode(String code) {
+        for (BestsellerWindow window : values()) {
+            if (window.code.equalsIgnoreCase(code)) {
+                return window;
+            }
+        }
+        throw new IllegalArgumentException("Unknown bestseller window: " + code);
+    }
+}
@@ -0,0 +1,86 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import com.nepnhaxua.thucduong.entity.AnalyticsRollup;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Folds a batch of events into per-bucket count deltas, so a batch costs one upsert per
+ * touched bucket rather than one per event. Every event counts towards the "all" dimension,
+ * and towards the product and body part it refers to, at every granularity.
+ */
+public class RollupAccumulator {
+
+    private final Map<String, Delta> deltas = new LinkedHashMap<>();
+
+    public RollupAccumulator add(AnalyticsEvent event) {
+        if (event.getType() == null || event.getTimestamp() == null) {
+            return this;
+        }
+        add(AnalyticsRollup.DIMENSION_ALL, "*", event);
+        Map<String, Object> data = event.getData();
+        if (data != null) {
+            if (data.get("productId") != null) {
+                add(AnalyticsRollup.DIMENSION_PRODUCT, data.get("productId").toString(), event);
+            }
+            if (data.get("bodyPart") != null) {
+                add(AnalyticsRollup.DIMENSION_BODY_PART, data.get("bodyPart").toString(), event);
+            }
+        }
+        return this;
+    }
+
+    public Collection<Delta> deltas() {
+        return deltas.values();
+    }
+
+    public boolean isEmpty() {
+        return deltas.isEmpty();
+    }
+
+    private void add(String dimension, String key, AnalyticsEvent event) {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            LocalDateTime start = granularity.bucketStart(event.getTimestamp());
+            String id = bucketId(granularity, dimension, key, event.getType(), start);
+            deltas.computeIfAbsent(id, i -> new Delta(i, granularity, dimension, key, event.getType(), start))
+                    .increment(granularity.slot(event.getTimestamp()));
+        }
+    }
+
+    public static String bucketId(RollupGranularity granularity, String dimension, String key,
+                                  String type, LocalDateTime start) {
+        return granularity + "|" + dimension + "|" + key + "|" + type + "|" + start;
+    }
+
+    @Getter
+    public static class Delta {
+        private final String id;
+        private final RollupGranularity granularity;
+        private final String dimension;
+        private final String key;
+        private final String type;
+        private final LocalDateTime start;
+        private final Map<Integer, Long> slots = new TreeMap<>();
+        private long total;
+
+        Delta(String id, RollupGranularity granularity, String dimension, String key, String type, LocalDateTime start) {
+            this.id = id;
+            this.granularity = granularity;
+            this.dimension = dimension;
+            this.key = key;
+            this.type = type;
+            this.start = start;
+        }
+
+        private void increment(int slot) {
+            slots.merge(slot, 1L, Long::sum);
+            total++;
+        }
+    }
+}
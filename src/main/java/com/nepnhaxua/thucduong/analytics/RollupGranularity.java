@@ -0,0 +1,52 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Slot resolution of a rollup bucket. Each bucket document spans the next coarser unit,
+ * so minute slots live in hour buckets, hour slots in day buckets and day slots in month buckets.
+ */
+public enum RollupGranularity {
+    MINUTE,
+    HOUR,
+    DAY;
+
+    /**
+     * Start of the bucket document containing this instant
+     */
+    public LocalDateTime bucketStart(LocalDateTime time) {
+        return switch (this) {
+            case MINUTE -> time.truncatedTo(ChronoUnit.HOURS);
+            case HOUR -> time.truncatedTo(ChronoUnit.DAYS);
+            case DAY -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        };
+    }
+
+    public LocalDateTime nextBucket(LocalDateTime bucketStart) {
+        return switch (this) {
+            case MINUTE -> bucketStart.plusHours(1);
+            case HOUR -> bucketStart.plusDays(1);
+            case DAY -> bucketStart.plusMonths(1);
+        };
+    }
+
+    /**
+     * Slot of the instant inside its bucket
+     */
+    public int slot(LocalDateTime time) {
+        return switch (this) {
+            case MINUTE -> time.getMinute();
+            case HOUR -> time.getHour();
+            case DAY -> time.getDayOfMonth();
+        };
+    }
+
+    public LocalDateTime slotStart(LocalDateTime bucketStart, int slot) {
+        return switch (this) {
+            case MINUTE -> bucketStart.withMinute(slot);
+            case HOUR -> bucketStart.withHour(slot);
+            case DAY -> bucketStart.withDayOfMonth(slot);
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package com.nepnhaxua.thucduong.cache;
+
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts cached products when the underlying documents change. Body health map content is
+ * served from {@link com.nepnhaxua.thucduong.service.HealthMapSnapshotService} instead.
+ * Evictions go through {@link TwoLevelCache}, so other nodes drop their L1 copies as well and
+ * remote change events need no handling here.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityCacheEvictionListener {
+
+    public static final String PRODUCTS = "products";
+
+    private final CacheManager cacheManager;
+
+    @EventListener(condition = "!#event.remote")
+    public void onProductChanged(ProductChangedEvent event) {
+        Cache cache = cacheManager.getCache(PRODUCTS);
+        if (cache == null) {
+            return;
+        }
+        if (event.getSlug() != null) {
+            cache.evict(event.getSlug());
+        } else {
+            cache.clear();
+        }
+    }
+}
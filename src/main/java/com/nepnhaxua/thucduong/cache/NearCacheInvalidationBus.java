@@ -0,0 +1,77 @@
+package com.nepnhaxua.thucduong.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Redis pub/sub channel that keeps L1 near caches coherent across nodes.
+ * Message format: {@code nodeId|op|cacheName|key} where op is E (evict) or C (clear).
+ */
+@Slf4j
+public class NearCacheInvalidationBus implements MessageListener {
+
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final StringRedisTemplate redisTemplate;
+    private final ChannelTopic topic;
+
+    private BiConsumer<String, String> evictHandler = (cache, key) -> { };
+    private Consumer<String> clearHandler = cache -> { };
+
+    public NearCacheInvalidationBus(StringRedisTemplate redisTemplate, ChannelTopic topic) {
+        this.redisTemplate = redisTemplate;
+        this.topic = topic;
+    }
+
+    public ChannelTopic getTopic() {
+        return topic;
+    }
+
+    void onRemoteEvict(BiConsumer<String, String> handler) {
+        this.evictHandler = handler;
+    }
+
+    void onRemoteClear(Consumer<String> handler) {
+        this.clearHandler = handler;
+    }
+
+    public void publishEvict(String cacheName, String key) {
+        publish(EVICT, cacheName, key);
+    }
+
+    public void publishClear(String cacheName) {
+        publish(CLEAR, cacheName, "");
+    }
+
+    private void publish(String op, String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(topic.getTopic(), String.join("|", nodeId, op, cacheName, key));
+        } catch (Exception e) {
+            // Other nodes fall back to the L1 TTL if the broadcast is lost
+            log.warn("Could not publish near cache invalidation for {}:{}", cacheName, key, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 4);
+        if (parts.length < 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        if (CLEAR.equals(parts[1])) {
+            clearHandler.accept(parts[2]);
+        } else {
+            evictHandler.accept(parts[2], parts[3]);
+        }
+    }
+}
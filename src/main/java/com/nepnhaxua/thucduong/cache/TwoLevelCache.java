@@ -0,0 +1,158 @@
+package com.nepnhaxua.thucduong.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.Striped;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.cache.RedisCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Near cache: a bounded in-JVM Guava cache (L1) in front of the shared Redis cache (L2).
+ * Writes go to both tiers and broadcast an invalidation so other nodes drop their L1 copy.
+ * Cached values are shared references, callers must not mutate them.
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private static final int LOADER_LOCK_STRIPES = 64;
+
+    private final String name;
+    private final Cache<String, Object> local;
+    private final RedisCache remote;
+    private final NearCacheInvalidationBus invalidationBus;
+    private final Striped<Lock> loaderLocks = Striped.lock(LOADER_LOCK_STRIPES);
+
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+
+    public TwoLevelCache(String name, Cache<String, Object> local, RedisCache remote,
+                         NearCacheInvalidationBus invalidationBus) {
+        super(false);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidationBus = invalidationBus;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            return value;
+        }
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        local.put(localKey, wrapper.get());
+        return wrapper.get();
+    }
+
+    /**
+     * Loader path used by {@code @Cacheable(sync = true)}: concurrent misses on a key wait for
+     * one load on this node instead of all hitting the loader. The loaded value comes from the
+     * source of truth, so other nodes are not asked to drop their copy.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) {
+            return (T) value;
+        }
+        Lock lock = loaderLocks.get(localKey(key));
+        lock.lock();
+        try {
+            // Another thread may have loaded it while we waited
+            value = lookup(key);
+            if (value != null) {
+                return (T) value;
+            }
+            T loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            if (loaded != null) {
+                remote.put(key, loaded);
+                local.put(localKey(key), loaded);
+            }
+            return loaded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        remote.put(key, value);
+        local.put(localKey(key), value);
+        invalidationBus.publishEvict(name, localKey(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        evictLocal(localKey(key));
+        invalidationBus.publishEvict(name, localKey(key));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        invalidationBus.publishClear(name);
+    }
+
+    void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    void clearLocal() {
+        local.invalidateAll();
+    }
+
+    Cache<String, Object> getLocalCache() {
+        return local;
+    }
+
+    /**
+     * Share of lookups answered by L1 without a Redis round trip.
+     */
+    public double localHitRatio() {
+        return local.stats().hitRate();
+    }
+
+    /**
+     * Share of L1 misses that were answered by Redis instead of the loader.
+     */
+    public double remoteHitRatio() {
+        long hits = remoteHits.sum();
+        long total = hits + remoteMisses.sum();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
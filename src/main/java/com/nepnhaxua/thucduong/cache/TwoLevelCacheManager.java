@@ -0,0 +1,98 @@
+package com.nepnhaxua.thucduong.cache;
+
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds a {@link TwoLevelCache} for every cache name on top of the Redis cache manager and
+ * applies invalidations received from other nodes to the local tier.
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final RedisCacheManager redisCacheManager;
+    private final NearCacheInvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+    private final long localMaxSize;
+    private final Duration localTtl;
+
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, NearCacheInvalidationBus invalidationBus,
+                                MeterRegistry meterRegistry, long localMaxSize, Duration localTtl) {
+        this.redisCacheManager = redisCacheManager;
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.localMaxSize = localMaxSize;
+        this.localTtl = localTtl;
+
+        invalidationBus.onRemoteEvict((cacheName, key) -> {
+            TwoLevelCache cache = caches.get(cacheName);
+            if (cache != null) {
+                cache.evictLocal(key);
+            }
+        });
+        invalidationBus.onRemoteClear(cacheName -> {
+            TwoLevelCache cache = caches.get(cacheName);
+            if (cache != null) {
+                cache.clearLocal();
+            }
+        });
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * L1 and L2 hit ratios per cache name, used to size the near cache.
+     */
+    public Map<String, Map<String, Double>> getHitRatios() {
+        Map<String, Map<String, Double>> ratios = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> ratios.put(name, Map.of(
+                "l1", cache.localHitRatio(),
+                "l2", cache.remoteHitRatio())));
+        return ratios;
+    }
+
+    private TwoLevelCache createCache(String name) {
+        com.google.common.cache.Cache<String, Object> local = CacheBuilder.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        RedisCache remote = (RedisCache) redisCacheManager.getCache(name);
+        TwoLevelCache cache = new TwoLevelCache(name, local, remote, invalidationBus);
+
+        if (meterRegistry != null) {
+            GuavaCacheMetrics.monitor(meterRegistry, local, name, "tier", "l1");
+            Gauge.builder("cache.near.hit.ratio", cache, TwoLevelCache::localHitRatio)
+                    .tag("cache", name)
+                    .tag("tier", "l1")
+                    .register(meterRegistry);
+            Gauge.builder("cache.near.hit.ratio", cache, TwoLevelCache::remoteHitRatio)
+                    .tag("cache", name)
+                    .tag("tier", "l2")
+                    .register(meterRegistry);
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,332 @@
+package com.nepnhaxua.thucduong.cart;
+
+import com.nepnhaxua.thucduong.analytics.AnalyticsPipeline;
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import com.nepnhaxua.thucduong.entity.Cart;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.exception.ConflictException;
+import com.nepnhaxua.thucduong.service.ProductCounterService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Shopping carts served from Redis: one hash per cart (productId -> quantity), changed by
+ * scripts so concurrent edits never lose an update. Every change marks the cart dirty; the
+ * flush writes each dirty cart's latest state to the Mongo {@code cart} collection in one bulk
+ * write, so a burst of edits costs one document write. Reads never touch Mongo; a cart missing
+ * from Redis (expired there, or Redis lost it) is reloaded from Mongo on its next change.
+ */
+@Slf4j
+@Service
+public class CartService {
+
+    static final RedisScript<Long> UPDATE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/cart-update.lua"), Long.class);
+    static final RedisScript<Long> MERGE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/cart-merge.lua"), Long.class);
+
+    private static final String CART_KEY = "thucduong:cart:";
+    private static final String DIRTY_KEY = "thucduong:cart:dirty";
+    // Bounds one flush run; the rest stays dirty for the next one
+    private static final int MAX_FLUSH_BATCHES = 20;
+
+    private final StringRedisTemplate redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final ProductCounterService productCounterService;
+    private final AnalyticsPipeline analyticsPipeline;
+    private final Duration guestTtl;
+    private final Duration userTtl;
+    private final int maxLines;
+    private final int maxQuantity;
+    private final int flushBatch;
+
+    public CartService(StringRedisTemplate redisTemplate,
+                       MongoTemplate mongoTemplate,
+                       ProductCounterService productCounterService,
+                       AnalyticsPipeline analyticsPipeline,
+                       @Value("${app.cart.guest-ttl:604800000}") long guestTtlMillis,
+                       @Value("${app.cart.user-ttl:2592000000}") long userTtlMillis,
+                       @Value("${app.cart.max-lines:50}") int maxLines,
+                       @Value("${app.cart.max-quantity:99}") int maxQuantity,
+                       @Value("${app.cart.flush-batch:500}") int flushBatch) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.productCounterService = productCounterService;
+        this.analyticsPipeline = analyticsPipeline;
+        this.guestTtl = Duration.ofMillis(guestTtlMillis);
+        this.userTtl = Duration.ofMillis(userTtlMillis);
+        this.maxLines = maxLines;
+        this.maxQuantity = maxQuantity;
+        this.flushBatch = flushBatch;
+    }
+
+    public CartView get(Owner owner) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key(owner));
+        return view(entries);
+    }
+
+    /**
+     * Add quantity units of a product; ConflictException when the cart is full
+     */
+    public CartView add(Owner owner, String productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        if (!mongoTemplate.exists(Query.query(Criteria.where("_id").is(productId).and("flags.isActive").is(true)),
+                Product.class)) {
+            throw new NoSuchElementException("Product not found: " + productId);
+        }
+        update(owner, productId, quantity, "add");
+        productCounterService.recordAddedToCart(productId);
+        Map<String, Object> data = new HashMap<>();
+        data.put("productId", productId);
+        data.put("quantity", quantity);
+        analyticsPipeline.record(AnalyticsEvent.ADD_TO_CART, owner.getUserId(), owner.getSessionId(), data);
+        return get(owner);
+    }
+
+    /**
+     * Replace the quantity of a line already in the cart; 0 removes it
+     */
+    public CartView setQuantity(Owner owner, String productId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        update(owner, productId, quantity, "set");
+        return get(owner);
+    }
+
+    public CartView remove(Owner owner, String productId) {
+        load(owner);
+        redisTemplate.opsForHash().delete(key(owner), productId);
+        markDirty(owner);
+        return get(owner);
+    }
+
+    public void clear(Owner owner) {
+        redisTemplate.delete(key(owner));
+        markDirty(owner);
+    }
+
+    /**
+     * Fold a guest cart into the user's cart at sign-in; quantities of shared lines add up.
+     * Returns the merged cart.
+     */
+    public CartView merge(String sessionId, String userId) {
+        Owner guest = Owner.guest(sessionId);
+        Owner user = Owner.user(userId);
+        load(guest);
+        load(user);
+        Long merged = redisTemplate.execute(MERGE_SCRIPT, List.of(key(guest), key(user)),
+                String.valueOf(maxQuantity), String.valueOf(maxLines), String.valueOf(userTtl.toMillis()));
+        markDirty(guest);
+        markDirty(user);
+        log.debug("Merged {} guest cart lines into the cart of user {}", merged, userId);
+        return get(user);
+    }
+
+    /**
+     * Write dirty carts to Mongo: the latest state of each, upserted (or removed when empty)
+     * in one unordered bulk write per batch
+     */
+    @Scheduled(fixedDelayString = "${app.cart.flush-interval:5000}")
+    public synchronized void flush() {
+        for (int i = 0; i < MAX_FLUSH_BATCHES; i++) {
+            List<String> dirty = redisTemplate.opsForSet().pop(DIRTY_KEY, flushBatch);
+            if (dirty == null || dirty.isEmpty()) {
+                return;
+            }
+            try {
+                persist(dirty);
+            } catch (Exception e) {
+                // Still dirty: the next flush retries with whatever the carts hold by then
+                log.warn("Could not persist {} carts, retrying next time", dirty.size(), e);
+                redisTemplate.opsForSet().add(DIRTY_KEY, dirty.toArray(String[]::new));
+                return;
+            }
+            if (dirty.size() < flushBatch) {
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        try {
+            flush();
+        } catch (DataAccessException e) {
+            log.warn("Could not flush carts on shutdown; they stay dirty in Redis", e);
+        }
+    }
+
+    private void persist(List<String> dirty) {
+        List<Owner> owners = dirty.stream().map(Owner::parse).toList();
+        List<Object> carts = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (Owner owner : owners) {
+                    operations.opsForHash().entries(key(owner));
+                }
+                return null;
+            }
+        });
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+        for (int i = 0; i < owners.size(); i++) {
+            Owner owner = owners.get(i);
+            List<Cart.Item> items = items((Map<?, ?>) carts.get(i));
+            if (items.isEmpty()) {
+                bulk.remove(owner.query());
+            } else {
+                bulk.upsert(owner.query(), new Update()
+                        .set("items", items)
+                        .set("updatedAt", now)
+                        .set("expiresAt", now.plus(ttl(owner)))
+                        .setOnInsert("createdAt", now));
+            }
+        }
+        bulk.execute();
+    }
+
+    private void update(Owner owner, String productId, int quantity, String mode) {
+        load(owner);
+        Long result = redisTemplate.execute(UPDATE_SCRIPT, List.of(key(owner)), productId, String.valueOf(quantity),
+                mode, String.valueOf(maxQuantity), String.valueOf(maxLines), String.valueOf(ttl(owner).toMillis()));
+        if (result != null && result == -1) {
+            throw new ConflictException("Cart is full (" + maxLines + " products)");
+        }
+        if (result != null && result == -2) {
+            throw new NoSuchElementException("Product not in cart: " + productId);
+        }
+        markDirty(owner);
+    }
+
+    // Reload a cart Redis no longer has; a dirty cart without a hash was emptied on purpose
+    private void load(Owner owner) {
+        String key = key(owner);
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(key))
+                || Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(DIRTY_KEY, owner.encode()))) {
+            return;
+        }
+        Cart cart = mongoTemplate.findOne(owner.query(), Cart.class);
+        if (cart == null || cart.getItems() == null || cart.getItems().isEmpty()) {
+            return;
+        }
+        for (Cart.Item item : cart.getItems()) {
+            redisTemplate.opsForHash().putIfAbsent(key, item.getProductId(), String.valueOf(item.getQuantity()));
+        }
+        redisTemplate.expire(key, ttl(owner));
+    }
+
+    private void markDirty(Owner owner) {
+        redisTemplate.opsForSet().add(DIRTY_KEY, owner.encode());
+    }
+
+    private Duration ttl(Owner owner) {
+        return owner.getUserId() != null ? userTtl : guestTtl;
+    }
+
+    private static String key(Owner owner) {
+        return CART_KEY + owner.encode();
+    }
+
+    private static CartView view(Map<?, ?> entries) {
+        List<Cart.Item> items = items(entries);
+        CartView view = new CartView();
+        view.setItems(items);
+        view.setTotalQuantity(items.stream().mapToInt(Cart.Item::getQuantity).sum());
+        return view;
+    }
+
+    private static List<Cart.Item> items(Map<?, ?> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return List.of();
+        }
+        List<Cart.Item> items = new ArrayList<>(entries.size());
+        entries.forEach((productId, quantity) ->
+                items.add(new Cart.Item((String) productId, Integer.parseInt((String) quantity))));
+        return items;
+    }
+
+    /**
+     * Whose cart: a signed-in user, or a guest identified by the cart session cookie
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Owner {
+        private static final Pattern SESSION_ID = Pattern.compile("[0-9a-f-]{36}");
+
+        private final String userId;
+        private final String sessionId;
+
+        /**
+         * The signed-in user, else the guest with a well-formed session id; null when neither
+         */
+        public static Owner of(String userId, String sessionId) {
+            if (userId != null) {
+                return user(userId);
+            }
+            return validSession(sessionId) ? guest(sessionId) : null;
+        }
+
+        public static boolean validSession(String sessionId) {
+            return sessionId != null && SESSION_ID.matcher(sessionId).matches();
+        }
+
+        public static Owner user(String userId) {
+            return new Owner(userId, null);
+        }
+
+        public static Owner guest(String sessionId) {
+            return new Owner(null, sessionId);
+        }
+
+        public String encode() {
+            return userId != null ? "u:" + userId : "s:" + sessionId;
+        }
+
+        static Owner parse(String encoded) {
+            String id = encoded.substring(2);
+            return encoded.startsWith("u:") ? user(id) : guest(id);
+        }
+
+        Query query() {
+            return Query.query(userId != null ? Criteria.where("userId").is(userId) : Criteria.where("sessionId").is(sessionId));
+        }
+    }
+
+    @Data
+    public static class CartView {
+        private List<Cart.Item> items = new ArrayList<>();
+        private int totalQuantity;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class ItemRequest {
+        private String productId;
+        private Integer quantity = 1;
+    }
+}
@@ -0,0 +1,269 @@
+package com.nepnhaxua.thucduong.catalog;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVWriter;
+import com.opencsv.ICSVWriter;
+import com.nepnhaxua.thucduong.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Catalog export that streams products from a Mongo cursor straight into the output: CSV
+ * through opencsv, XLSX through POI's streaming workbook (a window of rows in memory, the rest
+ * flushed to a temp file), NDJSON through a Jackson generator. Only the selected fields are
+ * fetched. Columns are the import columns, so an exported file can be edited and imported back;
+ * CSV and XLSX leave quantity blank for products whose stock the importer refuses to overwrite
+ * (kept per warehouse, or partly reserved).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+
+    private static final int CURSOR_BATCH = 1000;
+    private static final int XLSX_ROW_WINDOW = 200;
+    private static final String LIST_SEPARATOR = "; ";
+    private static final String QUANTITY = "quantity";
+
+    private static final Map<String, String> COLUMNS = columns();
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Getter
+    @AllArgsConstructor
+    public enum Format {
+        CSV("text/csv;charset=UTF-8", "csv"),
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        public static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unsupported export format (csv, xlsx, ndjson): " + name);
+            }
+        }
+    }
+
+    /**
+     * Column names in export order; unknown names are an IllegalArgumentException. Empty: all.
+     */
+    public static List<String> selectColumns(List<String> requested) {
+        if (requested == null || requested.isEmpty()) {
+            return List.copyOf(COLUMNS.keySet());
+        }
+        Set<String> wanted = new HashSet<>();
+        for (String name : requested) {
+            String column = name.trim().toLowerCase(Locale.ROOT);
+            if (!COLUMNS.containsKey(column)) {
+                throw new IllegalArgumentException("Unknown field: " + name + " (known: " + String.join(", ", COLUMNS.keySet()) + ")");
+            }
+            wanted.add(column);
+        }
+        return COLUMNS.keySet().stream().filter(wanted::contains).toList();
+    }
+
+    /**
+     * Write the products matching the filter; category and active are optional. Returns the row count.
+     */
+    public long export(Format format, List<String> columns, ExportFilter filter, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        long rows;
+        try (Stream<Document> products = mongoTemplate.stream(query(columns, filter), Document.class,
+                mongoTemplate.getCollectionName(Product.class))) {
+            Iterator<Document> cursor = products.iterator();
+            rows = switch (format) {
+                case CSV -> csv(cursor, columns, out);
+                case XLSX -> xlsx(cursor, columns, out);
+                case NDJSON -> ndjson(cursor, columns, out);
+            };
+        }
+        log.info("Exported {} products as {} in {} ms", rows, format, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    private static Query query(List<String> columns, ExportFilter filter) {
+        Criteria criteria = new Criteria();
+        if (filter.getCategory() != null && !filter.getCategory().isBlank()) {
+            criteria.and("category.main").is(filter.getCategory());
+        }
+        if (filter.getActive() != null) {
+            criteria.and("flags.isActive").is(filter.getActive());
+        }
+        Query query = Query.query(criteria).with(Sort.by("_id")).cursorBatchSize(CURSOR_BATCH);
+        query.fields().exclude("_id");
+        columns.forEach(column -> query.fields().include(COLUMNS.get(column)));
+        if (columns.contains(QUANTITY)) {
+            query.fields().include("inventory.locations.warehouse", "inventory.reserved");
+        }
+        return query;
+    }
+
+    static long csv(Iterator<Document> cursor, List<String> columns, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // BOM so Excel opens the file as UTF-8; the importer drops it
+        writer.write('\uFEFF');
+        ICSVWriter csv = new CSVWriter(writer);
+        csv.writeNext(columns.toArray(String[]::new), false);
+        String[] line = new String[columns.size()];
+        long rows = 0;
+        while (cursor.hasNext()) {
+            Document product = cursor.next();
+            for (int i = 0; i < line.length; i++) {
+                line[i] = text(importable(product, columns.get(i)));
+            }
+            csv.writeNext(line, false);
+            rows++;
+        }
+        csv.flush();
+        return rows;
+    }
+
+    private static long xlsx(Iterator<Document> cursor, List<String> columns, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("products");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < columns.size(); i++) {
+                header.createCell(i).setCellValue(columns.get(i));
+            }
+            int rows = 0;
+            while (cursor.hasNext()) {
+                Document product = cursor.next();
+                Row row = sheet.createRow(++rows);
+                for (int i = 0; i < columns.size(); i++) {
+                    Object value = importable(product, columns.get(i));
+                    if (value == null) {
+                        continue;
+                    }
+                    Cell cell = row.createCell(i);
+                    if (value instanceof Number number) {
+                        cell.setCellValue(number.doubleValue());
+                    } else if (value instanceof Boolean flag) {
+                        cell.setCellValue(flag);
+                    } else {
+                        cell.setCellValue(text(value));
+                    }
+                }
+            }
+            workbook.write(out);
+            return rows;
+        } finally {
+            workbook.close();
+            workbook.dispose();
+        }
+    }
+
+    private long ndjson(Iterator<Document> cursor, List<String> columns, OutputStream out) throws IOException {
+        long rows = 0;
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (cursor.hasNext()) {
+                Document product = cursor.next();
+                json.writeStartObject();
+                for (String column : columns) {
+                    json.writeFieldName(column);
+                    Object value = value(product, COLUMNS.get(column));
+                    if (value instanceof Date date) {
+                        json.writeString(date.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime().toString());
+                    } else {
+                        json.writeObject(value);
+                    }
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    // Column value as the importer accepts it back: no quantity for stock managed through the ledger
+    private static Object importable(Document product, String column) {
+        if (QUANTITY.equals(column) && value(product, "inventory") instanceof Document inventory) {
+            boolean perWarehouse = inventory.get("locations") instanceof List<?> locations && !locations.isEmpty();
+            boolean reserved = inventory.get("reserved") instanceof Number count && count.intValue() > 0;
+            if (perWarehouse || reserved) {
+                return null;
+            }
+        }
+        return value(product, COLUMNS.get(column));
+    }
+
+    // Value at a dotted path; image lists become their urls
+    private static Object value(Document product, String path) {
+        Object value = product;
+        for (String part : path.split("\\.")) {
+            if (!(value instanceof Document document)) {
+                return null;
+            }
+            value = document.get(part);
+        }
+        if (value instanceof List<?> list && !list.isEmpty() && list.get(0) instanceof Document) {
+            return list.stream()
+                    .map(item -> item instanceof Document d ? d.getString("url") : null)
+                    .filter(Objects::nonNull)
+                    .toList();
+        }
+        return value;
+    }
+
+    private static String text(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Double number) {
+            return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof Date date) {
+            return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime().toString();
+        }
+        if (value instanceof List<?> list) {
+            StringJoiner joined = new StringJoiner(LIST_SEPARATOR);
+            list.forEach(item -> joined.add(String.valueOf(item)));
+            return joined.toString();
+        }
+        return value.toString();
+    }
+
+    private static Map<String, String> columns() {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("sku", "sku");
+        columns.put("slug", "slug");
+        ProductRowMapper.COLUMNS.forEach(column -> columns.put(column.getName(), column.getPath()));
+        return Collections.unmodifiableMap(columns);
+    }
+
+    @Data
+    public static class ExportFilter {
+        private String category;
+        private Boolean active;
+    }
+}
@@ -0,0 +1,52 @@
+package com.nepnhaxua.thucduong.catalog;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command-line import: runs when app.import.file is set, then exits (status 1 on failure or
+ * rejected rows), e.g.
+ * {@code java -jar thucduong.jar --app.import.file=products.xlsx --spring.main.web-application-type=none}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty("app.import.file")
+public class ProductImportCommand implements ApplicationRunner {
+
+    private final ProductImportService importService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${app.import.file}")
+    private String file;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Path path = Path.of(file);
+        int status;
+        if (!Files.isReadable(path)) {
+            log.error("Cannot read import file {}", path);
+            status = 2;
+        } else {
+            ProductImportService.Progress progress = importService.importFile(path);
+            progress.getErrors().forEach(error ->
+                    log.warn("Row {} ({}): {}", error.getRow(), error.getKey(), error.getMessage()));
+            if (progress.getFailed() > progress.getErrors().size()) {
+                log.warn("... and {} more rejected rows", progress.getFailed() - progress.getErrors().size());
+            }
+            status = ProductImportService.COMPLETED.equals(progress.getStatus()) && progress.getFailed() == 0 ? 0 : 1;
+        }
+        int exitCode = status;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
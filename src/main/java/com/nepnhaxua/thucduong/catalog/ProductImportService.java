@@ -0,0 +1,363 @@
+package com.nepnhaxua.thucduong.catalog;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk product import from CSV or XLSX. The reading thread streams rows and cuts them into
+ * batches; worker threads map and validate each batch and upsert it by sku / slug in one
+ * unordered bulk write. At most two batches per worker are in flight, so memory stays flat
+ * however large the file. Progress and per-row errors are kept on the job until it is pruned.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private static final Duration FINISHED_JOB_RETENTION = Duration.ofHours(1);
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int workers;
+    private final int maxErrors;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public ProductImportService(MongoTemplate mongoTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${app.import.batch-size:1000}") int batchSize,
+                                @Value("${app.import.workers:0}") int workers,
+                                @Value("${app.import.max-errors:1000}") int maxErrors) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Import a file in the background; the file is deleted when done. Returns the job to poll.
+     */
+    public Progress start(Path file, String fileName) {
+        ProductRows.Format format = ProductRows.Format.of(fileName);
+        pruneFinished();
+        Job job = new Job(UUID.randomUUID().toString(), fileName);
+        jobs.put(job.id, job);
+        Thread thread = new Thread(() -> {
+            try {
+                run(job, file, format);
+            } finally {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Could not delete import upload {}", file, e);
+                }
+            }
+        }, "product-import-" + job.id.substring(0, 8));
+        thread.setDaemon(true);
+        thread.start();
+        return job.progress();
+    }
+
+    /**
+     * Import a file on the calling thread (command line)
+     */
+    public Progress importFile(Path file) {
+        Job job = new Job(UUID.randomUUID().toString(), file.getFileName().toString());
+        jobs.put(job.id, job);
+        run(job, file, ProductRows.Format.of(job.fileName));
+        return job.progress();
+    }
+
+    public Progress progress(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new NoSuchElementException("Import job not found: " + jobId);
+        }
+        return job.progress();
+    }
+
+    public List<Progress> jobs() {
+        return jobs.values().stream()
+                .map(Job::progress)
+                .sorted(Comparator.comparing(Progress::getStartedAt).reversed())
+                .toList();
+    }
+
+    private void run(Job job, Path file, ProductRows.Format format) {
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "product-import-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore inFlight = new Semaphore(workers * 2);
+        List<Future<?>> pending = new ArrayList<>();
+        try {
+            List<Row> batch = new ArrayList<>(batchSize);
+            ProductRows.read(file, format, (number, values) -> {
+                job.read.increment();
+                batch.add(new Row(number, values));
+                if (batch.size() == batchSize) {
+                    submit(pool, inFlight, pending, job, new ArrayList<>(batch));
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                submit(pool, inFlight, pending, job, batch);
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+            job.finish(COMPLETED, null);
+        } catch (Exception e) {
+            log.error("Product import {} ({}) failed", job.id, job.fileName, e);
+            job.finish(FAILED, e instanceof ExecutionException ? e.getCause().getMessage() : e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (job.inserted.sum() + job.updated.sum() > 0) {
+            // One catalog-wide change instead of an event (and a re-read) per product
+            eventPublisher.publishEvent(new ProductChangedEvent(null, null, false));
+        }
+        Progress progress = job.progress();
+        log.info("Product import {} ({}) {}: {} rows, {} inserted, {} updated, {} failed in {} ms",
+                job.id, job.fileName, progress.getStatus(), progress.getRowsRead(), progress.getInserted(),
+                progress.getUpdated(), progress.getFailed(), progress.getElapsedMillis());
+    }
+
+    private void submit(ExecutorService pool, Semaphore inFlight, List<Future<?>> pending, Job job, List<Row> batch) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        }
+        try {
+            pending.add(pool.submit(() -> {
+                try {
+                    write(job, batch);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+        // Keep only unfinished futures so the list does not grow with the file; a failed batch aborts
+        for (Iterator<Future<?>> it = pending.iterator(); it.hasNext(); ) {
+            Future<?> future = it.next();
+            if (future.isDone()) {
+                it.remove();
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Import interrupted", e);
+                }
+            }
+        }
+    }
+
+    private void write(Job job, List<Row> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Row, ProductRowMapper.Mapped> mapped = new LinkedHashMap<>();
+        for (Row row : batch) {
+            try {
+                ProductRowMapper.Mapped upsert = ProductRowMapper.map(row.values, now);
+                row.key = upsert.getKey();
+                mapped.put(row, upsert);
+            } catch (IllegalArgumentException e) {
+                job.fail(row.number, row.values.get("sku"), e.getMessage());
+            }
+        }
+        stockConflicts(mapped).forEach((row, reason) -> {
+            mapped.remove(row);
+            job.fail(row.number, row.key, reason);
+        });
+        List<Row> valid = new ArrayList<>(mapped.keySet());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        mapped.values().forEach(upsert -> bulk.upsert(upsert.getQuery(), upsert.getUpdate()));
+        if (valid.isEmpty()) {
+            return;
+        }
+        BulkWriteResult result;
+        try {
+            result = bulk.execute();
+        } catch (BulkOperationException e) {
+            result = e.getResult();
+            for (BulkWriteError error : e.getErrors()) {
+                Row row = valid.get(error.getIndex());
+                job.fail(row.number, row.key, error.getMessage());
+            }
+        }
+        job.inserted.add(result.getUpserts().size());
+        job.updated.add(result.getMatchedCount());
+    }
+
+    // Rows setting quantity on products whose stock is kept per warehouse, or is reserved beyond it
+    private Map<Row, String> stockConflicts(Map<Row, ProductRowMapper.Mapped> mapped) {
+        Map<Row, ProductRowMapper.Mapped> stocked = new LinkedHashMap<>();
+        mapped.forEach((row, upsert) -> {
+            if (upsert.getQuantity() != null) {
+                stocked.put(row, upsert);
+            }
+        });
+        if (stocked.isEmpty()) {
+            return Map.of();
+        }
+        List<String> keys = stocked.keySet().stream().map(row -> row.key).toList();
+        Query query = Query.query(new Criteria().andOperator(
+                new Criteria().orOperator(Criteria.where("sku").in(keys), Criteria.where("slug").in(keys)),
+                new Criteria().orOperator(Criteria.where("inventory.locations.0").exists(true),
+                        Criteria.where("inventory.reserved").gt(0))));
+        query.fields().include("sku", "slug", "inventory.reserved", "inventory.locations.warehouse");
+        Map<String, Product> bySku = new HashMap<>();
+        Map<String, Product> bySlug = new HashMap<>();
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            if (product.getSku() != null) {
+                bySku.put(product.getSku(), product);
+            }
+            bySlug.put(product.getSlug(), product);
+        }
+
+        Map<Row, String> conflicts = new HashMap<>();
+        stocked.forEach((row, upsert) -> {
+            Product product = (row.values.get("sku") != null ? bySku : bySlug).get(row.key);
+            if (product == null) {
+                return;
+            }
+            Product.Inventory inventory = product.getInventory();
+            if (inventory.getLocations() != null && !inventory.getLocations().isEmpty()) {
+                conflicts.put(row, "quantity: product is stocked per warehouse, adjust its stock through inventory");
+            } else if (inventory.getReserved() != null && upsert.getQuantity() < inventory.getReserved()) {
+                conflicts.put(row, "quantity: below the " + inventory.getReserved() + " units reserved");
+            }
+        });
+        return conflicts;
+    }
+
+    private void pruneFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(FINISHED_JOB_RETENTION);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private static class Row {
+        private final long number;
+        private final Map<String, String> values;
+        private String key;
+
+        Row(long number, Map<String, String> values) {
+            this.number = number;
+            this.values = values;
+        }
+    }
+
+    private class Job {
+        private final String id;
+        private final String fileName;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+        private final LongAdder read = new LongAdder();
+        private final LongAdder inserted = new LongAdder();
+        private final LongAdder updated = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final Queue<RowError> errors = new ConcurrentLinkedQueue<>();
+        private final AtomicLong elapsedMillis = new AtomicLong(-1);
+        private volatile String status = RUNNING;
+        private volatile String message;
+        private volatile LocalDateTime finishedAt;
+
+        Job(String id, String fileName) {
+            this.id = id;
+            this.fileName = fileName;
+        }
+
+        void fail(long row, String key, String reason) {
+            // Counted always, listed up to max-errors
+            if (failed.sum() < maxErrors) {
+                errors.add(new RowError(row, key, reason));
+            }
+            failed.increment();
+        }
+
+        void finish(String status, String message) {
+            elapsedMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+            this.message = message;
+            this.finishedAt = LocalDateTime.now();
+            this.status = status;
+        }
+
+        Progress progress() {
+            Progress progress = new Progress();
+            progress.setJobId(id);
+            progress.setFileName(fileName);
+            progress.setStatus(status);
+            progress.setMessage(message);
+            progress.setRowsRead(read.sum());
+            progress.setInserted(inserted.sum());
+            progress.setUpdated(updated.sum());
+            progress.setFailed(failed.sum());
+            progress.setErrors(errors.stream().sorted(Comparator.comparingLong(RowError::getRow)).toList());
+            progress.setStartedAt(startedAt);
+            progress.setFinishedAt(finishedAt);
+            long elapsed = elapsedMillis.get();
+            progress.setElapsedMillis(elapsed >= 0 ? elapsed : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+            return progress;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+        private final long row;
+        private final String key;
+        private final String message;
+    }
+
+    @Data
+    public static class Progress {
+        private String jobId;
+        private String fileName;
+        private String status;
+        private String message;
+        private long rowsRead;
+        private long inserted;
+        private long updated;
+        private long failed;
+        private List<RowError> errors;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private long elapsedMillis;
+    }
+}
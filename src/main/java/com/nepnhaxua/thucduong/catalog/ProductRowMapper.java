@@ -0,0 +1,207 @@
+package com.nepnhaxua.thucduong.catalog;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.search.VietnameseTextNormalizer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Maps an import row onto the {@link Product} document: each known column sets one product
+ * field, so a file carrying only sku and price updates prices and leaves everything else alone.
+ * Rows are keyed by sku when present, else by slug (given, or derived from the name).
+ * quantity sets the on-hand stock of products without warehouse locations only; stock kept per
+ * warehouse changes through the inventory ledger.
+ * Invalid rows throw IllegalArgumentException with a message fit for the import report.
+ */
+public final class ProductRowMapper {
+
+    private static final Pattern SLUG = Pattern.compile("[a-z0-9]+(-[a-z0-9]+)*");
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("\\s*[;|]\\s*");
+
+    // Also the columns of catalog exports (after sku and slug), so exported files import back as they
+    // are; exports leave quantity blank where the importer would refuse it (see ProductImportService)
+    static final List<Column> COLUMNS = List.of(
+            new Column("name", "name", ProductRowMapper::text),
+            new Column("category", "category.main", ProductRowMapper::text),
+            new Column("subcategory", "category.sub", ProductRowMapper::text),
+            new Column("tags", "tags", ProductRowMapper::list),
+            new Column("price", "pricing.regular", ProductRowMapper::amount),
+            new Column("sale_price", "pricing.sale", ProductRowMapper::amount),
+            new Column("cost", "pricing.cost", ProductRowMapper::amount),
+            new Column("currency", "pricing.currency", v -> v.toUpperCase(Locale.ROOT)),
+            new Column("quantity", "inventory.quantity", ProductRowMapper::count),
+            new Column("unit", "inventory.unit", ProductRowMapper::text),
+            new Column("min_order_quantity", "inventory.minOrderQuantity", ProductRowMapper::count),
+            new Column("max_order_quantity", "inventory.maxOrderQuantity", ProductRowMapper::count),
+            new Column("short_description", "description.shortDesc", ProductRowMapper::text),
+            new Column("description", "description.detailed", ProductRowMapper::text),
+            new Column("images", "media.images", ProductRowMapper::images),
+            new Column("active", "flags.isActive", ProductRowMapper::flag),
+            new Column("featured", "flags.isFeatured", ProductRowMapper::flag));
+
+    private ProductRowMapper() {
+    }
+
+    public static Mapped map(Map<String, String> row, LocalDateTime now) {
+        String sku = row.get("sku");
+        String slug = row.get("slug");
+        String name = row.get("name");
+        if (sku == null && slug == null && name == null) {
+            throw new IllegalArgumentException("sku, slug or name is required");
+        }
+        if (slug != null && !SLUG.matcher(slug).matches()) {
+            throw new IllegalArgumentException("Invalid slug: " + slug);
+        }
+        String derivedSlug = slug != null ? slug : slugOf(name);
+
+        Update update = new Update();
+        for (Column column : COLUMNS) {
+            String value = row.get(column.name);
+            if (value != null) {
+                try {
+                    update.set(column.path, column.parser.apply(value));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(column.name + ": " + e.getMessage());
+                }
+            }
+        }
+        checkRanges(update);
+
+        Query query;
+        if (sku != null) {
+            query = Query.query(Criteria.where("sku").is(sku));
+            if (slug != null) {
+                update.set("slug", slug);
+            } else if (derivedSlug != null) {
+                update.setOnInsert("slug", derivedSlug);
+            } else if (slugOf(sku) != null) {
+                // No name either: fine for updating a product, and a new one still needs a unique slug
+                update.setOnInsert("slug", "sku-" + slugOf(sku));
+            } else {
+                throw new IllegalArgumentException("Invalid sku: " + sku);
+            }
+        } else {
+            if (derivedSlug == null) {
+                throw new IllegalArgumentException("name has no letters or digits to derive a slug from");
+            }
+            query = Query.query(Criteria.where("slug").is(derivedSlug));
+        }
+
+        Integer quantity = quantity(update);
+        if (quantity != null) {
+            // Should a product gain locations after the import checked it, the upsert fails on the
+            // unique sku / slug instead of overwriting its stock
+            query.addCriteria(Criteria.where("inventory.locations.0").exists(false));
+        }
+
+        update.set("updatedAt", now).setOnInsert("createdAt", now).inc(Product.REVISION, 1);
+        if (!row.containsKey("active")) {
+            update.setOnInsert("flags.isActive", true);
+        }
+        return new Mapped(sku != null ? sku : derivedSlug, query, update, quantity);
+    }
+
+    static String slugOf(String text) {
+        List<String> tokens = VietnameseTextNormalizer.tokenize(text);
+        return tokens.isEmpty() ? null : String.join("-", tokens);
+    }
+
+    private static void checkRanges(Update update) {
+        Map<?, ?> set = update.getUpdateObject().get("$set", Map.class);
+        if (set == null) {
+            return;
+        }
+        Double regular = (Double) set.get("pricing.regular");
+        Double sale = (Double) set.get("pricing.sale");
+        if (regular != null && sale != null && sale > regular) {
+            throw new IllegalArgumentException("sale_price is above price");
+        }
+        Integer min = (Integer) set.get("inventory.minOrderQuantity");
+        Integer max = (Integer) set.get("inventory.maxOrderQuantity");
+        if (min != null && max != null && min > max) {
+            throw new IllegalArgumentException("min_order_quantity is above max_order_quantity");
+        }
+    }
+
+    private static Integer quantity(Update update) {
+        Map<?, ?> set = update.getUpdateObject().get("$set", Map.class);
+        return set != null ? (Integer) set.get("inventory.quantity") : null;
+    }
+
+    private static Object text(String value) {
+        return value;
+    }
+
+    private static Object list(String value) {
+        return Arrays.stream(LIST_SEPARATOR.split(value)).filter(s -> !s.isEmpty()).distinct().toList();
+    }
+
+    // '.' is the decimal point; ',' and spaces are digit grouping
+    private static Object amount(String value) {
+        double amount;
+        try {
+            amount = Double.parseDouble(value.replace(",", "").replace(" ", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + value);
+        }
+        if (amount < 0 || Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("must not be negative: " + value);
+        }
+        return amount;
+    }
+
+    private static Object count(String value) {
+        double amount = (Double) amount(value);
+        if (amount != Math.rint(amount) || amount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("not a whole number: " + value);
+        }
+        return (int) amount;
+    }
+
+    private static Object flag(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "yes", "y", "1", "x", "có", "co" -> true;
+            case "false", "no", "n", "0", "không", "khong" -> false;
+            default -> throw new IllegalArgumentException("not a yes/no value: " + value);
+        };
+    }
+
+    // First image is the primary one
+    private static Object images(String value) {
+        List<Product.Image> images = new ArrayList<>();
+        for (String url : LIST_SEPARATOR.split(value)) {
+            if (!url.isEmpty()) {
+                images.add(Product.Image.builder().url(url).isPrimary(images.isEmpty()).build());
+            }
+        }
+        return images;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Column {
+        private final String name;
+        private final String path;
+        private final Function<String, Object> parser;
+    }
+
+    /**
+     * Upsert for one row: matched by sku or slug ({@code key}); quantity is the stock it sets, if any
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Mapped {
+        private final String key;
+        private final Query query;
+        private final Update update;
+        private final Integer quantity;
+    }
+}
@@ -0,0 +1,167 @@
+package com.nepnhaxua.thucduong.catalog;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Streams the rows of a CSV file or of the first sheet of an XLSX workbook, one at a time,
+ * as column name -> cell text. The first row holds the column names; row numbers are 1-based
+ * with the header as row 1. XLSX files are read with POI's SAX event API, so neither format
+ * is ever loaded whole.
+ */
+public final class ProductRows {
+
+    private ProductRows() {
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        void row(long number, Map<String, String> values);
+    }
+
+    public enum Format {
+        CSV, XLSX;
+
+        public static Format of(String fileName) {
+            String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".xlsx")) {
+                return XLSX;
+            }
+            throw new IllegalArgumentException("Unsupported file type (expected .csv or .xlsx): " + fileName);
+        }
+    }
+
+    public static void read(Path file, Format format, Handler handler) throws IOException {
+        if (format == Format.CSV) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file.toFile()))) {
+                csv(in, handler);
+            }
+        } else {
+            xlsx(file, handler);
+        }
+    }
+
+    public static void csv(InputStream in, Handler handler) throws IOException {
+        try (CSVReader reader = new CSVReaderBuilder(new InputStreamReader(in, StandardCharsets.UTF_8)).build()) {
+            String[] header = reader.readNext();
+            if (header == null) {
+                return;
+            }
+            List<String> columns = columns(Arrays.asList(header));
+            long number = 1;
+            String[] cells;
+            while ((cells = reader.readNext()) != null) {
+                number++;
+                Map<String, String> values = new HashMap<>();
+                for (int i = 0; i < cells.length && i < columns.size(); i++) {
+                    put(values, columns.get(i), cells[i]);
+                }
+                if (!values.isEmpty()) {
+                    handler.row(number, values);
+                }
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("Malformed CSV: " + e.getMessage(), e);
+        }
+    }
+
+    public static void xlsx(Path file, Handler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                // US formatting: numbers come out with '.' decimals and ',' grouping whatever the locale
+                DataFormatter formatter = new DataFormatter(Locale.US);
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, new SheetRows(handler), formatter, false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Malformed XLSX: " + e.getMessage(), e);
+        }
+    }
+
+    // Lowercase, snake_case column names; a UTF-8 BOM (Excel's CSV export) is dropped
+    static List<String> columns(List<String> header) {
+        List<String> columns = new ArrayList<>(header.size());
+        for (String name : header) {
+            String column = name == null ? "" : name.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT)
+                    .replaceAll("[\\s-]+", "_");
+            columns.add(column);
+        }
+        return columns;
+    }
+
+    private static void put(Map<String, String> values, String column, String cell) {
+        if (!column.isEmpty() && cell != null && !cell.isBlank()) {
+            values.put(column, cell.trim());
+        }
+    }
+
+    private static class SheetRows implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Handler handler;
+        private List<String> columns;
+        private final List<String> headerCells = new ArrayList<>();
+        private Map<String, String> values;
+
+        SheetRows(Handler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            values = new HashMap<>();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (columns == null) {
+                columns = columns(headerCells);
+            } else if (!values.isEmpty()) {
+                handler.row(rowNum + 1L, values);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = new CellReference(cellReference).getCol();
+            if (columns == null) {
+                while (headerCells.size() < col) {
+                    headerCells.add("");
+                }
+                headerCells.add(formattedValue);
+            } else if (col < columns.size()) {
+                put(values, columns.get(col), formattedValue);
+            }
+        }
+    }
+}
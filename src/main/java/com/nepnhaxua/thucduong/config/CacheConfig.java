@@ -1,11 +1,142 @@
 package com.nepnhaxua.thucduong.config;
 
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nepnhaxua.thucduong.cache.NearCacheInvalidationBus;
+import com.nepnhaxua.thucduong.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 
+import java.time.Duration;
+
+@Slf4j
 @Configuration
 @EnableCaching
-public class CacheConfig {
-}
+public class CacheConfig implements CachingConfigurer {
+
+    @Value("${spring.cache.redis.time-to-live:3600000}")
+    private long redisTtlMillis;
+
+    @Value("${spring.cache.redis.key-prefix:thucduong:}")
+    private String keyPrefix;
+
+    @Value("${app.cache.near.max-size:10000}")
+    private long nearMaxSize;
+
+    @Value("${app.cache.near.time-to-live:300000}")
+    private long nearTtlMillis;
+
+    @Value("${app.cache.near.invalidation-channel:thucduong:cache:invalidate}")
+    private String invalidationChannel;
+
+    @Bean
+    public NearCacheInvalidationBus nearCacheInvalidationBus(StringRedisTemplate redisTemplate) {
+        return new NearCacheInvalidationBus(redisTemplate, new ChannelTopic(invalidationChannel));
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       NearCacheInvalidationBus invalidationBus) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(invalidationBus, invalidationBus.getTopic());
+        return container;
+    }
 
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             NearCacheInvalidationBus invalidationBus,
+                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        RedisCacheConfiguration redisConfig = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofMillis(redisTtlMillis))
+                .disableCachingNullValues()
+                .prefixCacheNameWith(keyPrefix)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair
+                        .fromSerializer(new GenericJackson2JsonRedisSerializer(redisObjectMapper())));
 
+        RedisCacheManager redisCacheManager = RedisCacheManager
+                .builder(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory, BatchStrategies.scan(1000)))
+                .cacheDefaults(redisConfig)
+                .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(redisCacheManager, invalidationBus, meterRegistry.getIfAvailable(),
+                nearMaxSize, Duration.ofMillis(nearTtlMillis));
+    }
+
+    /**
+     * Redis being unavailable should degrade to L1 + MongoDB, not fail the request.
+     */
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new CacheErrorHandler() {
+            @Override
+            public void handleCacheGetError(RuntimeException exception, Cache cache, Object key) {
+                log.warn("Cache get failed on {} for key {}", cache.getName(), key, exception);
+            }
+
+            @Override
+            public void handleCachePutError(RuntimeException exception, Cache cache, Object key, Object value) {
+                log.warn("Cache put failed on {} for key {}", cache.getName(), key, exception);
+            }
+
+            @Override
+            public void handleCacheEvictError(RuntimeException exception, Cache cache, Object key) {
+                log.warn("Cache evict failed on {} for key {}", cache.getName(), key, exception);
+            }
+
+            @Override
+            public void handleCacheClearError(RuntimeException exception, Cache cache) {
+                log.warn("Cache clear failed on {}", cache.getName(), exception);
+            }
+        };
+    }
+
+    // Entities are not Serializable, so values are stored as typed JSON
+    static ObjectMapper redisObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        mapper.activateDefaultTyping(cachedTypes(), ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return mapper;
+    }
+
+    /**
+     * Type ids read back from Redis may only name our own classes and plain JDK value and
+     * collection types, so whoever can write to Redis cannot pick a gadget class to instantiate.
+     */
+    static PolymorphicTypeValidator cachedTypes() {
+        return BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.nepnhaxua.thucduong.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.time.")
+                .allowIfSubType("java.lang.")
+                .allowIfSubType("java.math.")
+                .allowIfSubTypeIsArray()
+                .build();
+    }
+}
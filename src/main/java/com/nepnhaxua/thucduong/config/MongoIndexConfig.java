@@ -259,6 +259,19 @@ public class MongoIndexConfig {
                         .on("type", Sort.Direction.ASC)
                         .on("timestamp", Sort.Direction.DESC));
         
+        // Session analytics index
+        mongoTemplate.indexOps("analytics")
+                .ensureIndex(new Index()
+                        .on("sessionId", Sort.Direction.ASC)
+                        .on("timestamp", Sort.Direction.DESC));
+        
+        // Product analytics index
+        mongoTemplate.indexOps("analytics")
+                .ensureIndex(new Index()
+                        .on("data.productId", Sort.Direction.ASC)
+                        .on("type", Sort.Direction.ASC)
+                        .on("timestamp", Sort.Direction.DESC));
+        
         // TTL index for analytics data retention (90 days)
         mongoTemplate.indexOps("analytics")
                 .ensureIndex(new Index()
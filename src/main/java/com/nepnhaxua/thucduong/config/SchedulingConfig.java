@@ -0,0 +1,10 @@
+package com.nepnhaxua.thucduong.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // This class enables @Scheduled background jobs (homepage snapshot refresh, ...)
+}
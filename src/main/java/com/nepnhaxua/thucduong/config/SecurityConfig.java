@@ -38,6 +38,8 @@ public class SecurityConfig {
                         // Public API endpoints
                         .requestMatchers(HttpMethod.GET, "/api/products/**", "/api/blog/**", "/api/health-map/**")
                         .permitAll()
+                        // Back-office endpoints stay closed until there is a way to sign in as admin
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         // Everything else requires authentication (will be updated when auth is
                         // implemented)
                         .anyRequest().permitAll() // TODO: tighten when JWT auth is added
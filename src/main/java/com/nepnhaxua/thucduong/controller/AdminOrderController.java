@@ -0,0 +1,30 @@
+package com.nepnhaxua.thucduong.controller;
+
+import com.nepnhaxua.thucduong.api.ApiResponse;
+import com.nepnhaxua.thucduong.entity.Order;
+import com.nepnhaxua.thucduong.order.OrderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Payment confirmation (by staff or the payment provider's callback) and order cancellation
+ */
+@RestController
+@RequestMapping("/api/admin/orders")
+@RequiredArgsConstructor
+public class AdminOrderController {
+
+    private final OrderService orderService;
+
+    @PostMapping("/{orderNumber}/payment")
+    public ResponseEntity<ApiResponse<Order>> confirmPayment(@PathVariable("orderNumber") String orderNumber) {
+        return ResponseEntity.ok(ApiResponse.ok(orderService.confirmPayment(orderNumber)));
+    }
+
+    @PostMapping("/{orderNumber}/cancel")
+    public ResponseEntity<ApiResponse<Order>> cancel(@PathVariable("orderNumber") String orderNumber,
+            @RequestParam(defaultValue = "staff") String reason) {
+        return ResponseEntity.ok(ApiResponse.ok(orderService.cancel(orderNumber, reason)));
+    }
+}
@@ -0,0 +1,115 @@
+package com.nepnhaxua.thucduong.controller;
+
+import com.nepnhaxua.thucduong.api.ApiResponse;
+import com.nepnhaxua.thucduong.cart.CartService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Cart of the signed-in user, or of the guest identified by the cart session cookie
+ * (issued on the first change). After sign-in the client calls /merge to fold the guest cart in.
+ */
+@RestController
+@RequestMapping("/api/cart")
+@RequiredArgsConstructor
+public class CartController {
+
+    public static final String SESSION_COOKIE = "cart_session";
+
+    private final CartService cartService;
+
+    @Value("${app.cart.guest-ttl:604800000}")
+    private long guestTtlMillis;
+
+    @GetMapping
+    public ResponseEntity<ApiResponse<CartService.CartView>> get(
+            @CookieValue(value = SESSION_COOKIE, required = false) String sessionId, HttpServletRequest request) {
+        CartService.Owner owner = owner(request, sessionId, null);
+        CartService.CartView cart = owner != null ? cartService.get(owner) : new CartService.CartView();
+        return ResponseEntity.ok(ApiResponse.ok(cart));
+    }
+
+    @PostMapping("/items")
+    public ResponseEntity<ApiResponse<CartService.CartView>> add(@RequestBody CartService.ItemRequest body,
+            @CookieValue(value = SESSION_COOKIE, required = false) String sessionId,
+            HttpServletRequest request, HttpServletResponse response) {
+        int quantity = body.getQuantity() != null ? body.getQuantity() : 1;
+        return ResponseEntity.ok(ApiResponse.ok(
+                cartService.add(owner(request, sessionId, response), body.getProductId(), quantity)));
+    }
+
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<ApiResponse<CartService.CartView>> setQuantity(@PathVariable("productId") String productId,
+            @RequestBody CartService.ItemRequest body,
+            @CookieValue(value = SESSION_COOKIE, required = false) String sessionId,
+            HttpServletRequest request, HttpServletResponse response) {
+        if (body.getQuantity() == null) {
+            throw new IllegalArgumentException("Quantity is required");
+        }
+        return ResponseEntity.ok(ApiResponse.ok(
+                cartService.setQuantity(owner(request, sessionId, response), productId, body.getQuantity())));
+    }
+
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<ApiResponse<CartService.CartView>> remove(@PathVariable("productId") String productId,
+            @CookieValue(value = SESSION_COOKIE, required = false) String sessionId,
+            HttpServletRequest request, HttpServletResponse response) {
+        return ResponseEntity.ok(ApiResponse.ok(cartService.remove(owner(request, sessionId, response), productId)));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<ApiResponse<Void>> clear(
+            @CookieValue(value = SESSION_COOKIE, required = false) String sessionId, HttpServletRequest request) {
+        CartService.Owner owner = owner(request, sessionId, null);
+        if (owner != null) {
+            cartService.clear(owner);
+        }
+        return ResponseEntity.ok(ApiResponse.ok(null));
+    }
+
+    /**
+     * Fold the guest cart of this browser into the signed-in user's cart and drop the cookie
+     */
+    @PostMapping("/merge")
+    public ResponseEntity<ApiResponse<CartService.CartView>> merge(
+            @CookieValue(value = SESSION_COOKIE, required = false) String sessionId, HttpServletRequest request) {
+        if (request.getUserPrincipal() == null) {
+            throw new IllegalArgumentException("Sign in to merge the guest cart");
+        }
+        String userId = request.getUserPrincipal().getName();
+        if (!CartService.Owner.validSession(sessionId)) {
+            return ResponseEntity.ok(ApiResponse.ok(cartService.get(CartService.Owner.user(userId))));
+        }
+        ResponseCookie expired = ResponseCookie.from(SESSION_COOKIE, "").path("/").maxAge(0).build();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, expired.toString())
+                .body(ApiResponse.ok(cartService.merge(sessionId, userId)));
+    }
+
+    // Signed-in user, else the guest session; issues a new session when response is given
+    private CartService.Owner owner(HttpServletRequest request, String sessionId, HttpServletResponse response) {
+        String userId = request.getUserPrincipal() != null ? request.getUserPrincipal().getName() : null;
+        CartService.Owner owner = CartService.Owner.of(userId, sessionId);
+        if (owner != null || response == null) {
+            return owner;
+        }
+        String issued = UUID.randomUUID().toString();
+        ResponseCookie cookie = ResponseCookie.from(SESSION_COOKIE, issued)
+                .path("/")
+                .httpOnly(true)
+                .sameSite("Lax")
+                .maxAge(Duration.ofMillis(guestTtlMillis))
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        return CartService.Owner.guest(issued);
+    }
+}
@@ -0,0 +1,35 @@
+package com.nepnhaxua.thucduong.controller;
+
+import com.nepnhaxua.thucduong.api.ApiResponse;
+import com.nepnhaxua.thucduong.inventory.FlashSaleService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/flash-sales")
+@RequiredArgsConstructor
+public class FlashSaleController {
+
+    private final FlashSaleService flashSaleService;
+
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<FlashSaleService.Sale>>> active() {
+        return ResponseEntity.ok(ApiResponse.ok(flashSaleService.active()));
+    }
+
+    @PostMapping
+    public ResponseEntity<ApiResponse<FlashSaleService.Sale>> start(@RequestBody FlashSaleService.StartRequest body) {
+        return ResponseEntity.ok(ApiResponse.ok(flashSaleService.start(body.getProductId(), body.getQuantity(),
+                body.getPerUserCap(), Duration.ofMinutes(body.getDurationMinutes()))));
+    }
+
+    @DeleteMapping("/{productId}")
+    public ResponseEntity<ApiResponse<Void>> end(@PathVariable("productId") String productId) {
+        flashSaleService.end(productId);
+        return ResponseEntity.ok(ApiResponse.ok(null));
+    }
+}
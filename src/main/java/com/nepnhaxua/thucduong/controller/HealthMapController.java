@@ -3,11 +3,25 @@ package com.nepnhaxua.thucduong.controller;
 import com.nepnhaxua.thucduong.api.ApiResponse;
 import com.nepnhaxua.thucduong.entity.BodyHealthMap;
 import com.nepnhaxua.thucduong.service.BodyHealthMapService;
+import com.nepnhaxua.thucduong.service.ContentVersionService;
+import com.nepnhaxua.thucduong.service.HealthMapSnapshot;
+import com.nepnhaxua.thucduong.service.InteractiveContentCatalog;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/health-map")
@@ -15,15 +29,121 @@ import java.util.List;
 public class HealthMapController {
 
     private final BodyHealthMapService service;
+    private final ContentVersionService contentVersionService;
+    private final InteractiveContentCatalog interactiveContentCatalog;
+
+    @Value("${app.http.cache.health-map-max-age:300}")
+    private long healthMapMaxAgeSeconds;
 
     @GetMapping
     public ResponseEntity<ApiResponse<List<BodyHealthMap>>> list() {
         return ResponseEntity.ok(ApiResponse.ok(service.getAllBodyParts()));
     }
 
+    @GetMapping("/localized")
+    public ResponseEntity<ApiResponse<List<HealthMapSnapshot.LocalizedBodyPart>>> localized(
+            @RequestParam(defaultValue = "vi") String lang) {
+        return ResponseEntity.ok(ApiResponse.ok(service.getLocalizedBodyParts(lang)));
+    }
+
+    /**
+     * Recommendations for several body parts in one round trip, keyed by body part
+     */
+    @PostMapping("/recommendations:batch")
+    public ResponseEntity<ApiResponse<Map<String, BodyHealthMapService.PersonalizedRecommendations>>> batchRecommendations(
+            @RequestBody BodyHealthMapService.BatchRecommendationRequest body, HttpServletRequest servletRequest) {
+        String userId = servletRequest.getUserPrincipal() != null ? servletRequest.getUserPrincipal().getName() : null;
+        return ResponseEntity.ok(ApiResponse.ok(
+                service.getBatchRecommendations(body.getBodyParts(), userId, body.getLanguage())));
+    }
+
+    /**
+     * Symptom check across every body part, answered from the in-memory symptom index
+     */
+    @GetMapping("/assessment")
+    public ResponseEntity<ApiResponse<BodyHealthMapService.HealthAssessment>> assessment(
+            @RequestParam List<String> symptoms) {
+        return ResponseEntity.ok(ApiResponse.ok(service.getCrossBodyAssessment(symptoms)));
+    }
+
+    @GetMapping("/{part}/assessment")
+    public ResponseEntity<ApiResponse<BodyHealthMapService.HealthAssessment>> assessment(
+            @PathVariable("part") String part, @RequestParam List<String> symptoms) {
+        return ResponseEntity.ok(ApiResponse.ok(service.getHealthAssessment(part, symptoms)));
+    }
+
+    /**
+     * Hover / click / quiz content written straight from prerendered bytes; gzip-capable clients
+     * get the precompressed variant so nothing is serialized or compressed per request
+     */
+    @GetMapping("/{part}/interactive")
+    public ResponseEntity<byte[]> interactive(@PathVariable("part") String part,
+                                              @RequestParam(defaultValue = "hover") String action,
+                                              @RequestParam(defaultValue = "vi") String lang,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                              WebRequest request) {
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(healthMapMaxAgeSeconds))
+                .cachePublic()
+                .staleWhileRevalidate(Duration.ofSeconds(healthMapMaxAgeSeconds));
+        InteractiveContentCatalog.Payload payload = interactiveContentCatalog.payload(part, action, lang);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        if (request.checkNotModified(gzip ? payload.getGzipEtag() : payload.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            // A response that already carries Content-Encoding is left alone by server compression
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.getGzip());
+        }
+        return response.body(payload.getJson());
+    }
+
+    // gzip (or x-gzip) with a non-zero q-value, or * with one when gzip is not listed
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = gzip == null ? q : Math.max(gzip, q);
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        return gzip != null ? gzip > 0 : any != null && any > 0;
+    }
+
     @GetMapping("/{part}")
-    public ResponseEntity<ApiResponse<BodyHealthMap>> detail(@PathVariable("part") String part) {
-        return ResponseEntity.ok(ApiResponse.ok(service.getBodyPartDetails(part)));
+    public ResponseEntity<ApiResponse<BodyHealthMap>> detail(@PathVariable("part") String part, WebRequest request) {
+        // Editorial content changes rarely: cache longer and let clients revalidate with a 304
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(healthMapMaxAgeSeconds))
+                .cachePublic()
+                .staleWhileRevalidate(Duration.ofSeconds(healthMapMaxAgeSeconds));
+        Optional<ContentVersionService.Version> version = contentVersionService.bodyPartVersion(part);
+        if (version.isPresent()
+                && request.checkNotModified(version.get().etag("api"), version.get().getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).body(ApiResponse.ok(service.getBodyPartDetails(part)));
     }
 }
 
@@ -0,0 +1,82 @@
+package com.nepnhaxua.thucduong.controller;
+
+import com.nepnhaxua.thucduong.api.ApiResponse;
+import com.nepnhaxua.thucduong.cart.CartService;
+import com.nepnhaxua.thucduong.entity.Order;
+import com.nepnhaxua.thucduong.order.OrderService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Checkout and order lookup for the cart owner (signed-in user or guest cart session)
+ */
+@RestController
+@RequestMapping("/api/orders")
+@RequiredArgsConstructor
+public class OrderController {
+
+    private static final int RECENT_LIMIT = 20;
+
+    private final OrderService orderService;
+
+    /**
+     * Place an order for the current cart; retries with the same Idempotency-Key return the same order
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<Order>> place(@RequestBody OrderService.CheckoutRequest body,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @CookieValue(value = CartController.SESSION_COOKIE, required = false) String sessionId,
+            HttpServletRequest request) {
+        CartService.Owner owner = CartService.Owner.of(userId(request), sessionId);
+        if (owner == null) {
+            throw new IllegalArgumentException("Cart is empty");
+        }
+        return ResponseEntity.ok(ApiResponse.ok(orderService.place(owner, idempotencyKey, body)));
+    }
+
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<Order>>> recent(HttpServletRequest request) {
+        String userId = userId(request);
+        if (userId == null) {
+            throw new IllegalArgumentException("Sign in to see your orders");
+        }
+        return ResponseEntity.ok(ApiResponse.ok(orderService.recent(userId, RECENT_LIMIT)));
+    }
+
+    @GetMapping("/{orderNumber}")
+    public ResponseEntity<ApiResponse<Order>> get(@PathVariable("orderNumber") String orderNumber,
+            @CookieValue(value = CartController.SESSION_COOKIE, required = false) String sessionId,
+            HttpServletRequest request) {
+        return ResponseEntity.ok(ApiResponse.ok(owned(orderNumber, userId(request), sessionId)));
+    }
+
+    @PostMapping("/{orderNumber}/cancel")
+    public ResponseEntity<ApiResponse<Order>> cancel(@PathVariable("orderNumber") String orderNumber,
+            @CookieValue(value = CartController.SESSION_COOKIE, required = false) String sessionId,
+            HttpServletRequest request) {
+        owned(orderNumber, userId(request), sessionId);
+        return ResponseEntity.ok(ApiResponse.ok(orderService.cancel(orderNumber, "customer")));
+    }
+
+    // Someone else's order reads as not found
+    private Order owned(String orderNumber, String userId, String sessionId) {
+        Order order = orderService.get(orderNumber);
+        boolean mine = order.getUserId() != null
+                ? Objects.equals(order.getUserId(), userId)
+                : sessionId != null && Objects.equals(order.getSessionId(), sessionId);
+        if (!mine) {
+            throw new NoSuchElementException("Order not found: " + orderNumber);
+        }
+        return order;
+    }
+
+    private static String userId(HttpServletRequest request) {
+        return request.getUserPrincipal() != null ? request.getUserPrincipal().getName() : null;
+    }
+}
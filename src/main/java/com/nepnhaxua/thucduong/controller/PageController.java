@@ -1,36 +1,66 @@
 package com.nepnhaxua.thucduong.controller;
 
+import com.nepnhaxua.thucduong.analytics.AnalyticsPipeline;
+import com.nepnhaxua.thucduong.api.CursorPage;
 import com.nepnhaxua.thucduong.entity.Product;
 import com.nepnhaxua.thucduong.repository.ProductRepository;
+import com.nepnhaxua.thucduong.repository.ProductSearchResult;
+import com.nepnhaxua.thucduong.repository.ProductSummary;
+import com.nepnhaxua.thucduong.search.ProductSearchService;
+import com.nepnhaxua.thucduong.service.ContentVersionService;
+import com.nepnhaxua.thucduong.service.HomepageSnapshot;
+import com.nepnhaxua.thucduong.service.HomepageSnapshotService;
+import com.nepnhaxua.thucduong.service.ProductCategories;
+import com.nepnhaxua.thucduong.service.ProductCounterService;
+import com.nepnhaxua.thucduong.service.ProductCursor;
+import com.nepnhaxua.thucduong.service.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Optional;
 
 @Controller
 @RequiredArgsConstructor
 public class PageController {
 
     private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final ProductSearchService productSearchService;
+    private final HomepageSnapshotService homepageSnapshotService;
+    private final ContentVersionService contentVersionService;
+    private final ProductCounterService productCounterService;
+    private final AnalyticsPipeline analyticsPipeline;
+
+    // Part of page ETags, so a deploy with new templates invalidates them
+    @Value("${app.version:dev}")
+    private String appVersion;
 
     @GetMapping("/")
     public String homepage(Model model) {
-        // Lấy sản phẩm nổi bật cho trang chủ
-        List<Product> featuredProducts = productRepository
-                .findByFlagsIsFeaturedTrueAndFlagsIsActiveTrueOrderByCreatedAtDesc()
+        // Lấy sản phẩm nổi bật cho trang chủ từ snapshot dựng sẵn (không truy vấn MongoDB)
+        HomepageSnapshot snapshot = homepageSnapshotService.getSnapshot();
+        List<ProductSummary> featuredProducts = snapshot.getFeatured()
                 .stream()
                 .limit(4)
                 .toList();
 
         model.addAttribute("featuredProducts", featuredProducts);
+        model.addAttribute("newArrivals", snapshot.getNewArrivals());
+        model.addAttribute("bestsellers", snapshot.getBestsellers());
 
         // TODO: Thêm tin tức mới nhất khi có BlogRepository
         // model.addAttribute("latestPosts",
@@ -47,30 +77,56 @@ public class PageController {
             @RequestParam(required = false) String q,
             @RequestParam(required = false, defaultValue = "createdAt") String sort,
             @RequestParam(required = false, defaultValue = "DESC") Sort.Direction dir,
-            Model model) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by(dir, sort));
-        Page<Product> productPage;
-
-        if (q != null && !q.isBlank()) {
-            productPage = productRepository.searchProducts(q, pageable);
-        } else if (category != null && !category.isBlank()) {
-            // For category filter, use the category.main field
-            productPage = productRepository.findByCategoryMainAndFlagsIsActiveTrue(category, pageable);
-        } else {
-            // For all products, we need to filter only active ones
-            // Since there's no direct method, we'll use findAll for now
-            // In production, you'd want to add a custom query for this
-            productPage = productRepository.findAll(pageable);
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) List<String> tags,
+            @RequestParam(required = false) String cursor,
+            Model model, HttpServletRequest servletRequest) {
+        model.addAttribute("currentCategory", category);
+        model.addAttribute("searchQuery", q);
+        model.addAttribute("sortBy", sort);
+        model.addAttribute("sortDirection", dir.toString());
+
+        // Cursor mode: keyset pagination without a count query, used for deep browsing.
+        // Sorts without a keyset equivalent fall back to numbered pages.
+        Sort.Order cursorSort = cursor != null && (q == null || q.isBlank()) ? cursorSort(sort, dir) : null;
+        if (cursorSort != null) {
+            CursorPage<ProductSummary> window = productService.scrollActive(
+                    category, cursorSort.getProperty(), cursorSort.getDirection(), cursor, size);
+            model.addAttribute("products", window.getContent());
+            model.addAttribute("cursorMode", true);
+            model.addAttribute("nextCursor", window.getNextCursor());
+            model.addAttribute("currentPage", 0);
+            model.addAttribute("totalPages", 0);
+            return "product";
+        }
+
+        // Tìm kiếm thuần từ khóa: dùng chỉ mục trong bộ nhớ (không dấu, gõ sai, tiền tố)
+        boolean plainSearch = q != null && !q.isBlank()
+                && (category == null || category.isBlank())
+                && minPrice == null && maxPrice == null
+                && (tags == null || tags.isEmpty());
+
+        // Một lần $facet: trang sản phẩm, tổng số và số lượng cho bộ lọc bên trái
+        ProductSearchResult result = plainSearch ? null : productRepository.searchWithFacets(
+                q, category, minPrice, maxPrice, tags, sort, PageRequest.of(page, size));
+        Page<ProductSummary> productPage = plainSearch
+                ? productSearchService.search(q, PageRequest.of(page, size))
+                : result.getPage();
+        if (q != null && !q.isBlank() && page == 0) {
+            analyticsPipeline.trackSearch(q, productPage.getTotalElements(), servletRequest);
         }
 
         model.addAttribute("products", productPage.getContent());
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", productPage.getTotalPages());
         model.addAttribute("totalItems", productPage.getTotalElements());
-        model.addAttribute("currentCategory", category);
-        model.addAttribute("searchQuery", q);
-        model.addAttribute("sortBy", sort);
-        model.addAttribute("sortDirection", dir.toString());
+        model.addAttribute("cursorMode", false);
+        model.addAttribute("facets", result != null ? result.getFacets() : null);
+        model.addAttribute("categoryLabels", ProductCategories.LABELS);
+        model.addAttribute("minPrice", minPrice);
+        model.addAttribute("maxPrice", maxPrice);
+        model.addAttribute("selectedTags", tags);
 
         // TODO: Lấy danh sách categories khi có CategoryRepository
         // model.addAttribute("categories", categoryRepository.findAll());
@@ -78,26 +134,55 @@ public class PageController {
         return "product";
     }
 
+    // Dropdown values of product.html -> keyset sort; null when the sort has no cursor support
+    private static Sort.Order cursorSort(String sort, Sort.Direction dir) {
+        return switch (sort) {
+            case "createdAt" -> new Sort.Order(dir, "createdAt");
+            case "newest" -> Sort.Order.desc("createdAt");
+            case "price_asc" -> Sort.Order.asc("pricing.regular");
+            case "price_desc" -> Sort.Order.desc("pricing.regular");
+            case "rating" -> Sort.Order.desc("ratings.average");
+            default -> ProductCursor.SORT_FIELDS.contains(sort) ? new Sort.Order(dir, sort) : null;
+        };
+    }
+
     @GetMapping("/products/{slug}")
-    public String productDetail(@PathVariable String slug, Model model) {
-        Product product = productRepository.findBySlug(slug)
-                .orElseThrow(() -> new java.util.NoSuchElementException("Product not found"));
+    public String productDetail(@PathVariable String slug, Model model,
+                                WebRequest request, HttpServletRequest servletRequest,
+                                HttpServletResponse response) {
+        // Trang HTML: trình duyệt luôn hỏi lại, máy chủ trả 304 nếu sản phẩm chưa đổi
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        // Lượt xem được ghi cả khi trả 304
+        Optional<ContentVersionService.Version> version = contentVersionService.productVersion(slug);
+        if (version.isPresent()) {
+            recordView(version.get().getId(), servletRequest);
+            if (request.checkNotModified(version.get().etag("page-" + appVersion))) {
+                return null;
+            }
+        }
+
+        Product product = productService.getBySlug(slug);
+        if (version.isEmpty()) {
+            recordView(product.getId(), servletRequest);
+        } else if (version.get().isAheadOf(product)) {
+            product = productService.reload(slug);
+        }
 
         model.addAttribute("product", product);
 
-        // Lấy sản phẩm liên quan (cùng category)
-        List<Product> relatedProducts = productRepository
-                .findByCategoryMainAndFlagsIsActiveTrue(product.getCategory().getMain(), PageRequest.of(0, 4))
-                .stream()
-                .filter(p -> !p.getId().equals(product.getId()))
-                .limit(3)
-                .toList();
+        // Sản phẩm tương tự đã tính sẵn (related.similar): một truy vấn $in
+        List<ProductSummary> relatedProducts = productService.getSimilarSummaries(product, 3);
 
         model.addAttribute("relatedProducts", relatedProducts);
 
         return "product_detail";
     }
 
+    private void recordView(String productId, HttpServletRequest servletRequest) {
+        productCounterService.recordView(productId, ProductCounterService.visitorId(servletRequest));
+        analyticsPipeline.trackProductView(productId, servletRequest);
+    }
+
     @GetMapping("/cart")
     public String cart() {
         return "cart";
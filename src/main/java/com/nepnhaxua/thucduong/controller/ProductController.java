@@ -1,17 +1,37 @@
 package com.nepnhaxua.thucduong.controller;
 
+import com.nepnhaxua.thucduong.analytics.AnalyticsPipeline;
+import com.nepnhaxua.thucduong.analytics.BestsellerWindow;
 import com.nepnhaxua.thucduong.api.ApiResponse;
+import com.nepnhaxua.thucduong.api.CursorPage;
 import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.recommendation.ForYouRecommendationService;
 import com.nepnhaxua.thucduong.repository.ProductRepository;
+import com.nepnhaxua.thucduong.repository.ProductSummary;
+import com.nepnhaxua.thucduong.search.ProductSearchService;
+import com.nepnhaxua.thucduong.search.ProductSuggestIndex;
+import com.nepnhaxua.thucduong.search.ProductSuggestService;
+import com.nepnhaxua.thucduong.service.ContentVersionService;
+import com.nepnhaxua.thucduong.service.HomepageSnapshot;
+import com.nepnhaxua.thucduong.service.HomepageSnapshotService;
+import com.nepnhaxua.thucduong.service.ProductCounterService;
+import com.nepnhaxua.thucduong.service.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/products")
@@ -19,41 +39,128 @@ import java.util.List;
 public class ProductController {
 
     private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final ProductSearchService productSearchService;
+    private final HomepageSnapshotService homepageSnapshotService;
+    private final ProductSuggestService productSuggestService;
+    private final ContentVersionService contentVersionService;
+    private final ProductCounterService productCounterService;
+    private final AnalyticsPipeline analyticsPipeline;
+    private final ForYouRecommendationService forYouRecommendationService;
+
+    @Value("${app.http.cache.product-max-age:60}")
+    private long productMaxAgeSeconds;
 
     @GetMapping
-    public ResponseEntity<ApiResponse<Page<Product>>> list(
+    public ResponseEntity<ApiResponse<Page<ProductSummary>>> list(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String q,
             @RequestParam(required = false, defaultValue = "createdAt") String sort,
-            @RequestParam(required = false, defaultValue = "DESC") Sort.Direction dir
+            @RequestParam(required = false, defaultValue = "DESC") Sort.Direction dir,
+            HttpServletRequest servletRequest
     ) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(dir, sort));
-        Page<Product> result;
+        Page<ProductSummary> result;
         if (q != null && !q.isBlank()) {
-            result = productRepository.searchProducts(q, pageable);
+            // Ranked by relevance, so the sort parameter does not apply
+            result = productSearchService.search(q, PageRequest.of(page, size));
+            if (page == 0) {
+                analyticsPipeline.trackSearch(q, result.getTotalElements(), servletRequest);
+            }
         } else if (category != null && !category.isBlank()) {
-            result = productRepository.findByCategoryMainAndFlagsIsActiveTrue(category, pageable);
+            result = productRepository.findSummariesByCategory(category, pageable);
         } else {
-            result = productRepository.findAll(pageable);
+            result = productRepository.findAllSummaries(pageable);
         }
         return ResponseEntity.ok(ApiResponse.ok(result));
     }
 
+    @GetMapping(params = {"cursor", "!q"})
+    public ResponseEntity<ApiResponse<CursorPage<ProductSummary>>> listByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false, defaultValue = "createdAt") String sort,
+            @RequestParam(required = false, defaultValue = "DESC") Sort.Direction dir
+    ) {
+        return ResponseEntity.ok(ApiResponse.ok(productService.scrollActive(category, sort, dir, cursor, size)));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponse<List<ProductSuggestIndex.Suggestion>>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit
+    ) {
+        return ResponseEntity.ok(ApiResponse.ok(productSuggestService.suggest(q, limit)));
+    }
+
     @GetMapping("/featured")
-    public ResponseEntity<ApiResponse<List<Product>>> featured() {
+    public ResponseEntity<ApiResponse<List<ProductSummary>>> featured() {
+        return ResponseEntity.ok(ApiResponse.ok(homepageSnapshotService.getSnapshot().getFeatured()));
+    }
+
+    @GetMapping("/bestsellers")
+    public ResponseEntity<ApiResponse<List<ProductSummary>>> bestsellers(
+            @RequestParam(defaultValue = "30d") String window,
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "12") int limit
+    ) {
+        List<ProductSummary> result = productService.getBestsellers(
+                BestsellerWindow.fromCode(window), category, Math.min(limit, 50));
+        return ResponseEntity.ok(ApiResponse.ok(result));
+    }
+
+    /**
+     * "For you" rail: personalized for a signed-in user, bestsellers otherwise
+     */
+    @GetMapping("/for-you")
+    public ResponseEntity<ApiResponse<List<?>>> forYou(
+            @RequestParam(defaultValue = "12") int limit,
+            HttpServletRequest servletRequest
+    ) {
+        int size = Math.min(limit, 50);
+        if (servletRequest.getUserPrincipal() == null) {
+            return ResponseEntity.ok(ApiResponse.ok(productService.getBestsellers(BestsellerWindow.DAYS_30, null, size)));
+        }
         return ResponseEntity.ok(ApiResponse.ok(
-                productRepository.findByFlagsIsFeaturedTrueAndFlagsIsActiveTrueOrderByCreatedAtDesc()
-        ));
+                forYouRecommendationService.recommend(servletRequest.getUserPrincipal().getName(), size)));
     }
 
-    @GetMapping("/{slug}")
-    public ResponseEntity<ApiResponse<Product>> get(@PathVariable String slug) {
-        Product product = productRepository.findBySlug(slug)
-                .orElseThrow(() -> new java.util.NoSuchElementException("Product not found"));
-        return ResponseEntity.ok(ApiResponse.ok(product));
+    @GetMapping("/homepage")
+    public ResponseEntity<ApiResponse<HomepageSnapshot>> homepage() {
+        return ResponseEntity.ok(ApiResponse.ok(homepageSnapshotService.getSnapshot()));
     }
-}
 
+    /**
+     * Conditional GET: the ETag comes from a lightweight version lookup, so a 304 is answered
+     * without loading or serializing the product. Revalidated views are counted like full ones.
+     */
+    @GetMapping("/{slug}")
+    public ResponseEntity<ApiResponse<Product>> get(@PathVariable String slug, WebRequest request,
+                                                    HttpServletRequest servletRequest) {
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(productMaxAgeSeconds))
+                .cachePublic()
+                .mustRevalidate();
+        Optional<ContentVersionService.Version> version = contentVersionService.productVersion(slug);
+        if (version.isPresent()) {
+            recordView(version.get().getId(), servletRequest);
+            if (request.checkNotModified(version.get().etag("api"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+            }
+        }
+        Product product = productService.getBySlug(slug);
+        if (version.isEmpty()) {
+            recordView(product.getId(), servletRequest);
+        } else if (version.get().isAheadOf(product)) {
+            product = productService.reload(slug);
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).body(ApiResponse.ok(product));
+    }
 
+    private void recordView(String productId, HttpServletRequest servletRequest) {
+        productCounterService.recordView(productId, ProductCounterService.visitorId(servletRequest));
+        analyticsPipeline.trackProductView(productId, servletRequest);
+    }
+}
@@ -0,0 +1,50 @@
+package com.nepnhaxua.thucduong.controller;
+
+import com.nepnhaxua.thucduong.catalog.ProductExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Catalog export as CSV / XLSX / NDJSON, streamed to the client while the products are read
+ */
+@RestController
+@RequestMapping("/api/admin/products/export")
+@RequiredArgsConstructor
+public class ProductExportController {
+
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmm");
+
+    private final ProductExportService exportService;
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "active", required = false) Boolean active) {
+        // Validated before the response starts, so bad parameters still get a 400
+        ProductExportService.Format exportFormat = ProductExportService.Format.of(format);
+        List<String> columns = ProductExportService.selectColumns(fields);
+        ProductExportService.ExportFilter filter = new ProductExportService.ExportFilter();
+        filter.setCategory(category);
+        filter.setActive(active);
+
+        String fileName = "products-" + LocalDateTime.now().format(FILE_STAMP) + "." + exportFormat.getExtension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(out -> exportService.export(exportFormat, columns, filter, out));
+    }
+}
@@ -0,0 +1,46 @@
+package com.nepnhaxua.thucduong.controller;
+
+import com.nepnhaxua.thucduong.api.ApiResponse;
+import com.nepnhaxua.thucduong.catalog.ProductImportService;
+import com.nepnhaxua.thucduong.catalog.ProductRows;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Bulk product import from CSV / XLSX; the upload is imported in the background and polled by job id
+ */
+@RestController
+@RequestMapping("/api/admin/products/import")
+@RequiredArgsConstructor
+public class ProductImportController {
+
+    private final ProductImportService importService;
+
+    @PostMapping(consumes = "multipart/form-data")
+    public ResponseEntity<ApiResponse<ProductImportService.Progress>> start(@RequestParam("file") MultipartFile file)
+            throws IOException {
+        ProductRows.Format format = ProductRows.Format.of(file.getOriginalFilename());
+        Path upload = Files.createTempFile("product-import-", "." + format.name().toLowerCase());
+        file.transferTo(upload);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.ok(importService.start(upload, file.getOriginalFilename())));
+    }
+
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<ProductImportService.Progress>>> jobs() {
+        return ResponseEntity.ok(ApiResponse.ok(importService.jobs()));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ApiResponse<ProductImportService.Progress>> progress(@PathVariable("jobId") String jobId) {
+        return ResponseEntity.ok(ApiResponse.ok(importService.progress(jobId)));
+    }
+}
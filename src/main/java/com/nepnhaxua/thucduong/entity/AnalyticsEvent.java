@@ -0,0 +1,47 @@
+package com.nepnhaxua.thucduong.entity;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Raw interaction event (product view, search, health map click, ...). Kept 90 days by the
+ * TTL index on timestamp created in MongoIndexConfig; long-term numbers live in rollups.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "analytics")
+@CompoundIndexes({
+    @CompoundIndex(name = "type_timestamp_idx", def = "{'type': 1, 'timestamp': -1}"),
+    @CompoundIndex(name = "user_type_timestamp_idx", def = "{'userId': 1, 'type': 1, 'timestamp': -1}"),
+    @CompoundIndex(name = "session_timestamp_idx", def = "{'sessionId': 1, 'timestamp': -1}"),
+    @CompoundIndex(name = "product_type_timestamp_idx", def = "{'data.productId': 1, 'type': 1, 'timestamp': -1}")
+})
+public class AnalyticsEvent {
+    public static final String PRODUCT_VIEW = "product_view";
+    public static final String ADD_TO_CART = "add_to_cart";
+    public static final String PURCHASE = "purchase";
+    public static final String SEARCH = "search";
+    public static final String HEALTH_MAP_INTERACTION = "health_map_interaction";
+
+    @Id
+    private String id;
+    
+    private String type;
+    private String userId; // optional for logged-in users
+    private String sessionId; // visitor id for anonymous traffic
+    private LocalDateTime timestamp;
+    
+    // productId, bodyPart, action, query, resultCount, ... depending on type
+    private Map<String, Object> data = new HashMap<>();
+}
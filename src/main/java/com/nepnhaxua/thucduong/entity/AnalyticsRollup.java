@@ -0,0 +1,51 @@
+package com.nepnhaxua.thucduong.entity;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * One rollup bucket: event counts of one type for one dimension value, with a slot per
+ * minute (hour bucket), per hour (day bucket) or per day (month bucket).
+ * Fine-grained buckets expire through the TTL index on expireAt; day slots are kept.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "analytics_rollups")
+@CompoundIndexes({
+    @CompoundIndex(name = "series_idx", def = "{'dimension': 1, 'key': 1, 'type': 1, 'granularity': 1, 'start': 1}"),
+    @CompoundIndex(name = "granularity_type_start_idx", def = "{'granularity': 1, 'type': 1, 'start': 1}")
+})
+public class AnalyticsRollup {
+    public static final String DIMENSION_ALL = "all";
+    public static final String DIMENSION_PRODUCT = "product";
+    public static final String DIMENSION_BODY_PART = "bodyPart";
+
+    @Id
+    private String id; // granularity|dimension|key|type|start
+
+    private String granularity; // MINUTE | HOUR | DAY (slot resolution)
+    private String dimension;
+    private String key;
+    private String type;
+    private LocalDateTime start;
+
+    private Long total = 0L;
+
+    // slot number (minute of hour, hour of day, day of month) -> count
+    private Map<String, Long> slots = new HashMap<>();
+
+    @Indexed(expireAfter = "0s", sparse = true)
+    private LocalDateTime expireAt;
+}
@@ -0,0 +1,43 @@
+package com.nepnhaxua.thucduong.entity;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Durable copy of a shopping cart, keyed by userId (signed in) or sessionId (guest).
+ * Live carts are served from Redis by CartService, which writes changes here in batches.
+ * Indexes (unique userId / sessionId, TTL on expiresAt) are created by MongoIndexConfig.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "cart")
+public class Cart {
+    @Id
+    private String id;
+
+    private String userId;
+    private String sessionId;
+
+    private List<Item> items = new ArrayList<>();
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime expiresAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String productId;
+        private Integer quantity;
+    }
+}
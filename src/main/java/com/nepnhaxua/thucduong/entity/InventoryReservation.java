@@ -0,0 +1,75 @@
+package com.nepnhaxua.thucduong.entity;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Stock held for an order (or a cart / checkout) until it is committed, released or expires.
+ * Leases are reservations too: a block of a hot product's stock held by one node, from which
+ * that node serves escrow reservations in memory (see HotSkuReservationFront).
+ * Closed reservations are purged through the TTL index on purgeAt.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "inventory_reservations")
+@CompoundIndexes({
+    @CompoundIndex(name = "kind_status_expires_idx", def = "{'kind': 1, 'status': 1, 'expiresAt': 1}"),
+    @CompoundIndex(name = "lease_settled_idx", def = "{'leaseId': 1, 'settled': 1}", sparse = true)
+})
+public class InventoryReservation {
+    public static final String KIND_ORDER = "order";
+    public static final String KIND_LEASE = "lease";
+
+    public static final String HELD = "HELD";
+    public static final String COMMITTED = "COMMITTED";
+    public static final String RELEASED = "RELEASED";
+    public static final String EXPIRED = "EXPIRED";
+
+    @Id
+    private String id;
+
+    private String kind;
+    @Indexed
+    private String productId;
+    @Indexed
+    private String reference; // order / checkout id of the holder
+    private String userId;
+    private Integer quantity;
+    private List<Allocation> allocations = new ArrayList<>();
+    private String status;
+
+    private String leaseId; // escrow reservations: the lease they were carved from
+    private String owner; // leases and escrow reservations: node or flash sale holding the lease
+    private Boolean settled; // escrow reservations: outcome applied to the product document
+
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+
+    @Indexed(expireAfter = "0s", sparse = true)
+    private LocalDateTime purgeAt;
+
+    public boolean isEscrow() {
+        return leaseId != null;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Allocation {
+        private String warehouse; // null when the product has no locations
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,99 @@
+package com.nepnhaxua.thucduong.entity;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.Indexed;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * An order placed at checkout. Each line holds stock through an inventory reservation until the
+ * order is paid (reservations committed) or cancelled / left unpaid (reservations released).
+ * Indexes on orderNumber, userId, status and payment.status are created by MongoIndexConfig.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "orders")
+public class Order {
+    public static final String PENDING = "pending";
+    public static final String CONFIRMED = "confirmed";
+    public static final String CANCELLED = "cancelled";
+
+    public static final String PAYMENT_PENDING = "pending";
+    public static final String PAYMENT_PAID = "paid";
+    public static final String PAYMENT_VOID = "void";
+
+    public static final String METHOD_COD = "cod";
+
+    @Id
+    private String id;
+
+    private String orderNumber;
+    private String userId;
+    private String sessionId; // guest checkouts
+
+    // Owner-scoped client key; a retried checkout finds the order instead of placing another
+    @JsonIgnore
+    @Indexed(unique = true, sparse = true)
+    private String idempotencyKey;
+    @JsonIgnore
+    private String requestHash;
+
+    private List<Item> items = new ArrayList<>();
+    private Pricing pricing;
+    private Payment payment;
+    private User.Address shippingAddress;
+    private String note;
+
+    private String status;
+    private String cancelReason;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime expiresAt; // payment deadline of pending orders
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String productId;
+        private String sku;
+        private String name;
+        private String category;
+        private Integer quantity;
+        private Double unitPrice;
+        private Double total;
+        @JsonIgnore
+        private String reservationId;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pricing {
+        private Double subtotal;
+        private Double shipping;
+        private Double total;
+        private String currency;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Payment {
+        private String method; // cod, bank_transfer, momo, vnpay, ...
+        private String status;
+        private LocalDateTime paidAt;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.IndexDirection;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
@@ -28,6 +29,9 @@ import java.util.*;
     @CompoundIndex(name = "featured_idx", def = "{'flags.isFeatured': 1, 'flags.isActive': 1, 'createdAt': -1}")
 })
 public class Product {
+
+    public static final String REVISION = "revision";
+
     @Id
     private String id;
     
@@ -78,6 +82,9 @@ public class Product {
     @LastModifiedDate
     private LocalDateTime updatedAt;
     private LocalDateTime deletedAt;
+    // $inc'd by partial writes (stock, flags, precomputed lists) that leave updatedAt alone;
+    // updatedAt + revision is the HTTP validator of a product. View and cart counters leave it alone.
+    private Long revision;
     
     private Map<String, SEO> seo = new HashMap<>(); // key: language code (vi, en)
     
@@ -302,6 +309,7 @@ public class Product {
     public static class Location {
         private String warehouse;
         private Integer quantity;
+        private Integer reserved;
     }
     
     @Data
@@ -413,6 +421,8 @@ public class Product {
         private Integer views = 0;
         private Integer uniqueViews = 0;
         private Integer addedToCart = 0;
+        // Bestseller fallback sort and leaderboard seeding
+        @Indexed(direction = IndexDirection.DESCENDING)
         private Integer purchased = 0;
         private Double conversionRate = 0.0;
     }
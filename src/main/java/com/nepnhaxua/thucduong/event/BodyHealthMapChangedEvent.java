@@ -0,0 +1,22 @@
+package com.nepnhaxua.thucduong.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published after a body health map document is saved or deleted.
+ * {@code bodyPart} is null for deletes, where only the id is known.
+ * {@code remote} is set when the write happened on another node.
+ */
+@Getter
+@AllArgsConstructor
+public class BodyHealthMapChangedEvent {
+    private final String id;
+    private final String bodyPart;
+    private final boolean deleted;
+    private final boolean remote;
+
+    public BodyHealthMapChangedEvent(String id, String bodyPart, boolean deleted) {
+        this(id, bodyPart, deleted, false);
+    }
+}
@@ -0,0 +1,86 @@
+package com.nepnhaxua.thucduong.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Relays product and health map change events to the other nodes over Redis pub/sub, so
+ * node-local state built from the catalog (search index, snapshots) follows writes made elsewhere.
+ * Message format: {@code nodeId|type|id|key|deleted} where type is P (product) or H (health map).
+ */
+@Slf4j
+@Component
+public class EntityChangeBroadcaster implements MessageListener {
+
+    private static final String PRODUCT = "P";
+    private static final String HEALTH_MAP = "H";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChannelTopic topic;
+
+    public EntityChangeBroadcaster(StringRedisTemplate redisTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   RedisMessageListenerContainer listenerContainer,
+                                   @Value("${app.events.channel:thucduong:events:entity}") String channel) {
+        this.redisTemplate = redisTemplate;
+        this.eventPublisher = eventPublisher;
+        this.topic = new ChannelTopic(channel);
+        listenerContainer.addMessageListener(this, topic);
+    }
+
+    @EventListener(condition = "!#event.remote")
+    public void onProductChanged(ProductChangedEvent event) {
+        publish(PRODUCT, event.getProductId(), event.getSlug(), event.isDeleted());
+    }
+
+    @EventListener(condition = "!#event.remote")
+    public void onBodyHealthMapChanged(BodyHealthMapChangedEvent event) {
+        publish(HEALTH_MAP, event.getId(), event.getBodyPart(), event.isDeleted());
+    }
+
+    private void publish(String type, String id, String key, boolean deleted) {
+        String message = String.join("|", nodeId, type, nullToEmpty(id), nullToEmpty(key), String.valueOf(deleted));
+        try {
+            redisTemplate.convertAndSend(topic.getTopic(), message);
+        } catch (Exception e) {
+            log.warn("Could not broadcast {} change for {}", type, id, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 5);
+        if (parts.length < 5 || nodeId.equals(parts[0])) {
+            return;
+        }
+        String id = emptyToNull(parts[2]);
+        String key = emptyToNull(parts[3]);
+        boolean deleted = Boolean.parseBoolean(parts[4]);
+        if (PRODUCT.equals(parts[1])) {
+            eventPublisher.publishEvent(new ProductChangedEvent(id, key, deleted, true));
+        } else if (HEALTH_MAP.equals(parts[1])) {
+            eventPublisher.publishEvent(new BodyHealthMapChangedEvent(id, key, deleted, true));
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
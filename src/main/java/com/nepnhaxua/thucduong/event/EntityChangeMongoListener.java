@@ -0,0 +1,47 @@
+package com.nepnhaxua.thucduong.event;
+
+import com.nepnhaxua.thucduong.entity.BodyHealthMap;
+import com.nepnhaxua.thucduong.entity.Product;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns MongoDB lifecycle events for products and body health maps into application events.
+ * Bulk and {@code @Update} writes bypass these callbacks and must publish their own events.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityChangeMongoListener extends AbstractMongoEventListener<Object> {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        if (event.getSource() instanceof Product product) {
+            eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), product.getSlug(), false));
+        } else if (event.getSource() instanceof BodyHealthMap healthMap) {
+            eventPublisher.publishEvent(
+                    new BodyHealthMapChangedEvent(healthMap.getId(), healthMap.getBodyPart(), false));
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        String id = singleId(event.getSource());
+        if ("products".equals(event.getCollectionName())) {
+            eventPublisher.publishEvent(new ProductChangedEvent(id, null, true));
+        } else if ("bodyHealthMap".equals(event.getCollectionName())) {
+            eventPublisher.publishEvent(new BodyHealthMapChangedEvent(id, null, true));
+        }
+    }
+
+    private static String singleId(Document filter) {
+        Object id = filter.get("_id");
+        return id == null || id instanceof Document ? null : id.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.nepnhaxua.thucduong.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published after a product document is saved or deleted.
+ * {@code productId} is null when a delete could not be narrowed to a single document, or when
+ * a bulk import changed many products at once.
+ * {@code remote} is set when the write happened on another node.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    private final String productId;
+    private final String slug;
+    private final boolean deleted;
+    private final boolean remote;
+
+    public ProductChangedEvent(String productId, String slug, boolean deleted) {
+        this(productId, slug, deleted, false);
+    }
+}
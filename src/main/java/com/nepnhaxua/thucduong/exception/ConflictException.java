@@ -0,0 +1,12 @@
+package com.nepnhaxua.thucduong.exception;
+
+/**
+ * The request is valid but conflicts with the current state (out of stock, reservation
+ * no longer held, ...); answered with 409
+ */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,337 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.exception.ConflictException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+import static com.nepnhaxua.thucduong.entity.InventoryReservation.*;
+
+/**
+ * Flash-sale mode for single products. Starting a sale holds its stock in Mongo as a lease and
+ * preloads the count into Redis, where a script takes units atomically and enforces the
+ * per-customer cap, so checkout traffic never queues on the product document. Each successful
+ * take is also appended to a Redis stream; the reconciler replays the stream into reservation
+ * documents (repairing any the request thread failed to write) and settles commits and releases
+ * back to {@code Product.inventory} in batches. Ending the sale dissolves the lease.
+ */
+@Slf4j
+@Service
+public class FlashSaleService {
+
+    static final RedisScript<Long> RESERVE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/flash-sale-reserve.lua"), Long.class);
+    static final RedisScript<Long> REFUND_SCRIPT = RedisScript.of(new ClassPathResource("scripts/flash-sale-refund.lua"), Long.class);
+
+    private static final String SALES_KEY = "thucduong:flash:sales";
+    private static final String OWNER = "flash-sale";
+    private static final String ANONYMOUS = "anonymous";
+    private static final int LOG_BATCH = 500;
+    // Lease outlives the sale so the reconciler ends it before a sweeper would
+    private static final Duration LEASE_GRACE = Duration.ofMinutes(10);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final ReservationLeases leases;
+
+    private volatile Map<String, Sale> sales = Map.of();
+
+    public FlashSaleService(StringRedisTemplate redisTemplate,
+                            MongoTemplate mongoTemplate,
+                            InventoryLedger ledger,
+                            ReservationLeases leases) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.leases = leases;
+    }
+
+    /**
+     * Put quantity units of a product on flash sale; ConflictException when it is already on sale
+     * or the stock is not there
+     */
+    public Sale start(String productId, int quantity, int perUserCap, Duration duration) {
+        if (quantity <= 0 || perUserCap < 0 || duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Flash sale needs a positive quantity and duration");
+        }
+        if (redisTemplate.opsForHash().hasKey(SALES_KEY, productId)) {
+            throw new ConflictException("Product " + productId + " is already on flash sale");
+        }
+        Product.Inventory inventory = ledger.inventory(productId);
+        String warehouse = null;
+        if (inventory.getLocations() != null && !inventory.getLocations().isEmpty()) {
+            warehouse = WarehouseAllocator.largest(inventory)
+                    .map(Product.Location::getWarehouse)
+                    .orElseThrow(() -> new ConflictException("Product " + productId + " is out of stock"));
+        }
+        LocalDateTime endsAt = LocalDateTime.now().plus(duration);
+        InventoryReservation lease = leases.open(productId, warehouse, OWNER, "flash-sale:" + productId, quantity,
+                endsAt.plus(LEASE_GRACE));
+        if (lease == null) {
+            throw new ConflictException("Not enough stock for a flash sale of " + quantity + " units");
+        }
+
+        Sale sale = new Sale(productId, lease.getId(), warehouse, perUserCap, endsAt, (long) quantity);
+        Keys keys = keys(productId);
+        redisTemplate.delete(List.of(keys.users, keys.log));
+        redisTemplate.opsForValue().set(keys.stock, String.valueOf(quantity));
+        if (!Boolean.TRUE.equals(redisTemplate.opsForHash().putIfAbsent(SALES_KEY, productId, encode(sale)))) {
+            leases.dissolve(lease.getId(), RELEASED);
+            throw new ConflictException("Product " + productId + " is already on flash sale");
+        }
+        refresh();
+        log.info("Flash sale started for product {}: {} units, cap {} per customer, until {}",
+                productId, quantity, perUserCap, endsAt);
+        return sale;
+    }
+
+    /**
+     * End a sale early (or on time): unsold and unclaimed units go back to regular stock
+     */
+    public void end(String productId) {
+        Sale sale = decode(productId, (String) redisTemplate.opsForHash().get(SALES_KEY, productId));
+        if (sale == null || redisTemplate.opsForHash().delete(SALES_KEY, productId) == 0) {
+            return;
+        }
+        Keys keys = keys(productId);
+        // Without the stock key the script answers "no sale"; the log then holds every take
+        redisTemplate.delete(keys.stock);
+        replayLog(sale);
+        try {
+            leases.settle(sale.getLeaseId(), productId, sale.getWarehouse(), null);
+        } catch (ReservationLeases.LeaseLostException e) {
+            log.debug("Flash sale lease {} already dissolved", sale.getLeaseId());
+        }
+        leases.dissolve(sale.getLeaseId(), RELEASED);
+        redisTemplate.delete(List.of(keys.users, keys.log));
+        refresh();
+        log.info("Flash sale ended for product {}", productId);
+    }
+
+    public List<Sale> active() {
+        List<Sale> active = new ArrayList<>();
+        for (Sale sale : sales.values()) {
+            String stock = redisTemplate.opsForValue().get(keys(sale.getProductId()).stock);
+            active.add(new Sale(sale.getProductId(), sale.getLeaseId(), sale.getWarehouse(), sale.getPerUserCap(),
+                    sale.getEndsAt(), stock != null ? Long.parseLong(stock) : 0L));
+        }
+        return active;
+    }
+
+    /**
+     * Reserve from the product's flash sale; null when it is not on sale (take the regular path),
+     * ConflictException when sold out or over the customer's cap
+     */
+    public InventoryReservation reserve(String productId, int quantity, String reference, String userId,
+                                        LocalDateTime expiresAt) {
+        Sale sale = sales.get(productId);
+        if (sale == null) {
+            return null;
+        }
+        if (sale.getPerUserCap() > 0 && userId == null) {
+            throw new IllegalArgumentException("Sign in to buy flash sale products");
+        }
+        String customer = userId != null ? userId : ANONYMOUS;
+        String id = new ObjectId().toHexString();
+        Keys keys = keys(productId);
+        Long result = redisTemplate.execute(RESERVE_SCRIPT, List.of(keys.stock, keys.users, keys.log),
+                customer, String.valueOf(quantity), String.valueOf(sale.getPerUserCap()), id,
+                String.valueOf(expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        if (result == null || result == -1) {
+            return null;
+        }
+        if (result == -2) {
+            throw new ConflictException("Flash sale limit of " + sale.getPerUserCap() + " per customer reached");
+        }
+        if (result == -3) {
+            throw new ConflictException("Flash sale sold out");
+        }
+        InventoryReservation reservation = escrow(sale, id, quantity, reference, userId, expiresAt);
+        try {
+            return mongoTemplate.insert(reservation);
+        } catch (DuplicateKeyException e) {
+            // The reconciler replayed it from the log first
+            return mongoTemplate.findById(id, InventoryReservation.class);
+        }
+    }
+
+    /**
+     * Replay the reservation logs, settle finished reservations and end sales that ran out of time
+     */
+    @Scheduled(fixedDelayString = "${app.flash-sale.reconcile-interval:1000}")
+    public void reconcile() {
+        refresh();
+        for (Sale sale : sales.values()) {
+            try {
+                if (LocalDateTime.now().isAfter(sale.getEndsAt())) {
+                    end(sale.getProductId());
+                    continue;
+                }
+                replayLog(sale);
+                ReservationLeases.Settlement settlement = leases.settle(sale.getLeaseId(), sale.getProductId(),
+                        sale.getWarehouse(), null);
+                refund(sale, settlement.getReturned());
+            } catch (ReservationLeases.LeaseLostException e) {
+                log.warn("Flash sale lease {} of product {} was dissolved, ending the sale",
+                        sale.getLeaseId(), sale.getProductId());
+                end(sale.getProductId());
+            } catch (Exception e) {
+                // Usually another node reconciling the same sale
+                log.debug("Could not reconcile flash sale of product {}", sale.getProductId(), e);
+            }
+        }
+    }
+
+    // Make sure every take in the log has its reservation document, then trim the log
+    private void replayLog(Sale sale) {
+        String logKey = keys(sale.getProductId()).log;
+        while (true) {
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                    .range(logKey, Range.unbounded(), Limit.limit().count(LOG_BATCH));
+            if (records == null || records.isEmpty()) {
+                return;
+            }
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, InventoryReservation.class);
+            for (MapRecord<String, Object, Object> record : records) {
+                Map<Object, Object> value = record.getValue();
+                String user = (String) value.get("user");
+                LocalDateTime expiresAt = LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(Long.parseLong((String) value.get("exp"))), ZoneId.systemDefault());
+                InventoryReservation reservation = escrow(sale, (String) value.get("id"),
+                        Integer.parseInt((String) value.get("qty")), null,
+                        ANONYMOUS.equals(user) ? null : user, expiresAt);
+                bulk.upsert(Query.query(Criteria.where("_id").is(reservation.getId())), setOnInsert(reservation));
+            }
+            bulk.execute();
+            redisTemplate.opsForStream().delete(logKey, records.stream().map(MapRecord::getId).toArray(RecordId[]::new));
+            if (records.size() < LOG_BATCH) {
+                return;
+            }
+        }
+    }
+
+    private void refund(Sale sale, List<InventoryReservation> returned) {
+        Keys keys = keys(sale.getProductId());
+        for (InventoryReservation reservation : returned) {
+            String customer = reservation.getUserId() != null ? reservation.getUserId() : ANONYMOUS;
+            redisTemplate.execute(REFUND_SCRIPT, List.of(keys.stock, keys.users),
+                    customer, String.valueOf(reservation.getQuantity()));
+        }
+    }
+
+    private void refresh() {
+        Map<String, Sale> current = new HashMap<>();
+        redisTemplate.opsForHash().entries(SALES_KEY).forEach((productId, value) -> {
+            Sale sale = decode((String) productId, (String) value);
+            if (sale != null) {
+                current.put(sale.getProductId(), sale);
+            }
+        });
+        sales = Map.copyOf(current);
+    }
+
+    private static InventoryReservation escrow(Sale sale, String id, int quantity, String reference, String userId,
+                                               LocalDateTime expiresAt) {
+        return InventoryReservation.builder()
+                .id(id)
+                .kind(KIND_ORDER)
+                .productId(sale.getProductId())
+                .reference(reference)
+                .userId(userId)
+                .quantity(quantity)
+                .allocations(List.of(new Allocation(sale.getWarehouse(), quantity)))
+                .status(HELD)
+                .leaseId(sale.getLeaseId())
+                .owner(OWNER)
+                .settled(false)
+                .createdAt(LocalDateTime.now())
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    private Update setOnInsert(InventoryReservation reservation) {
+        org.bson.Document document = new org.bson.Document();
+        mongoTemplate.getConverter().write(reservation, document);
+        document.remove("_id");
+        Update update = new Update();
+        document.forEach(update::setOnInsert);
+        return update;
+    }
+
+    // leaseId|warehouse|cap|endsAt (epoch millis)
+    private static String encode(Sale sale) {
+        return String.join("|", sale.getLeaseId(), sale.getWarehouse() != null ? sale.getWarehouse() : "",
+                String.valueOf(sale.getPerUserCap()),
+                String.valueOf(sale.getEndsAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+    }
+
+    private static Sale decode(String productId, String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split("\\|", 4);
+        if (parts.length < 4) {
+            return null;
+        }
+        LocalDateTime endsAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[3])), ZoneId.systemDefault());
+        return new Sale(productId, parts[0], parts[1].isEmpty() ? null : parts[1], Integer.parseInt(parts[2]), endsAt, null);
+    }
+
+    // Hash-tagged so a sale's keys share a cluster slot, as the script needs
+    static Keys keys(String productId) {
+        String prefix = "thucduong:flash:{" + productId + "}:";
+        return new Keys(prefix + "stock", prefix + "users", prefix + "log");
+    }
+
+    @AllArgsConstructor
+    static class Keys {
+        final String stock;
+        final String users;
+        final String log;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Sale {
+        private String productId;
+        private String leaseId;
+        private String warehouse;
+        private int perUserCap;
+        private LocalDateTime endsAt;
+        private Long remaining;
+    }
+
+    @Data
+    public static class StartRequest {
+        private String productId;
+        private int quantity;
+        private int perUserCap;
+        private int durationMinutes;
+    }
+}
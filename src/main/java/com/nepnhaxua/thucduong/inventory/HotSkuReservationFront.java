@@ -0,0 +1,350 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import com.nepnhaxua.thucduong.entity.Product;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.nepnhaxua.thucduong.entity.InventoryReservation.*;
+
+/**
+ * In-memory reservation front for hot products. A product drawing many reservations gets a
+ * lease on this node: a block of its stock held in Mongo like any reservation. Reservations are
+ * then carved from the lease with a CAS on striped local counters plus an insert of their own
+ * document, so the product document is not written per reservation. Commits and releases of these
+ * escrow reservations are settled by the owning node in batches, one product update and one lease
+ * update per interval, which also renews the lease. Units are only handed out while the last
+ * renewal is comfortably within the lease ttl, so a node that stops renewing stops selling before
+ * a sweeper can dissolve its lease. Leases are dissolved when the product cools down, on shutdown,
+ * or by any node's sweeper once they expired (see {@link ReservationLeases}).
+ */
+@Slf4j
+@Component
+public class HotSkuReservationFront {
+
+    private static final Duration CLOSE_WAIT = Duration.ofSeconds(5);
+    private static final int STRIPES = Integer.highestOneBit(Math.min(16, Math.max(1, Runtime.getRuntime().availableProcessors())));
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final ReservationLeases leases;
+    private final int hotThreshold;
+    private final int idleWindows;
+    private final int leaseSize;
+    private final Duration leaseTtl;
+    private final Duration leaseMargin;
+
+    private final Map<String, LongAdder> demand = new ConcurrentHashMap<>();
+    private final Map<String, Escrow> escrows = new ConcurrentHashMap<>();
+
+    public HotSkuReservationFront(MongoTemplate mongoTemplate,
+                                  InventoryLedger ledger,
+                                  ReservationLeases leases,
+                                  @Value("${app.inventory.hot.threshold:30}") int hotThreshold,
+                                  @Value("${app.inventory.hot.idle-windows:6}") int idleWindows,
+                                  @Value("${app.inventory.hot.lease-size:50}") int leaseSize,
+                                  @Value("${app.inventory.hot.lease-ttl:120000}") long leaseTtlMillis,
+                                  @Value("${app.inventory.hot.lease-margin:30000}") long leaseMarginMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.leases = leases;
+        this.hotThreshold = hotThreshold;
+        this.idleWindows = idleWindows;
+        this.leaseSize = leaseSize;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMillis);
+        this.leaseMargin = Duration.ofMillis(leaseMarginMillis);
+    }
+
+    public void recordDemand(String productId) {
+        demand.computeIfAbsent(productId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * Reserve from this node's lease; null when the product has no open lease or it cannot be
+     * topped up, in which case the caller makes a regular reservation
+     */
+    public InventoryReservation tryReserve(String productId, int quantity, String reference, String userId,
+                                           LocalDateTime expiresAt) {
+        Escrow escrow = escrows.get(productId);
+        if (escrow == null) {
+            return null;
+        }
+        escrow.inFlight.increment();
+        try {
+            if (escrow.closed || !escrow.usable() || (!escrow.take(quantity) && !(topUp(escrow, quantity) && escrow.take(quantity)))) {
+                return null;
+            }
+            InventoryReservation reservation = InventoryReservation.builder()
+                    .kind(KIND_ORDER)
+                    .productId(productId)
+                    .reference(reference)
+                    .userId(userId)
+                    .quantity(quantity)
+                    .allocations(List.of(new Allocation(escrow.warehouse, quantity)))
+                    .status(HELD)
+                    .leaseId(escrow.leaseId)
+                    .owner(nodeId)
+                    .settled(false)
+                    .createdAt(LocalDateTime.now())
+                    .expiresAt(expiresAt)
+                    .build();
+            try {
+                return mongoTemplate.insert(reservation);
+            } catch (RuntimeException e) {
+                escrow.give(quantity);
+                throw e;
+            }
+        } finally {
+            escrow.inFlight.decrement();
+            if (escrow.closed) {
+                LockSupport.unpark(escrow.closer);
+            }
+        }
+    }
+
+    /**
+     * Promote products whose reservation rate crossed the threshold, demote idle ones
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.hot.window:10000}")
+    public void evaluate() {
+        Map<String, Long> counts = new HashMap<>();
+        demand.forEach((productId, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                counts.put(productId, count);
+            }
+        });
+        demand.keySet().removeIf(productId -> !counts.containsKey(productId));
+
+        for (Escrow escrow : escrows.values()) {
+            escrow.idleWindows = counts.getOrDefault(escrow.productId, 0L) * 4 < hotThreshold ? escrow.idleWindows + 1 : 0;
+            if (escrow.idleWindows >= idleWindows) {
+                close(escrow);
+            }
+        }
+        counts.forEach((productId, count) -> {
+            if (count >= hotThreshold && !escrows.containsKey(productId)) {
+                try {
+                    open(productId);
+                } catch (Exception e) {
+                    log.warn("Could not open a reservation lease for hot product {}", productId, e);
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.hot.settle-interval:1000}")
+    public void settle() {
+        for (Escrow escrow : escrows.values()) {
+            try {
+                settle(escrow);
+            } catch (Exception e) {
+                log.warn("Could not settle reservation lease {} of product {}", escrow.leaseId, escrow.productId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        escrows.values().forEach(this::close);
+    }
+
+    private void open(String productId) {
+        Product.Inventory inventory = ledger.inventory(productId);
+        if (!inventory.isTrackInventory() || inventory.isAllowBackorder()) {
+            return;
+        }
+        String warehouse = null;
+        if (inventory.getLocations() != null && !inventory.getLocations().isEmpty()) {
+            Optional<Product.Location> largest = WarehouseAllocator.largest(inventory);
+            if (largest.isEmpty()) {
+                return;
+            }
+            warehouse = largest.get().getWarehouse();
+        }
+        long renewing = System.currentTimeMillis();
+        InventoryReservation lease = leases.open(productId, warehouse, nodeId, "lease:" + nodeId, 0,
+                LocalDateTime.now().plus(leaseTtl));
+        Escrow escrow = new Escrow(productId, lease.getId(), warehouse);
+        escrow.renewed(renewing, leaseTtl.minus(leaseMargin));
+        escrows.put(productId, escrow);
+        log.info("Product {} is hot, serving reservations from lease {}", productId, lease.getId());
+    }
+
+    private boolean topUp(Escrow escrow, int quantity) {
+        synchronized (escrow) {
+            if (escrow.closed) {
+                return false;
+            }
+            if (escrow.available() >= quantity) {
+                return true;
+            }
+            int amount = Math.max(leaseSize, quantity);
+            try {
+                if (leases.grow(escrow.leaseId, escrow.productId, escrow.warehouse, amount)) {
+                    escrow.add(amount);
+                    return true;
+                }
+            } catch (ReservationLeases.LeaseLostException e) {
+                abandon(escrow);
+            } catch (Exception e) {
+                // Write conflicts on the hot document: let this request take the regular path
+                log.debug("Could not top up lease {} of product {}", escrow.leaseId, escrow.productId, e);
+            }
+            return false;
+        }
+    }
+
+    private void settle(Escrow escrow) {
+        synchronized (escrow) {
+            if (escrow.closed) {
+                return;
+            }
+            long renewing = System.currentTimeMillis();
+            try {
+                ReservationLeases.Settlement settlement = leases.settle(escrow.leaseId, escrow.productId,
+                        escrow.warehouse, LocalDateTime.now().plus(leaseTtl));
+                escrow.give(settlement.returnedUnits());
+                escrow.renewed(renewing, leaseTtl.minus(leaseMargin));
+            } catch (ReservationLeases.LeaseLostException e) {
+                abandon(escrow);
+            }
+        }
+    }
+
+    private void close(Escrow escrow) {
+        escrow.closer = Thread.currentThread();
+        escrow.closed = true;
+        escrows.remove(escrow.productId, escrow);
+        // Let reservations already past the closed check finish their insert; the last one wakes us.
+        // Stragglers landing after the dissolve are adopted by the sweeper.
+        long deadline = System.nanoTime() + CLOSE_WAIT.toNanos();
+        while (escrow.inFlight.sum() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(escrow, deadline - System.nanoTime());
+        }
+        synchronized (escrow) {
+            escrow.drain();
+            try {
+                leases.dissolve(escrow.leaseId, RELEASED);
+                log.info("Product {} cooled down, lease {} dissolved", escrow.productId, escrow.leaseId);
+            } catch (Exception e) {
+                // The lease stops being renewed and is dissolved by a sweeper once it expires
+                log.warn("Could not dissolve lease {} of product {}", escrow.leaseId, escrow.productId, e);
+            }
+        }
+    }
+
+    // The lease was dissolved elsewhere (missed renewals); its stock is already accounted for
+    private void abandon(Escrow escrow) {
+        log.warn("Lost reservation lease {} of product {}", escrow.leaseId, escrow.productId);
+        escrow.closed = true;
+        escrows.remove(escrow.productId, escrow);
+        escrow.drain();
+    }
+
+    /**
+     * Local share of a lease, striped so concurrent reservations mostly CAS different counters
+     */
+    static final class Escrow {
+        private final String productId;
+        private final String leaseId;
+        private final String warehouse;
+        private final AtomicIntegerArray stripes = new AtomicIntegerArray(STRIPES);
+        private final LongAdder inFlight = new LongAdder();
+        private volatile boolean closed;
+        private volatile Thread closer;
+        private volatile long usableUntil;
+        private int idleWindows;
+
+        Escrow(String productId, String leaseId, String warehouse) {
+            this.productId = productId;
+            this.leaseId = leaseId;
+            this.warehouse = warehouse;
+        }
+
+        // The lease was renewed at renewing (taken before the call); trust it for ttl minus the margin
+        void renewed(long renewing, Duration trusted) {
+            usableUntil = renewing + trusted.toMillis();
+        }
+
+        boolean usable() {
+            return System.currentTimeMillis() < usableUntil;
+        }
+
+        /**
+         * Take quantity starting at this thread's stripe, gathering from the others if needed
+         */
+        boolean take(int quantity) {
+            int home = home();
+            int taken = 0;
+            for (int i = 0; i < STRIPES && taken < quantity; i++) {
+                int stripe = (home + i) & (STRIPES - 1);
+                while (true) {
+                    int have = stripes.get(stripe);
+                    int grab = Math.min(have, quantity - taken);
+                    if (grab <= 0) {
+                        break;
+                    }
+                    if (stripes.compareAndSet(stripe, have, have - grab)) {
+                        taken += grab;
+                        break;
+                    }
+                }
+            }
+            if (taken < quantity) {
+                give(taken);
+                return false;
+            }
+            return true;
+        }
+
+        void give(int quantity) {
+            if (quantity > 0) {
+                stripes.addAndGet(home(), quantity);
+            }
+        }
+
+        // Spread a top-up over all stripes
+        void add(int quantity) {
+            for (int i = 0; i < STRIPES; i++) {
+                int share = quantity / STRIPES + (i < quantity % STRIPES ? 1 : 0);
+                if (share > 0) {
+                    stripes.addAndGet(i, share);
+                }
+            }
+        }
+
+        int available() {
+            int sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += stripes.get(i);
+            }
+            return sum;
+        }
+
+        int drain() {
+            int sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += stripes.getAndSet(i, 0);
+            }
+            return sum;
+        }
+
+        private static int home() {
+            return (int) Thread.currentThread().getId() & (STRIPES - 1);
+        }
+    }
+}
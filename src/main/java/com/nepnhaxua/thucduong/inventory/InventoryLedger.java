@@ -0,0 +1,162 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import com.nepnhaxua.thucduong.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Atomic stock operations on product documents. Available stock is quantity - reserved, for the
+ * product and for each warehouse location; a conditional hold checks both inside the update
+ * filter, so concurrent holds can never take stock below zero.
+ */
+@Component
+@RequiredArgsConstructor
+public class InventoryLedger {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Inventory of an active product
+     */
+    public Product.Inventory inventory(String productId) {
+        Query query = Query.query(Criteria.where("_id").is(productId).and("flags.isActive").is(true));
+        query.fields().include("inventory");
+        Product product = mongoTemplate.findOne(query, Product.class);
+        if (product == null) {
+            throw new NoSuchElementException("Product not found: " + productId);
+        }
+        return product.getInventory() != null ? product.getInventory() : new Product.Inventory();
+    }
+
+    /**
+     * Move quantity from available to reserved at a warehouse (null: product level only).
+     * Conditional holds fail instead of overselling; unconditional ones are for backorders.
+     */
+    public boolean hold(String productId, String warehouse, int quantity, boolean conditional) {
+        Query query = Query.query(Criteria.where("_id").is(productId));
+        if (conditional) {
+            List<Document> conditions = new ArrayList<>();
+            conditions.add(new Document("$gte", List.of(
+                    available("$inventory.quantity", "$inventory.reserved"), quantity)));
+            if (warehouse != null) {
+                conditions.add(new Document("$anyElementTrue", List.of(new Document("$map", new Document()
+                        .append("input", new Document("$ifNull", Arrays.asList("$inventory.locations", List.of())))
+                        .append("as", "l")
+                        .append("in", new Document("$and", List.of(
+                                new Document("$eq", List.of("$$l.warehouse", warehouse)),
+                                new Document("$gte", List.of(available("$$l.quantity", "$$l.reserved"), quantity)))))))));
+            }
+            query.addCriteria(Criteria.expr(() -> new Document("$and", conditions)));
+        }
+        return mongoTemplate.updateFirst(query, update(warehouse, 0, quantity), Product.class).getModifiedCount() > 0;
+    }
+
+    /**
+     * Apply stock deltas with one unordered bulk write, merging deltas of the same location
+     */
+    public void apply(Collection<StockDelta> deltas) {
+        Map<String, StockDelta> merged = new LinkedHashMap<>();
+        for (StockDelta delta : deltas) {
+            merged.merge(delta.productId + "|" + delta.warehouse, delta, StockDelta::plus);
+        }
+        merged.values().removeIf(StockDelta::isEmpty);
+        if (merged.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (StockDelta delta : merged.values()) {
+            bulk.updateOne(Query.query(Criteria.where("_id").is(delta.productId)),
+                    update(delta.warehouse, delta.quantity, delta.reserved));
+        }
+        bulk.execute();
+    }
+
+    private static Update update(String warehouse, int quantity, int reserved) {
+        Update update = new Update().inc(Product.REVISION, 1);
+        if (quantity != 0) {
+            update.inc("inventory.quantity", quantity);
+        }
+        if (reserved != 0) {
+            update.inc("inventory.reserved", reserved);
+        }
+        if (warehouse != null) {
+            if (quantity != 0) {
+                update.inc("inventory.locations.$[loc].quantity", quantity);
+            }
+            if (reserved != 0) {
+                update.inc("inventory.locations.$[loc].reserved", reserved);
+            }
+            update.filterArray(Criteria.where("loc.warehouse").is(warehouse));
+        }
+        return update;
+    }
+
+    private static Document available(String quantity, String reserved) {
+        return new Document("$subtract", List.of(
+                new Document("$ifNull", List.of(quantity, 0)),
+                new Document("$ifNull", List.of(reserved, 0))));
+    }
+
+    /**
+     * Change to the on-hand quantity and the reserved count of one product location
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class StockDelta {
+        private final String productId;
+        private final String warehouse;
+        private final int quantity;
+        private final int reserved;
+
+        public static StockDelta release(String productId, String warehouse, int quantity) {
+            return new StockDelta(productId, warehouse, 0, -quantity);
+        }
+
+        // Held stock leaves the warehouse
+        public static StockDelta commit(String productId, String warehouse, int quantity) {
+            return new StockDelta(productId, warehouse, -quantity, -quantity);
+        }
+
+        // Stock leaves the warehouse without having been held
+        public static StockDelta sold(String productId, String warehouse, int quantity) {
+            return new StockDelta(productId, warehouse, -quantity, 0);
+        }
+
+        public static List<StockDelta> release(InventoryReservation reservation) {
+            return reservation.getAllocations().stream()
+                    .map(a -> release(reservation.getProductId(), a.getWarehouse(), a.getQuantity()))
+                    .toList();
+        }
+
+        public static List<StockDelta> commit(InventoryReservation reservation) {
+            return reservation.getAllocations().stream()
+                    .map(a -> commit(reservation.getProductId(), a.getWarehouse(), a.getQuantity()))
+                    .toList();
+        }
+
+        public static List<StockDelta> sold(InventoryReservation reservation) {
+            return reservation.getAllocations().stream()
+                    .map(a -> sold(reservation.getProductId(), a.getWarehouse(), a.getQuantity()))
+                    .toList();
+        }
+
+        boolean isEmpty() {
+            return quantity == 0 && reserved == 0;
+        }
+
+        StockDelta plus(StockDelta other) {
+            return new StockDelta(productId, warehouse, quantity + other.quantity, reserved + other.reserved);
+        }
+    }
+}
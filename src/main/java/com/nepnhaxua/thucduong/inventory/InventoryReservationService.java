@@ -0,0 +1,275 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import com.mongodb.MongoException;
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.exception.ConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static com.nepnhaxua.thucduong.entity.InventoryReservation.*;
+
+/**
+ * Oversell-safe stock reservations: reserve holds stock (conditionally, per warehouse), commit
+ * turns the hold into a sale, release gives it back, and holds nobody commits expire. Products
+ * on flash sale are served by {@link FlashSaleService}, other hot products from a
+ * {@link HotSkuReservationFront} lease instead of the product document.
+ */
+@Slf4j
+@Service
+public class InventoryReservationService {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int SWEEP_BATCH = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final HotSkuReservationFront hotFront;
+    private final FlashSaleService flashSaleService;
+    private final ReservationLeases leases;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration reservationTtl;
+    private final Duration retention;
+
+    public InventoryReservationService(MongoTemplate mongoTemplate,
+                                       InventoryLedger ledger,
+                                       HotSkuReservationFront hotFront,
+                                       FlashSaleService flashSaleService,
+                                       ReservationLeases leases,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.inventory.reservation-ttl:900000}") long reservationTtlMillis,
+                                       @Value("${app.inventory.retention-days:7}") int retentionDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.hotFront = hotFront;
+        this.flashSaleService = flashSaleService;
+        this.leases = leases;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reservationTtl = Duration.ofMillis(reservationTtlMillis);
+        this.retention = Duration.ofDays(retentionDays);
+    }
+
+    public InventoryReservation reserve(String productId, int quantity, String reference, String userId) {
+        return reserve(productId, quantity, reference, userId, reservationTtl);
+    }
+
+    /**
+     * Hold stock for a reference (order, checkout) of a user (null: guest) until commit, release
+     * or ttl; ConflictException when there is not enough stock
+     */
+    public InventoryReservation reserve(String productId, int quantity, String reference, String userId, Duration ttl) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        Product.Inventory inventory = ledger.inventory(productId);
+        if (inventory.getMinOrderQuantity() != null && quantity < inventory.getMinOrderQuantity()) {
+            throw new IllegalArgumentException("Minimum order quantity is " + inventory.getMinOrderQuantity());
+        }
+        if (inventory.getMaxOrderQuantity() != null && quantity > inventory.getMaxOrderQuantity()) {
+            throw new IllegalArgumentException("Maximum order quantity is " + inventory.getMaxOrderQuantity());
+        }
+        LocalDateTime expiresAt = LocalDateTime.now().plus(ttl);
+        if (!inventory.isTrackInventory()) {
+            return insert(productId, quantity, reference, userId, List.of(), expiresAt);
+        }
+
+        InventoryReservation flashSale = flashSaleService.reserve(productId, quantity, reference, userId, expiresAt);
+        if (flashSale != null) {
+            return flashSale;
+        }
+        hotFront.recordDemand(productId);
+        InventoryReservation escrow = hotFront.tryReserve(productId, quantity, reference, userId, expiresAt);
+        if (escrow != null) {
+            return escrow;
+        }
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            boolean backorder = inventory.isAllowBackorder()
+                    && WarehouseAllocator.available(inventory.getQuantity(), inventory.getReserved()) < quantity;
+            List<Allocation> allocations = backorder
+                    ? List.of(new Allocation(null, quantity))
+                    : WarehouseAllocator.allocate(inventory, quantity);
+            if (allocations.isEmpty()) {
+                break;
+            }
+            InventoryReservation reservation = hold(productId, quantity, reference, userId, allocations, !backorder, expiresAt);
+            if (reservation != null) {
+                return reservation;
+            }
+            // Lost a race for the last units somewhere: plan again from fresh numbers
+            inventory = ledger.inventory(productId);
+        }
+        throw new ConflictException("Not enough stock for product " + productId);
+    }
+
+    /**
+     * Turn a held reservation into a sale; committing twice is a no-op
+     */
+    public InventoryReservation commit(String reservationId) {
+        return transactionTemplate.execute(status -> {
+            InventoryReservation reservation = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(reservationId)
+                            .and("kind").is(KIND_ORDER)
+                            .and("status").is(HELD)
+                            .and("expiresAt").gt(LocalDateTime.now())),
+                    close(COMMITTED),
+                    FindAndModifyOptions.options().returnNew(true),
+                    InventoryReservation.class);
+            if (reservation == null) {
+                return current(reservationId, COMMITTED);
+            }
+            // Escrow reservations are settled in batches by the node holding their lease
+            if (!reservation.isEscrow()) {
+                ledger.apply(InventoryLedger.StockDelta.commit(reservation));
+            }
+            return reservation;
+        });
+    }
+
+    /**
+     * Give held stock back; releasing twice (or after expiry) is a no-op
+     */
+    public InventoryReservation release(String reservationId) {
+        return transactionTemplate.execute(status -> {
+            InventoryReservation reservation = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(reservationId)
+                            .and("kind").is(KIND_ORDER)
+                            .and("status").is(HELD)),
+                    close(RELEASED),
+                    FindAndModifyOptions.options().returnNew(true),
+                    InventoryReservation.class);
+            if (reservation == null) {
+                InventoryReservation existing = current(reservationId, null);
+                if (COMMITTED.equals(existing.getStatus())) {
+                    throw new ConflictException("Reservation " + reservationId + " is already committed");
+                }
+                return existing;
+            }
+            if (!reservation.isEscrow()) {
+                ledger.apply(InventoryLedger.StockDelta.release(reservation));
+            }
+            return reservation;
+        });
+    }
+
+    /**
+     * Expire holds past their ttl and dissolve leases of nodes that went away
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.sweep-interval:30000}")
+    public void sweep() {
+        leases.dissolveExpired();
+        leases.adoptOrphans();
+        try {
+            int expired;
+            do {
+                Integer count = transactionTemplate.execute(status -> expireBatch());
+                expired = count != null ? count : 0;
+            } while (expired == SWEEP_BATCH);
+        } catch (Exception e) {
+            // Usually another node sweeping the same reservations
+            log.debug("Reservation sweep interrupted, retrying next time", e);
+        }
+    }
+
+    private int expireBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("kind").is(KIND_ORDER)
+                        .and("status").is(HELD)
+                        .and("expiresAt").lt(now)
+                        .and("leaseId").is(null))
+                .limit(SWEEP_BATCH);
+        List<InventoryReservation> expired = mongoTemplate.find(query, InventoryReservation.class);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        long updated = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("_id").in(expired.stream().map(InventoryReservation::getId).toList())
+                        .and("status").is(HELD)),
+                new Update().set("status", EXPIRED).set("purgeAt", now.plus(retention)),
+                InventoryReservation.class).getModifiedCount();
+        if (updated != expired.size()) {
+            throw new ConcurrentModificationException("Reservations changed while expiring");
+        }
+        List<InventoryLedger.StockDelta> deltas = new ArrayList<>();
+        expired.forEach(r -> deltas.addAll(InventoryLedger.StockDelta.release(r)));
+        ledger.apply(deltas);
+        log.debug("Expired {} stock reservations", expired.size());
+        return expired.size();
+    }
+
+    // Holds and the reservation document commit together, so a crash in between cannot leak reserved
+    // stock; null when a hold failed or conflicted with a concurrent one
+    private InventoryReservation hold(String productId, int quantity, String reference, String userId,
+                                      List<Allocation> allocations, boolean conditional, LocalDateTime expiresAt) {
+        try {
+            return transactionTemplate.execute(status -> {
+                for (Allocation allocation : allocations) {
+                    if (!ledger.hold(productId, allocation.getWarehouse(), allocation.getQuantity(), conditional)) {
+                        status.setRollbackOnly();
+                        return null;
+                    }
+                }
+                return insert(productId, quantity, reference, userId, allocations, expiresAt);
+            });
+        } catch (DataAccessException e) {
+            if (!isTransient(e)) {
+                throw e;
+            }
+            log.debug("Stock hold for product {} conflicted with another, retrying", productId);
+            return null;
+        }
+    }
+
+    private static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof MongoException mongo && mongo.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private InventoryReservation insert(String productId, int quantity, String reference, String userId,
+                                        List<Allocation> allocations, LocalDateTime expiresAt) {
+        return mongoTemplate.insert(InventoryReservation.builder()
+                .kind(KIND_ORDER)
+                .productId(productId)
+                .reference(reference)
+                .userId(userId)
+                .quantity(quantity)
+                .allocations(allocations)
+                .status(HELD)
+                .createdAt(LocalDateTime.now())
+                .expiresAt(expiresAt)
+                .build());
+    }
+
+    private InventoryReservation current(String reservationId, String expected) {
+        InventoryReservation existing = mongoTemplate.findById(reservationId, InventoryReservation.class);
+        if (existing == null || !KIND_ORDER.equals(existing.getKind())) {
+            throw new NoSuchElementException("Reservation not found: " + reservationId);
+        }
+        if (expected != null && !expected.equals(existing.getStatus())) {
+            throw new ConflictException("Reservation " + reservationId + " is no longer held");
+        }
+        return existing;
+    }
+
+    private Update close(String status) {
+        return new Update().set("status", status).set("purgeAt", LocalDateTime.now().plus(retention));
+    }
+}
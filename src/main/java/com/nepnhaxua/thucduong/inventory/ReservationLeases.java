@@ -0,0 +1,294 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static com.nepnhaxua.thucduong.entity.InventoryReservation.*;
+
+/**
+ * Leases: blocks of a product's stock held in Mongo by one holder (a node's hot product front,
+ * a flash sale) that hands out escrow reservations without touching the product document.
+ * Finished escrow reservations are settled in batches; a dissolved lease applies pending
+ * commits, adopts still-held escrow reservations as regular ones and releases the rest.
+ */
+@Slf4j
+@Component
+public class ReservationLeases {
+
+    private static final int SETTLE_BATCH = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+
+    public ReservationLeases(MongoTemplate mongoTemplate,
+                             InventoryLedger ledger,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.inventory.retention-days:7}") int retentionDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = Duration.ofDays(retentionDays);
+    }
+
+    /**
+     * Open a lease holding quantity units (may be 0); null when that much is not available
+     */
+    public InventoryReservation open(String productId, String warehouse, String owner, String reference,
+                                     int quantity, LocalDateTime expiresAt) {
+        return transactionTemplate.execute(status -> {
+            if (quantity > 0 && !ledger.hold(productId, warehouse, quantity, true)) {
+                return null;
+            }
+            return mongoTemplate.insert(InventoryReservation.builder()
+                    .kind(KIND_LEASE)
+                    .productId(productId)
+                    .reference(reference)
+                    .quantity(quantity)
+                    .allocations(List.of(new Allocation(warehouse, quantity)))
+                    .status(HELD)
+                    .owner(owner)
+                    .createdAt(LocalDateTime.now())
+                    .expiresAt(expiresAt)
+                    .build());
+        });
+    }
+
+    /**
+     * Hold more stock for a lease; false when not available, LeaseLostException when the lease
+     * was dissolved meanwhile
+     */
+    public boolean grow(String leaseId, String productId, String warehouse, int amount) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!ledger.hold(productId, warehouse, amount, true)) {
+                return false;
+            }
+            Query query = Query.query(Criteria.where("_id").is(leaseId).and("status").is(HELD));
+            Update update = new Update().inc("quantity", amount).inc("allocations.0.quantity", amount);
+            if (mongoTemplate.updateFirst(query, update, InventoryReservation.class).getModifiedCount() == 0) {
+                throw new LeaseLostException(leaseId);
+            }
+            return true;
+        }));
+    }
+
+    /**
+     * Apply what happened to a lease's escrow reservations since the last settlement: expired
+     * holds are closed, commits are written to the product document in one update, and released
+     * or expired reservations are handed back for the holder to reuse their units.
+     * Renews the lease until renewUntil unless it is null.
+     */
+    public Settlement settle(String leaseId, String productId, String warehouse, LocalDateTime renewUntil) {
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.updateMulti(Query.query(Criteria.where("leaseId").is(leaseId)
+                        .and("status").is(HELD)
+                        .and("expiresAt").lt(now)),
+                Update.update("status", EXPIRED), InventoryReservation.class);
+        Query query = Query.query(Criteria.where("leaseId").is(leaseId)
+                        .and("settled").is(false)
+                        .and("status").in(COMMITTED, RELEASED, EXPIRED))
+                .limit(SETTLE_BATCH);
+        List<InventoryReservation> done = mongoTemplate.find(query, InventoryReservation.class);
+        int committed = sum(done, COMMITTED);
+        List<InventoryReservation> returned = done.stream().filter(r -> !COMMITTED.equals(r.getStatus())).toList();
+        if (done.isEmpty() && renewUntil == null) {
+            return new Settlement(0, returned);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            claim(done, now);
+            if (committed > 0) {
+                ledger.apply(List.of(InventoryLedger.StockDelta.commit(productId, warehouse, committed)));
+            }
+            Update update = new Update();
+            if (renewUntil != null) {
+                update.set("expiresAt", renewUntil);
+            }
+            if (committed > 0) {
+                update.inc("quantity", -committed).inc("allocations.0.quantity", -committed);
+            }
+            Query lease = Query.query(Criteria.where("_id").is(leaseId).and("status").is(HELD));
+            if (mongoTemplate.updateFirst(lease, update, InventoryReservation.class).getMatchedCount() == 0) {
+                throw new LeaseLostException(leaseId);
+            }
+        });
+        return new Settlement(committed, returned);
+    }
+
+    /**
+     * Close a lease for good; a no-op when it is already closed
+     */
+    public void dissolve(String leaseId, String outcome) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            InventoryReservation lease = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(leaseId).and("status").is(HELD)),
+                    new Update().set("status", outcome).set("purgeAt", now.plus(retention)),
+                    InventoryReservation.class);
+            if (lease == null) {
+                return;
+            }
+            List<InventoryReservation> members = mongoTemplate.find(
+                    Query.query(Criteria.where("leaseId").is(leaseId).and("settled").is(false)), InventoryReservation.class);
+            List<InventoryReservation> held = members.stream().filter(r -> HELD.equals(r.getStatus())).toList();
+            List<InventoryReservation> done = members.stream().filter(r -> !HELD.equals(r.getStatus())).toList();
+
+            // Held escrow reservations keep their stock as regular reservations
+            if (!held.isEmpty()) {
+                mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids(held))),
+                        new Update().unset("leaseId").unset("owner").unset("settled"), InventoryReservation.class);
+            }
+            claim(done, now);
+
+            int committed = sum(done, COMMITTED);
+            int adopted = held.stream().mapToInt(InventoryReservation::getQuantity).sum();
+            int released = lease.getQuantity() - committed - adopted;
+            String warehouse = lease.getAllocations().get(0).getWarehouse();
+            List<InventoryLedger.StockDelta> deltas = new ArrayList<>();
+            deltas.add(InventoryLedger.StockDelta.commit(lease.getProductId(), warehouse, committed));
+            if (released >= 0) {
+                deltas.add(InventoryLedger.StockDelta.release(lease.getProductId(), warehouse, released));
+            } else {
+                log.warn("Lease {} of product {} is short by {} units", leaseId, lease.getProductId(), -released);
+            }
+            ledger.apply(deltas);
+        });
+    }
+
+    /**
+     * Dissolve leases whose holder stopped renewing them (node gone, sale over)
+     */
+    public void dissolveExpired() {
+        Query query = Query.query(Criteria.where("kind").is(KIND_LEASE)
+                .and("status").is(HELD)
+                .and("expiresAt").lt(LocalDateTime.now()));
+        query.fields().include("_id");
+        for (InventoryReservation lease : mongoTemplate.find(query, InventoryReservation.class)) {
+            try {
+                dissolve(lease.getId(), EXPIRED);
+            } catch (Exception e) {
+                log.debug("Could not dissolve expired lease {}, retrying next sweep", lease.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Put escrow reservations of dissolved leases on the ledger. These were carved by a holder
+     * that did not yet know its lease was gone (an insert racing the dissolve, clock skew), so the
+     * lease's accounting never saw them: held ones take a regular hold or expire when the stock is
+     * gone, commits are written to the product document, releases and expiries are just closed.
+     */
+    public void adoptOrphans() {
+        List<String> leaseIds = mongoTemplate.findDistinct(
+                Query.query(Criteria.where("leaseId").ne(null).and("settled").is(false)),
+                "leaseId", InventoryReservation.class, String.class);
+        if (leaseIds.isEmpty()) {
+            return;
+        }
+        Query query = Query.query(Criteria.where("_id").in(leaseIds).and("status").ne(HELD));
+        query.fields().include("_id");
+        for (InventoryReservation lease : mongoTemplate.find(query, InventoryReservation.class)) {
+            try {
+                adoptOrphans(lease.getId());
+            } catch (Exception e) {
+                log.debug("Could not adopt escrow reservations of lease {}, retrying next sweep", lease.getId(), e);
+            }
+        }
+    }
+
+    private void adoptOrphans(String leaseId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<InventoryReservation> members = mongoTemplate.find(
+                    Query.query(Criteria.where("leaseId").is(leaseId).and("settled").is(false)), InventoryReservation.class);
+            List<InventoryReservation> done = members.stream().filter(r -> !HELD.equals(r.getStatus())).toList();
+            claim(done, now);
+            List<InventoryLedger.StockDelta> deltas = new ArrayList<>();
+            done.stream().filter(r -> COMMITTED.equals(r.getStatus()))
+                    .forEach(r -> deltas.addAll(InventoryLedger.StockDelta.sold(r)));
+            ledger.apply(deltas);
+
+            for (InventoryReservation reservation : members) {
+                if (!HELD.equals(reservation.getStatus())) {
+                    continue;
+                }
+                String warehouse = reservation.getAllocations().get(0).getWarehouse();
+                boolean kept = reservation.getExpiresAt().isAfter(now)
+                        && ledger.hold(reservation.getProductId(), warehouse, reservation.getQuantity(), true);
+                Update update = kept
+                        ? new Update().unset("leaseId").unset("owner").unset("settled")
+                        : new Update().set("status", EXPIRED).set("settled", true).set("purgeAt", now.plus(retention));
+                Query held = Query.query(Criteria.where("_id").is(reservation.getId()).and("status").is(HELD));
+                if (mongoTemplate.updateFirst(held, update, InventoryReservation.class).getModifiedCount() == 0) {
+                    throw new ConcurrentModificationException("Escrow reservation changed while adopting");
+                }
+                if (!kept) {
+                    log.warn("Escrow reservation {} outlived lease {} and could not be held, expired",
+                            reservation.getId(), leaseId);
+                }
+            }
+        });
+    }
+
+    // Mark escrow reservations settled; a concurrent settlement makes the counts differ and aborts
+    private void claim(List<InventoryReservation> done, LocalDateTime now) {
+        if (done.isEmpty()) {
+            return;
+        }
+        long claimed = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("_id").in(ids(done)).and("settled").is(false)),
+                new Update().set("settled", true).set("purgeAt", now.plus(retention)),
+                InventoryReservation.class).getModifiedCount();
+        if (claimed != done.size()) {
+            throw new ConcurrentModificationException("Escrow reservations settled concurrently");
+        }
+    }
+
+    private static int sum(List<InventoryReservation> reservations, String status) {
+        return reservations.stream()
+                .filter(r -> status.equals(r.getStatus()))
+                .mapToInt(InventoryReservation::getQuantity)
+                .sum();
+    }
+
+    private static List<String> ids(List<InventoryReservation> reservations) {
+        return reservations.stream().map(InventoryReservation::getId).toList();
+    }
+
+    /**
+     * Outcome of one settlement: units sold, and reservations whose units went back to the lease
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Settlement {
+        private final int committed;
+        private final List<InventoryReservation> returned;
+
+        public int returnedUnits() {
+            return returned.stream().mapToInt(InventoryReservation::getQuantity).sum();
+        }
+    }
+
+    /**
+     * The lease was dissolved by someone else (missed renewals); its stock is already accounted for
+     */
+    public static class LeaseLostException extends RuntimeException {
+        public LeaseLostException(String leaseId) {
+            super("Lease " + leaseId + " is no longer held");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import com.nepnhaxua.thucduong.entity.Product;
+
+import java.util.*;
+
+/**
+ * Splits a requested quantity over the warehouse locations of a product: the smallest location
+ * that can ship everything (keeping large stocks for large orders), otherwise the largest
+ * locations first. Works on a snapshot; the holds themselves are checked atomically.
+ */
+public final class WarehouseAllocator {
+
+    private WarehouseAllocator() {
+    }
+
+    /**
+     * Allocations covering the quantity, or empty when the snapshot shows too little stock
+     */
+    public static List<InventoryReservation.Allocation> allocate(Product.Inventory inventory, int quantity) {
+        if (available(inventory.getQuantity(), inventory.getReserved()) < quantity) {
+            return List.of();
+        }
+        if (inventory.getLocations() == null || inventory.getLocations().isEmpty()) {
+            return List.of(new InventoryReservation.Allocation(null, quantity));
+        }
+        List<Product.Location> locations = inventory.getLocations().stream()
+                .filter(l -> l.getWarehouse() != null && available(l) > 0)
+                .toList();
+
+        Optional<Product.Location> single = locations.stream()
+                .filter(l -> available(l) >= quantity)
+                .min(Comparator.comparingInt(WarehouseAllocator::available));
+        if (single.isPresent()) {
+            return List.of(new InventoryReservation.Allocation(single.get().getWarehouse(), quantity));
+        }
+
+        List<InventoryReservation.Allocation> allocations = new ArrayList<>();
+        int remaining = quantity;
+        for (Product.Location location : locations.stream()
+                .sorted(Comparator.comparingInt((Product.Location l) -> available(l)).reversed())
+                .toList()) {
+            int take = Math.min(remaining, available(location));
+            allocations.add(new InventoryReservation.Allocation(location.getWarehouse(), take));
+            remaining -= take;
+            if (remaining == 0) {
+                return allocations;
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Location with the most available stock, for holders taking a block from one warehouse
+     */
+    public static Optional<Product.Location> largest(Product.Inventory inventory) {
+        if (inventory.getLocations() == null) {
+            return Optional.empty();
+        }
+        return inventory.getLocations().stream()
+                .filter(l -> l.getWarehouse() != null && available(l) > 0)
+                .max(Comparator.comparingInt(WarehouseAllocator::available));
+    }
+
+    static int available(Product.Location location) {
+        return available(location.getQuantity(), location.getReserved());
+    }
+
+    static int available(Integer quantity, Integer reserved) {
+        return (quantity != null ? quantity : 0) - (reserved != null ? reserved : 0);
+    }
+}
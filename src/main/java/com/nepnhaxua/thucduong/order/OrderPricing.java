@@ -0,0 +1,64 @@
+package com.nepnhaxua.thucduong.order;
+
+import com.nepnhaxua.thucduong.entity.Order;
+import com.nepnhaxua.thucduong.entity.Product;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prices checkout lines from the product documents: the sale price when it undercuts the
+ * regular one, the best bulk tier the quantity reaches, and a flat shipping fee waived above a
+ * threshold or when every product ships free
+ */
+final class OrderPricing {
+
+    private OrderPricing() {
+    }
+
+    static double unitPrice(Product product, int quantity) {
+        Product.Pricing pricing = product.getPricing();
+        if (pricing == null || pricing.getRegular() == null) {
+            throw new IllegalArgumentException("Product " + product.getId() + " has no price");
+        }
+        double price = pricing.getRegular();
+        if (pricing.getSale() != null && pricing.getSale() > 0 && pricing.getSale() < price) {
+            price = pricing.getSale();
+        }
+        if (pricing.getBulkPricing() != null) {
+            for (Product.BulkPricing tier : pricing.getBulkPricing()) {
+                if (tier.getMinQuantity() != null && tier.getPrice() != null
+                        && quantity >= tier.getMinQuantity() && tier.getPrice() < price) {
+                    price = tier.getPrice();
+                }
+            }
+        }
+        return price;
+    }
+
+    static Order.Pricing total(List<Order.Item> items, Map<String, Product> products, double shippingFee,
+                               double freeShippingFrom) {
+        double subtotal = items.stream().mapToDouble(Order.Item::getTotal).sum();
+        boolean allFree = true;
+        double extra = 0;
+        String currency = null;
+        for (Order.Item item : items) {
+            Product product = products.get(item.getProductId());
+            Product.Shipping shipping = product.getShipping();
+            allFree &= shipping != null && shipping.isFreeShipping();
+            if (shipping != null && shipping.getAdditionalShippingCost() != null) {
+                extra += shipping.getAdditionalShippingCost();
+            }
+            if (currency == null && product.getPricing() != null) {
+                currency = product.getPricing().getCurrency();
+            }
+        }
+        double shipping = (allFree || subtotal >= freeShippingFrom ? 0 : shippingFee) + extra;
+        return Order.Pricing.builder()
+                .subtotal(subtotal)
+                .shipping(shipping)
+                .total(subtotal + shipping)
+                .currency(currency != null ? currency : "VND")
+                .build();
+    }
+}
@@ -0,0 +1,434 @@
+package com.nepnhaxua.thucduong.order;
+
+import com.google.common.hash.Hashing;
+import com.mongodb.MongoException;
+import com.nepnhaxua.thucduong.analytics.AnalyticsPipeline;
+import com.nepnhaxua.thucduong.cart.CartService;
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import com.nepnhaxua.thucduong.entity.Order;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.entity.User;
+import com.nepnhaxua.thucduong.exception.ConflictException;
+import com.nepnhaxua.thucduong.inventory.InventoryReservationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static com.nepnhaxua.thucduong.entity.Order.*;
+
+/**
+ * Checkout as a staged pipeline: validate the cart against the catalog, price it, reserve stock,
+ * then write the order in one Mongo transaction. Cash-on-delivery orders commit their reservations
+ * and count towards the customer's activity in that same transaction; other orders keep them held
+ * until the payment is confirmed, and are cancelled when the payment window runs out.
+ * Reservations are taken before the write transaction, so a failed write releases them.
+ * A client-supplied idempotency key, scoped to the cart owner, makes retried checkouts return
+ * the order already placed. Every stage is timed ({@code checkout.stage}) as is the whole
+ * checkout ({@code checkout}, tagged by outcome) for throughput under concurrent load.
+ */
+@Slf4j
+@Service
+public class OrderService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int MAX_TRANSACTION_ATTEMPTS = 3;
+    private static final int EXPIRE_BATCH = 100;
+    private static final DateTimeFormatter ORDER_DATE = DateTimeFormatter.ofPattern("yyMMdd");
+
+    private final MongoTemplate mongoTemplate;
+    private final CartService cartService;
+    private final InventoryReservationService reservationService;
+    private final AnalyticsPipeline analyticsPipeline;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration paymentWindow;
+    private final double shippingFee;
+    private final double freeShippingFrom;
+
+    public OrderService(MongoTemplate mongoTemplate,
+                        CartService cartService,
+                        InventoryReservationService reservationService,
+                        AnalyticsPipeline analyticsPipeline,
+                        ObjectProvider<MeterRegistry> meterRegistry,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${app.checkout.payment-window:900000}") long paymentWindowMillis,
+                        @Value("${app.checkout.shipping-fee:30000}") double shippingFee,
+                        @Value("${app.checkout.free-shipping-from:500000}") double freeShippingFrom) {
+        this.mongoTemplate = mongoTemplate;
+        this.cartService = cartService;
+        this.reservationService = reservationService;
+        this.analyticsPipeline = analyticsPipeline;
+        this.meterRegistry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.paymentWindow = Duration.ofMillis(paymentWindowMillis);
+        this.shippingFee = shippingFee;
+        this.freeShippingFrom = freeShippingFrom;
+    }
+
+    /**
+     * Place an order for the owner's cart. Retrying with the same key returns the same order;
+     * reusing a key for a different request is a ConflictException, as is missing stock.
+     */
+    public Order place(CartService.Owner owner, String idempotencyKey, CheckoutRequest request) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("An Idempotency-Key of at most " + MAX_KEY_LENGTH + " characters is required");
+        }
+        if (request.getPaymentMethod() == null || request.getPaymentMethod().isBlank()) {
+            throw new IllegalArgumentException("Payment method is required");
+        }
+        if (request.getShippingAddress() == null) {
+            throw new IllegalArgumentException("Shipping address is required");
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failed";
+        try {
+            String key = owner.encode() + ":" + idempotencyKey;
+            String requestHash = requestHash(request);
+            Order existing = findByKey(key);
+            if (existing != null) {
+                outcome = "replayed";
+                return replay(existing, requestHash);
+            }
+
+            CartService.CartView cart = cartService.get(owner);
+            if (cart.getItems().isEmpty()) {
+                throw new IllegalArgumentException("Cart is empty");
+            }
+            Map<String, Product> products = stage("validate", () -> products(cart));
+            List<Order.Item> items = stage("price", () -> price(cart, products));
+            Order.Pricing pricing = OrderPricing.total(items, products, shippingFee, freeShippingFrom);
+
+            LocalDateTime now = LocalDateTime.now();
+            ObjectId id = new ObjectId();
+            String orderNumber = orderNumber(id, now);
+            stage("reserve", () -> reserve(items, orderNumber, owner.getUserId()));
+
+            boolean cod = METHOD_COD.equalsIgnoreCase(request.getPaymentMethod());
+            Order order = Order.builder()
+                    .id(id.toHexString())
+                    .orderNumber(orderNumber)
+                    .userId(owner.getUserId())
+                    .sessionId(owner.getSessionId())
+                    .idempotencyKey(key)
+                    .requestHash(requestHash)
+                    .items(items)
+                    .pricing(pricing)
+                    .payment(Payment.builder().method(request.getPaymentMethod().toLowerCase()).status(PAYMENT_PENDING).build())
+                    .shippingAddress(request.getShippingAddress())
+                    .note(request.getNote())
+                    .status(cod ? CONFIRMED : PENDING)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .expiresAt(cod ? null : now.plus(paymentWindow))
+                    .build();
+            try {
+                stage("write", () -> inTransaction(status -> {
+                    mongoTemplate.insert(order);
+                    if (cod) {
+                        items.forEach(item -> reservationService.commit(item.getReservationId()));
+                        recordActivity(order.getUserId(), order.getPricing().getTotal(), now);
+                    }
+                    return order;
+                }));
+            } catch (RuntimeException e) {
+                releaseAll(items);
+                if (e instanceof DuplicateKeyException && (existing = findByKey(key)) != null) {
+                    // Lost a race against a concurrent retry of the same checkout
+                    outcome = "replayed";
+                    return replay(existing, requestHash);
+                }
+                throw e;
+            }
+
+            cartService.clear(owner);
+            if (cod) {
+                trackPurchase(order);
+            }
+            outcome = "placed";
+            return order;
+        } catch (ConflictException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("checkout", "outcome", outcome));
+        }
+    }
+
+    /**
+     * Mark a pending order paid and commit its stock; ConflictException when the payment window
+     * ran out (the order stays pending and is cancelled by the expiry job)
+     */
+    public Order confirmPayment(String orderNumber) {
+        Order order = inTransaction(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            Order confirmed = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("orderNumber").is(orderNumber).and("status").is(PENDING)),
+                    new Update().set("status", CONFIRMED)
+                            .set("payment.status", PAYMENT_PAID)
+                            .set("payment.paidAt", now)
+                            .set("updatedAt", now)
+                            .unset("expiresAt"),
+                    FindAndModifyOptions.options().returnNew(true),
+                    Order.class);
+            if (confirmed == null) {
+                Order current = get(orderNumber);
+                if (CONFIRMED.equals(current.getStatus())) {
+                    return null; // already confirmed
+                }
+                throw new ConflictException("Order " + orderNumber + " is " + current.getStatus());
+            }
+            confirmed.getItems().forEach(item -> reservationService.commit(item.getReservationId()));
+            recordActivity(confirmed.getUserId(), confirmed.getPricing().getTotal(), now);
+            return confirmed;
+        });
+        if (order == null) {
+            return get(orderNumber);
+        }
+        trackPurchase(order);
+        return order;
+    }
+
+    /**
+     * Cancel a pending order and give its stock back; confirmed orders cannot be cancelled here
+     */
+    public Order cancel(String orderNumber, String reason) {
+        return inTransaction(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            Order cancelled = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("orderNumber").is(orderNumber).and("status").is(PENDING)),
+                    new Update().set("status", CANCELLED)
+                            .set("cancelReason", reason)
+                            .set("payment.status", PAYMENT_VOID)
+                            .set("updatedAt", now)
+                            .unset("expiresAt"),
+                    FindAndModifyOptions.options().returnNew(true),
+                    Order.class);
+            if (cancelled == null) {
+                Order current = get(orderNumber);
+                if (CANCELLED.equals(current.getStatus())) {
+                    return current;
+                }
+                throw new ConflictException("Order " + orderNumber + " is " + current.getStatus());
+            }
+            // Pending orders never counted towards the customer's activity
+            cancelled.getItems().forEach(item -> reservationService.release(item.getReservationId()));
+            return cancelled;
+        });
+    }
+
+    public Order get(String orderNumber) {
+        Order order = mongoTemplate.findOne(Query.query(Criteria.where("orderNumber").is(orderNumber)), Order.class);
+        if (order == null) {
+            throw new NoSuchElementException("Order not found: " + orderNumber);
+        }
+        return order;
+    }
+
+    public List<Order> recent(String userId, int limit) {
+        Query query = Query.query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .limit(limit);
+        return mongoTemplate.find(query, Order.class);
+    }
+
+    /**
+     * Cancel pending orders whose payment window ran out
+     */
+    @Scheduled(fixedDelayString = "${app.checkout.expire-interval:60000}")
+    public void expireUnpaid() {
+        Query query = Query.query(Criteria.where("status").is(PENDING).and("expiresAt").lt(LocalDateTime.now()))
+                .limit(EXPIRE_BATCH);
+        query.fields().include("orderNumber");
+        for (Order order : mongoTemplate.find(query, Order.class)) {
+            try {
+                cancel(order.getOrderNumber(), "payment_timeout");
+            } catch (Exception e) {
+                // Paid or cancelled meanwhile, or a conflict; the next run looks again
+                log.debug("Could not expire order {}", order.getOrderNumber(), e);
+            }
+        }
+    }
+
+    private Order findByKey(String key) {
+        return mongoTemplate.findOne(Query.query(Criteria.where("idempotencyKey").is(key)), Order.class);
+    }
+
+    private static Order replay(Order existing, String requestHash) {
+        if (!requestHash.equals(existing.getRequestHash())) {
+            throw new ConflictException("Idempotency key was already used for a different checkout");
+        }
+        return existing;
+    }
+
+    // Validate: every product in the cart exists and is for sale
+    private Map<String, Product> products(CartService.CartView cart) {
+        List<String> ids = cart.getItems().stream().map(i -> i.getProductId()).toList();
+        Query query = Query.query(Criteria.where("_id").in(ids).and("flags.isActive").is(true));
+        query.fields().include("name", "sku", "category", "pricing", "shipping");
+        Map<String, Product> products = new HashMap<>();
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            products.put(product.getId(), product);
+        }
+        for (String id : ids) {
+            if (!products.containsKey(id)) {
+                throw new NoSuchElementException("Product is no longer available: " + id);
+            }
+        }
+        return products;
+    }
+
+    private static List<Order.Item> price(CartService.CartView cart, Map<String, Product> products) {
+        List<Order.Item> items = new ArrayList<>(cart.getItems().size());
+        cart.getItems().forEach(line -> {
+            Product product = products.get(line.getProductId());
+            double unitPrice = OrderPricing.unitPrice(product, line.getQuantity());
+            items.add(Order.Item.builder()
+                    .productId(product.getId())
+                    .sku(product.getSku())
+                    .name(product.getName())
+                    .category(product.getCategory() != null ? product.getCategory().getMain() : null)
+                    .quantity(line.getQuantity())
+                    .unitPrice(unitPrice)
+                    .total(unitPrice * line.getQuantity())
+                    .build());
+        });
+        return items;
+    }
+
+    // Hold stock line by line; a line that cannot be held releases the ones before it
+    private Void reserve(List<Order.Item> items, String orderNumber, String userId) {
+        try {
+            for (Order.Item item : items) {
+                InventoryReservation reservation = reservationService.reserve(item.getProductId(), item.getQuantity(),
+                        orderNumber, userId, paymentWindow);
+                item.setReservationId(reservation.getId());
+            }
+        } catch (RuntimeException e) {
+            releaseAll(items);
+            throw e;
+        }
+        return null;
+    }
+
+    private void releaseAll(List<Order.Item> items) {
+        for (Order.Item item : items) {
+            if (item.getReservationId() == null) {
+                continue;
+            }
+            try {
+                reservationService.release(item.getReservationId());
+            } catch (Exception e) {
+                // Left held, it expires with the payment window
+                log.warn("Could not release reservation {}", item.getReservationId(), e);
+            }
+        }
+    }
+
+    // A paid (or cash-on-delivery) order; keeps totals and the average consistent in one pipeline update
+    private void recordActivity(String userId, double amount, LocalDateTime purchasedAt) {
+        if (userId == null) {
+            return;
+        }
+        Document counts = new Document()
+                .append("activity.totalOrders", increment("$activity.totalOrders", 1))
+                .append("activity.totalSpent", increment("$activity.totalSpent", amount))
+                .append("activity.lastPurchase", purchasedAt)
+                .append("activity.lastActivityAt", purchasedAt);
+        Document average = new Document("activity.averageOrderValue", new Document("$cond", List.of(
+                new Document("$gt", List.of("$activity.totalOrders", 0)),
+                new Document("$divide", List.of("$activity.totalSpent", "$activity.totalOrders")),
+                0.0)));
+        List<AggregationOperation> stages = List.of(
+                context -> new Document("$set", counts),
+                context -> new Document("$set", average));
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)), AggregationUpdate.from(stages), User.class);
+    }
+
+    private void trackPurchase(Order order) {
+        for (Order.Item item : order.getItems()) {
+            analyticsPipeline.trackPurchase(item.getProductId(), item.getCategory(), item.getQuantity(),
+                    order.getUserId(), order.getSessionId());
+        }
+    }
+
+    private <T> T stage(String name, Supplier<T> body) {
+        return meterRegistry.timer("checkout.stage", "stage", name).record(body);
+    }
+
+    // Transactions that hit a write conflict (two checkouts of the same hot product) are retried
+    private <T> T inTransaction(TransactionCallback<T> callback) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(callback);
+            } catch (DataAccessException e) {
+                if (attempt >= MAX_TRANSACTION_ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+                log.debug("Retrying transaction after a transient error (attempt {})", attempt);
+            }
+        }
+    }
+
+    private static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof MongoException mongo && mongo.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Document increment(String field, Number amount) {
+        return new Document("$add", List.of(new Document("$ifNull", List.of(field, 0)), amount));
+    }
+
+    // TD + date + the counter and random tail of the order's ObjectId
+    private static String orderNumber(ObjectId id, LocalDateTime now) {
+        return "TD" + now.format(ORDER_DATE) + id.toHexString().substring(14).toUpperCase();
+    }
+
+    private static String requestHash(CheckoutRequest request) {
+        User.Address address = request.getShippingAddress();
+        String canonical = String.join("|", request.getPaymentMethod().toLowerCase(),
+                String.valueOf(address.getRecipientName()), String.valueOf(address.getRecipientPhone()),
+                String.valueOf(address.getStreet()), String.valueOf(address.getWard()),
+                String.valueOf(address.getDistrict()), String.valueOf(address.getCity()),
+                String.valueOf(request.getNote()));
+        return Hashing.murmur3_128().hashString(canonical, StandardCharsets.UTF_8).toString();
+    }
+
+    @Data
+    public static class CheckoutRequest {
+        private String paymentMethod;
+        private User.Address shippingAddress;
+        private String note;
+    }
+}
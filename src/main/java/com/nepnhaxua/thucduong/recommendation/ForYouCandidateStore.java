@@ -0,0 +1,208 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import com.nepnhaxua.thucduong.analytics.AnalyticsBatchListener;
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Per-user "for you" candidates kept in a Redis sorted set and updated as the user's events
+ * arrive: each view, add-to-cart or purchase adds the precomputed similar products of that
+ * product, weighted by signal strength and recency. Recency uses forward decay (newer
+ * increments are scaled up instead of older scores being rewritten), so an update only touches
+ * the members it increments. Bought and carted products are remembered and never suggested.
+ */
+@Slf4j
+@Component
+public class ForYouCandidateStore implements AnalyticsBatchListener {
+
+    private static final String CANDIDATES_KEY = "thucduong:foryou:";
+    private static final String EXCLUDED_KEY = "thucduong:foryou:excluded:";
+    // Forward decay grows as 2^(days since epoch / half-life): with a 7 day half-life scores stay
+    // within double range for ~19 years. Move the epoch (and drop the sets) well before that.
+    private static final LocalDateTime DECAY_EPOCH = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static final Map<String, Double> SIGNAL_WEIGHTS = Map.of(
+            AnalyticsEvent.PRODUCT_VIEW, 1.0,
+            AnalyticsEvent.ADD_TO_CART, 2.0,
+            AnalyticsEvent.PURCHASE, 3.0);
+    private static final double WISHLIST_WEIGHT = 2.0;
+    private static final double RECENTLY_VIEWED_WEIGHT = 1.0;
+
+    private final StringRedisTemplate redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final int maxCandidates;
+    private final int similarPerSignal;
+    private final double halfLifeDays;
+    private final Duration ttl;
+
+    public ForYouCandidateStore(StringRedisTemplate redisTemplate,
+                                MongoTemplate mongoTemplate,
+                                @Value("${app.for-you.max-candidates:200}") int maxCandidates,
+                                @Value("${app.for-you.similar-per-signal:6}") int similarPerSignal,
+                                @Value("${app.for-you.half-life-days:7}") double halfLifeDays,
+                                @Value("${app.for-you.ttl-days:90}") int ttlDays) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.maxCandidates = maxCandidates;
+        this.similarPerSignal = similarPerSignal;
+        this.halfLifeDays = halfLifeDays;
+        this.ttl = Duration.ofDays(ttlDays);
+    }
+
+    /**
+     * Best candidates for the user, highest score first. A user without a candidate list
+     * (new, or idle past the TTL) is seeded from their wishlist and recently viewed products.
+     */
+    public List<Candidate> candidates(User user, int limit) {
+        String key = CANDIDATES_KEY + user.getId();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                seed(user);
+            }
+            Set<ZSetOperations.TypedTuple<String>> tuples = redisTemplate.opsForZSet().reverseRangeWithScores(key, 0, limit - 1);
+            if (tuples == null) {
+                return List.of();
+            }
+            List<Candidate> candidates = new ArrayList<>(tuples.size());
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                candidates.add(new Candidate(tuple.getValue(), tuple.getScore() != null ? tuple.getScore() : 0));
+            }
+            return candidates;
+        } catch (Exception e) {
+            log.warn("Could not read for-you candidates of user {}", user.getId(), e);
+            return List.of();
+        }
+    }
+
+    @Override
+    public void onBatch(List<AnalyticsEvent> events) {
+        List<Signal> signals = new ArrayList<>();
+        for (AnalyticsEvent event : events) {
+            Double weight = SIGNAL_WEIGHTS.get(event.getType());
+            Object productId = event.getData() != null ? event.getData().get("productId") : null;
+            if (weight != null && event.getUserId() != null && productId != null) {
+                boolean owned = !AnalyticsEvent.PRODUCT_VIEW.equals(event.getType());
+                signals.add(new Signal(event.getUserId(), productId.toString(), weight, event.getTimestamp(), owned));
+            }
+        }
+        if (signals.isEmpty()) {
+            return;
+        }
+        try {
+            apply(signals);
+        } catch (Exception e) {
+            log.warn("Could not update for-you candidates from {} events", signals.size(), e);
+        }
+    }
+
+    private void seed(User user) {
+        List<Signal> signals = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        if (user.getWishlist() != null) {
+            user.getWishlist().forEach(id -> signals.add(new Signal(user.getId(), id, WISHLIST_WEIGHT, now, false)));
+        }
+        if (user.getRecentlyViewed() != null) {
+            user.getRecentlyViewed().forEach(viewed -> signals.add(new Signal(user.getId(), viewed.getProductId(),
+                    RECENTLY_VIEWED_WEIGHT, viewed.getViewedAt() != null ? viewed.getViewedAt() : now, false)));
+        }
+        if (!signals.isEmpty()) {
+            apply(signals);
+        }
+    }
+
+    // One Mongo query for the similar lists of the batch, one Redis pipeline for all users
+    private void apply(List<Signal> signals) {
+        Set<String> productIds = new HashSet<>();
+        signals.forEach(s -> productIds.add(s.productId));
+        Map<String, List<String>> similar = similarLists(productIds);
+
+        Set<String> users = new HashSet<>();
+        signals.forEach(s -> users.add(s.userId));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Signal signal : signals) {
+                byte[] key = bytes(CANDIDATES_KEY + signal.userId);
+                double boost = signal.weight * decay(signal.timestamp);
+                List<String> neighbours = similar.getOrDefault(signal.productId, List.of());
+                for (int rank = 0; rank < neighbours.size() && rank < similarPerSignal; rank++) {
+                    // Closer neighbours (lower rank) get more of the boost
+                    connection.zSetCommands().zIncrBy(key, boost / (1 + rank * 0.25), bytes(neighbours.get(rank)));
+                }
+                if (signal.owned) {
+                    connection.setCommands().sAdd(bytes(EXCLUDED_KEY + signal.userId), bytes(signal.productId));
+                }
+            }
+            for (String user : users) {
+                byte[] key = bytes(CANDIDATES_KEY + user);
+                byte[] excluded = bytes(EXCLUDED_KEY + user);
+                connection.zSetCommands().zRemRange(key, 0, -(maxCandidates + 1L));
+                connection.keyCommands().expire(key, ttl.toSeconds());
+                connection.keyCommands().expire(excluded, ttl.toSeconds());
+            }
+            return null;
+        });
+
+        // Drop owned products that are (or just became) candidates
+        for (String user : users) {
+            Set<String> excluded = redisTemplate.opsForSet().members(EXCLUDED_KEY + user);
+            if (excluded != null && !excluded.isEmpty()) {
+                redisTemplate.opsForZSet().remove(CANDIDATES_KEY + user, excluded.toArray());
+            }
+        }
+    }
+
+    private Map<String, List<String>> similarLists(Collection<String> productIds) {
+        Query query = Query.query(Criteria.where("_id").in(productIds));
+        query.fields().include("_id", "related.similar");
+        Map<String, List<String>> similar = new HashMap<>();
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            if (product.getRelated() != null && product.getRelated().getSimilar() != null) {
+                similar.put(product.getId(), product.getRelated().getSimilar());
+            }
+        }
+        return similar;
+    }
+
+    private double decay(LocalDateTime timestamp) {
+        LocalDateTime time = timestamp != null ? timestamp : LocalDateTime.now();
+        double days = Duration.between(DECAY_EPOCH.toInstant(ZoneOffset.UTC), time.toInstant(ZoneOffset.UTC)).toMinutes() / 1440.0;
+        return Math.pow(2, days / halfLifeDays);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Candidate {
+        private final String productId;
+        private final double score;
+    }
+
+    @AllArgsConstructor
+    private static class Signal {
+        private final String userId;
+        private final String productId;
+        private final double weight;
+        private final LocalDateTime timestamp;
+        private final boolean owned;
+    }
+}
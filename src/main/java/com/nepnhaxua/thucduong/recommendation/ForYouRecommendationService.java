@@ -0,0 +1,51 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.entity.User;
+import com.nepnhaxua.thucduong.repository.ProductRepository;
+import com.nepnhaxua.thucduong.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * "For you" products: the user's incrementally maintained candidate list (similar products of
+ * what they viewed, carted, bought or wishlisted), re-ranked against their profile so health
+ * conditions, age and allergies apply. Users without signals get the baseline list from
+ * {@link ProductRepository#getPersonalizedRecommendations}.
+ */
+@Service
+@RequiredArgsConstructor
+public class ForYouRecommendationService {
+
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final ForYouCandidateStore forYouCandidateStore;
+    private final PersonalizationEngine personalizationEngine;
+
+    public List<Product> recommend(String userId, int limit) {
+        User user = userRepository.findById(userId).orElse(null);
+        List<ForYouCandidateStore.Candidate> candidates = user != null
+                ? forYouCandidateStore.candidates(user, limit * 3)
+                : List.of();
+        if (candidates.isEmpty()) {
+            return productRepository.getPersonalizedRecommendations(userId, limit);
+        }
+
+        List<String> ids = new ArrayList<>(candidates.size());
+        float[] weights = new float[candidates.size()];
+        double top = candidates.get(0).getScore();
+        for (int i = 0; i < candidates.size(); i++) {
+            ids.add(candidates.get(i).getProductId());
+            // Relative candidate strength, floored so the profile can still promote weaker candidates
+            weights[i] = (float) (0.5 + 0.5 * (top > 0 ? candidates.get(i).getScore() / top : 1));
+        }
+        // Over-rank a little: some candidates may have been deactivated since
+        List<String> ranked = personalizationEngine.rank(ids, weights, user, limit + limit / 2);
+
+        Map<String, Product> byId = new HashMap<>();
+        productRepository.findRelatedProducts(ranked).forEach(p -> byId.put(p.getId(), p));
+        return ranked.stream().map(byId::get).filter(Objects::nonNull).limit(limit).toList();
+    }
+}
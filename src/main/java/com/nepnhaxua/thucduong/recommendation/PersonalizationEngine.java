@@ -0,0 +1,78 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.entity.User;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Ranks candidate products for a user's profile (age, health conditions, diet, allergies,
+ * wishlist) against a {@link ProductFeatureTable} built off the request path, after product
+ * changes and periodically so the popularity prior follows sales.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PersonalizationEngine {
+
+    private final MongoTemplate mongoTemplate;
+
+    private volatile ProductFeatureTable table = ProductFeatureTable.EMPTY;
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    /**
+     * Candidates ordered for the user, best first; see {@link ProductFeatureTable#rank}
+     */
+    public List<String> rank(List<String> candidates, float[] weights, User user, int limit) {
+        ProductFeatureTable current = table;
+        return current.rank(candidates, weights, current.compile(user, LocalDate.now()), limit);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.personalization.refresh-interval:900000}",
+            initialDelayString = "${app.personalization.refresh-interval:900000}")
+    public void rebuild() {
+        stale.set(false);
+        long start = System.currentTimeMillis();
+        ProductFeatureTable.Builder builder = ProductFeatureTable.builder();
+        Query query = new Query(Criteria.where("flags.isActive").is(true));
+        query.fields().include("tags", "category.tags", "healthBenefits.benefit",
+                "ingredients.name", "ingredients.benefits", "ingredients.isOrganic",
+                "analytics.purchased", "ratings.average");
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(builder::add);
+        } catch (Exception e) {
+            // Keep scoring against the previous table
+            log.warn("Could not rebuild personalization features", e);
+            return;
+        }
+        table = builder.build();
+        log.info("Personalization features rebuilt for {} products in {} ms",
+                table.size(), System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        stale.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${app.personalization.change-debounce:10000}")
+    public void rebuildIfStale() {
+        if (stale.get()) {
+            rebuild();
+        }
+    }
+}
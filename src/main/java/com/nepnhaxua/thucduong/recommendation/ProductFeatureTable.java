@@ -0,0 +1,347 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.entity.User;
+import com.nepnhaxua.thucduong.search.VietnameseTextNormalizer;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.*;
+
+/**
+ * Immutable per-product feature vectors for personalization, laid out as flat primitive arrays:
+ * health / dietary terms and ingredients as bitsets, an age group mask, and a popularity prior.
+ * Scoring a user against a list of candidates touches only those rows and allocates per
+ * candidate, never per catalog product.
+ */
+public final class ProductFeatureTable {
+
+    public static final ProductFeatureTable EMPTY = new Builder().build();
+
+    static final byte AGE_CHILD = 1;
+    static final byte AGE_ADULT = 2;
+    static final byte AGE_SENIOR = 4;
+    static final byte AGE_ALL = AGE_CHILD | AGE_ADULT | AGE_SENIOR;
+
+    private static final Set<String> CHILD_TERMS = Set.of("tre em", "tre nho", "em be", "be", "children", "kids", "baby");
+    private static final Set<String> SENIOR_TERMS = Set.of("nguoi cao tuoi", "nguoi gia", "nguoi lon tuoi", "elderly", "senior");
+    private static final String ORGANIC_TERM = "organic";
+
+    private static final float CONDITION_BOOST = 0.5f;
+    private static final float DIET_BOOST = 0.3f;
+    private static final float AGE_TARGETED = 1.3f;
+    private static final float AGE_UNSUITED = 0.3f;
+    private static final float WISHLIST_BOOST = 1.2f;
+
+    private final Map<String, Integer> productIndex;
+    private final Map<String, Integer> termIndex;
+    private final Map<String, Integer> ingredientIndex;
+    private final int termWords;
+    private final int ingredientWords;
+    private final long[] terms;
+    private final long[] ingredients;
+    private final byte[] ageGroups;
+    private final float[] prior;
+
+    private ProductFeatureTable(Map<String, Integer> productIndex, Map<String, Integer> termIndex,
+                                Map<String, Integer> ingredientIndex, long[] terms, long[] ingredients,
+                                byte[] ageGroups, float[] prior) {
+        this.productIndex = productIndex;
+        this.termIndex = termIndex;
+        this.ingredientIndex = ingredientIndex;
+        this.termWords = words(termIndex.size());
+        this.ingredientWords = words(ingredientIndex.size());
+        this.terms = terms;
+        this.ingredients = ingredients;
+        this.ageGroups = ageGroups;
+        this.prior = prior;
+    }
+
+    public int size() {
+        return ageGroups.length;
+    }
+
+    /**
+     * Compile a user's profile into bitsets over this table's vocabularies; terms the catalog
+     * never mentions are dropped since they cannot change any score
+     */
+    public UserVector compile(User user, LocalDate today) {
+        User.Profile profile = user.getProfile();
+        long[] conditions = new long[termWords];
+        long[] diet = new long[termWords];
+        long[] allergies = new long[ingredientWords];
+        byte ageGroup = AGE_ALL;
+        if (profile != null) {
+            setBits(conditions, termIndex, profile.getHealthConditions());
+            setBits(diet, termIndex, profile.getDietaryPreferences());
+            setBits(allergies, ingredientIndex, profile.getAllergies());
+            if (profile.getDateOfBirth() != null) {
+                int age = Period.between(profile.getDateOfBirth().toLocalDate(), today).getYears();
+                ageGroup = age < 13 ? AGE_CHILD : age >= 60 ? AGE_SENIOR : AGE_ADULT;
+            }
+        }
+        int[] wishlist = user.getWishlist() == null ? new int[0] : user.getWishlist().stream()
+                .map(productIndex::get)
+                .filter(Objects::nonNull)
+                .mapToInt(Integer::intValue)
+                .sorted()
+                .toArray();
+        return new UserVector(conditions, diet, allergies, ageGroup, wishlist);
+    }
+
+    /**
+     * Best candidates for the user, highest score first, at most limit. Candidates containing an
+     * ingredient the user is allergic to are left out; candidates unknown to the table keep a
+     * neutral score. Weights (e.g. editorial priority) multiply the score, null means 1.
+     */
+    public List<String> rank(List<String> candidates, float[] weights, UserVector user, int limit) {
+        int n = candidates.size();
+        float[] scores = new float[n];
+        int[] heap = new int[Math.min(limit, n)];
+        int heapSize = 0;
+        for (int c = 0; c < n; c++) {
+            float score = score(productIndex.getOrDefault(candidates.get(c), -1), user);
+            if (score <= 0) {
+                continue;
+            }
+            scores[c] = weights != null ? score * weights[c] : score;
+            // Min-heap of the best candidates seen so far
+            if (heapSize < heap.length) {
+                heap[heapSize] = c;
+                siftUp(heap, heapSize++, scores);
+            } else if (heap.length > 0 && better(c, heap[0], scores)) {
+                heap[0] = c;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+        String[] ranked = new String[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ranked[i] = candidates.get(heap[0]);
+            heap[0] = heap[i];
+            siftDown(heap, i, scores);
+        }
+        return Arrays.asList(ranked);
+    }
+
+    float score(int product, UserVector user) {
+        if (product < 0) {
+            return 1;
+        }
+        int ingredientBase = product * ingredientWords;
+        for (int w = 0; w < ingredientWords; w++) {
+            if ((ingredients[ingredientBase + w] & user.allergies[w]) != 0) {
+                return 0;
+            }
+        }
+        int termBase = product * termWords;
+        int conditionMatches = 0;
+        int dietMatches = 0;
+        for (int w = 0; w < termWords; w++) {
+            long productTerms = terms[termBase + w];
+            conditionMatches += Long.bitCount(productTerms & user.conditions[w]);
+            dietMatches += Long.bitCount(productTerms & user.diet[w]);
+        }
+        float score = prior[product]
+                * (1 + CONDITION_BOOST * conditionMatches)
+                * (1 + DIET_BOOST * dietMatches);
+        byte ages = ageGroups[product];
+        if ((ages & user.ageGroup) == 0) {
+            score *= AGE_UNSUITED;
+        } else if (ages != AGE_ALL && user.ageGroup != AGE_ALL) {
+            score *= AGE_TARGETED;
+        }
+        if (Arrays.binarySearch(user.wishlist, product) >= 0) {
+            score *= WISHLIST_BOOST;
+        }
+        return score;
+    }
+
+    // Higher score wins; earlier candidate (editorial order) breaks ties
+    private static boolean better(int a, int b, float[] scores) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int i, float[] scores) {
+        int item = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(heap[parent], item, scores)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        if (size == 0) {
+            return;
+        }
+        int item = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1], scores)) {
+                child++;
+            }
+            if (!better(item, heap[child], scores)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = item;
+    }
+
+    private static void setBits(long[] bits, Map<String, Integer> vocabulary, List<String> values) {
+        if (values == null) {
+            return;
+        }
+        for (String value : values) {
+            Integer bit = vocabulary.get(term(value));
+            if (bit != null) {
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    static String term(String text) {
+        return String.join(" ", VietnameseTextNormalizer.tokenize(text));
+    }
+
+    private static int words(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A user's profile compiled against one table
+     */
+    public static final class UserVector {
+        private final long[] conditions;
+        private final long[] diet;
+        private final long[] allergies;
+        private final byte ageGroup;
+        private final int[] wishlist;
+
+        private UserVector(long[] conditions, long[] diet, long[] allergies, byte ageGroup, int[] wishlist) {
+            this.conditions = conditions;
+            this.diet = diet;
+            this.allergies = allergies;
+            this.ageGroup = ageGroup;
+            this.wishlist = wishlist;
+        }
+    }
+
+    public static class Builder {
+        private final Map<String, Integer> productIndex = new HashMap<>();
+        private final Map<String, Integer> termIndex = new HashMap<>();
+        private final Map<String, Integer> ingredientIndex = new HashMap<>();
+        private final List<int[]> productTerms = new ArrayList<>();
+        private final List<int[]> productIngredients = new ArrayList<>();
+        private final List<Byte> ageGroups = new ArrayList<>();
+        private final List<Float> priors = new ArrayList<>();
+
+        public Builder add(Product product) {
+            if (product.getId() == null || productIndex.containsKey(product.getId())) {
+                return this;
+            }
+            Set<String> termSet = new HashSet<>();
+            addTerms(termSet, product.getTags());
+            if (product.getCategory() != null) {
+                addTerms(termSet, product.getCategory().getTags());
+            }
+            if (product.getHealthBenefits() != null) {
+                product.getHealthBenefits().forEach(b -> addTerm(termSet, b.getBenefit()));
+            }
+            Set<String> ingredientSet = new HashSet<>();
+            if (product.getIngredients() != null && !product.getIngredients().isEmpty()) {
+                boolean organic = true;
+                for (Product.Ingredient ingredient : product.getIngredients()) {
+                    addTerm(ingredientSet, ingredient.getName());
+                    addTerms(termSet, ingredient.getBenefits());
+                    organic &= ingredient.isOrganic();
+                }
+                if (organic) {
+                    termSet.add(ORGANIC_TERM);
+                }
+            }
+
+            byte ages = 0;
+            for (String term : termSet) {
+                if (CHILD_TERMS.contains(term)) {
+                    ages |= AGE_CHILD;
+                } else if (SENIOR_TERMS.contains(term)) {
+                    ages |= AGE_SENIOR;
+                }
+            }
+
+            productIndex.put(product.getId(), ageGroups.size());
+            productTerms.add(intern(termIndex, termSet));
+            productIngredients.add(intern(ingredientIndex, ingredientSet));
+            ageGroups.add(ages == 0 ? AGE_ALL : ages);
+            priors.add(prior(product));
+            return this;
+        }
+
+        public ProductFeatureTable build() {
+            int n = ageGroups.size();
+            int termWords = words(termIndex.size());
+            int ingredientWords = words(ingredientIndex.size());
+            long[] terms = new long[n * termWords];
+            long[] ingredients = new long[n * ingredientWords];
+            byte[] ages = new byte[n];
+            float[] prior = new float[n];
+            for (int i = 0; i < n; i++) {
+                for (int bit : productTerms.get(i)) {
+                    terms[i * termWords + (bit >>> 6)] |= 1L << bit;
+                }
+                for (int bit : productIngredients.get(i)) {
+                    ingredients[i * ingredientWords + (bit >>> 6)] |= 1L << bit;
+                }
+                ages[i] = ageGroups.get(i);
+                prior[i] = priors.get(i);
+            }
+            return new ProductFeatureTable(Map.copyOf(productIndex), Map.copyOf(termIndex),
+                    Map.copyOf(ingredientIndex), terms, ingredients, ages, prior);
+        }
+
+        // Mild popularity and rating prior so ties between equally relevant products go to proven ones
+        private static float prior(Product product) {
+            float prior = 1;
+            if (product.getAnalytics() != null && product.getAnalytics().getPurchased() != null) {
+                prior += 0.05f * (float) Math.log1p(Math.max(0, product.getAnalytics().getPurchased()));
+            }
+            if (product.getRatings() != null && product.getRatings().getAverage() != null) {
+                prior += 0.05f * product.getRatings().getAverage().floatValue();
+            }
+            return prior;
+        }
+
+        private static void addTerms(Set<String> terms, List<String> values) {
+            if (values != null) {
+                values.forEach(v -> addTerm(terms, v));
+            }
+        }
+
+        private static void addTerm(Set<String> terms, String value) {
+            String term = term(value);
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+
+        private static int[] intern(Map<String, Integer> vocabulary, Set<String> values) {
+            return values.stream()
+                    .mapToInt(v -> vocabulary.computeIfAbsent(v, k -> vocabulary.size()))
+                    .toArray();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Top-K nearest neighbours over sparse weighted feature vectors (cosine similarity).
+ * Feature weights are scaled by inverse document frequency, so a shared rare ingredient counts
+ * for more than a shared main category. Neighbour lists are computed in parallel on a fork-join pool,
+ * one leaf task per range of products, each scoring candidates through the feature postings.
+ */
+public class SimilarProductGraph {
+
+    private static final int LEAF_SIZE = 64;
+
+    private final Map<String, Integer> featureIds = new HashMap<>();
+    private final List<String> productIds = new ArrayList<>();
+    private final List<int[]> productFeatures = new ArrayList<>();
+    private final List<float[]> productWeights = new ArrayList<>();
+
+    /**
+     * Register a product with its raw feature weights, e.g. {@code "tag:gluten-free" -> 1.0}
+     */
+    public void add(String productId, Map<String, Float> features) {
+        int[] ids = new int[features.size()];
+        float[] weights = new float[features.size()];
+        int i = 0;
+        for (Map.Entry<String, Float> feature : features.entrySet()) {
+            ids[i] = featureIds.computeIfAbsent(feature.getKey(), f -> featureIds.size());
+            weights[i] = feature.getValue();
+            i++;
+        }
+        productIds.add(productId);
+        productFeatures.add(ids);
+        productWeights.add(weights);
+    }
+
+    public int size() {
+        return productIds.size();
+    }
+
+    /**
+     * The k most similar other products for every product, best first.
+     * Products sharing no feature are never neighbours, so a list can be shorter than k.
+     */
+    public Map<String, List<String>> topNeighbours(int k, ForkJoinPool pool) {
+        int n = productIds.size();
+        int featureCount = featureIds.size();
+
+        int[] documentFrequency = new int[featureCount];
+        for (int[] features : productFeatures) {
+            for (int feature : features) {
+                documentFrequency[feature]++;
+            }
+        }
+
+        // IDF-scaled, L2-normalised vectors, so a dot product is the cosine
+        float[][] weights = new float[n][];
+        for (int p = 0; p < n; p++) {
+            int[] features = productFeatures.get(p);
+            float[] scaled = productWeights.get(p).clone();
+            double norm = 0;
+            for (int i = 0; i < features.length; i++) {
+                scaled[i] *= (float) (1 + Math.log((double) n / documentFrequency[features[i]]));
+                norm += scaled[i] * scaled[i];
+            }
+            norm = Math.sqrt(norm);
+            for (int i = 0; i < scaled.length && norm > 0; i++) {
+                scaled[i] /= (float) norm;
+            }
+            weights[p] = scaled;
+        }
+
+        // Postings: products and weights per feature
+        int[][] postingProducts = new int[featureCount][];
+        float[][] postingWeights = new float[featureCount][];
+        int[] fill = new int[featureCount];
+        for (int f = 0; f < featureCount; f++) {
+            postingProducts[f] = new int[documentFrequency[f]];
+            postingWeights[f] = new float[documentFrequency[f]];
+        }
+        for (int p = 0; p < n; p++) {
+            int[] features = productFeatures.get(p);
+            for (int i = 0; i < features.length; i++) {
+                int f = features[i];
+                postingProducts[f][fill[f]] = p;
+                postingWeights[f][fill[f]] = weights[p][i];
+                fill[f]++;
+            }
+        }
+
+        int[][] neighbours = new int[n][];
+        pool.invoke(new NeighbourTask(0, n, k, weights, postingProducts, postingWeights, neighbours));
+
+        Map<String, List<String>> result = new HashMap<>(n * 2);
+        for (int p = 0; p < n; p++) {
+            List<String> ids = new ArrayList<>(neighbours[p].length);
+            for (int neighbour : neighbours[p]) {
+                ids.add(productIds.get(neighbour));
+            }
+            result.put(productIds.get(p), ids);
+        }
+        return result;
+    }
+
+    private class NeighbourTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int k;
+        private final float[][] weights;
+        private final int[][] postingProducts;
+        private final float[][] postingWeights;
+        private final int[][] neighbours;
+
+        NeighbourTask(int from, int to, int k, float[][] weights, int[][] postingProducts,
+                      float[][] postingWeights, int[][] neighbours) {
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.weights = weights;
+            this.postingProducts = postingProducts;
+            this.postingWeights = postingWeights;
+            this.neighbours = neighbours;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new NeighbourTask(from, mid, k, weights, postingProducts, postingWeights, neighbours),
+                        new NeighbourTask(mid, to, k, weights, postingProducts, postingWeights, neighbours));
+                return;
+            }
+
+            // Accumulators are reused across the products of this leaf; touched lists the non-zero slots
+            float[] scores = new float[weights.length];
+            int[] touched = new int[weights.length];
+            for (int p = from; p < to; p++) {
+                int touchedCount = 0;
+                int[] features = productFeatures.get(p);
+                for (int i = 0; i < features.length; i++) {
+                    int[] products = postingProducts[features[i]];
+                    float[] productWeight = postingWeights[features[i]];
+                    float weight = weights[p][i];
+                    for (int j = 0; j < products.length; j++) {
+                        int other = products[j];
+                        if (other == p) {
+                            continue;
+                        }
+                        if (scores[other] == 0) {
+                            touched[touchedCount++] = other;
+                        }
+                        scores[other] += weight * productWeight[j];
+                    }
+                }
+
+                PriorityQueue<Integer> best = new PriorityQueue<>(k + 1,
+                        Comparator.<Integer>comparingDouble(other -> scores[other])
+                                .thenComparing(Comparator.reverseOrder()));
+                for (int t = 0; t < touchedCount; t++) {
+                    best.offer(touched[t]);
+                    if (best.size() > k) {
+                        best.poll();
+                    }
+                }
+                int[] top = new int[best.size()];
+                for (int i = top.length - 1; i >= 0; i--) {
+                    top[i] = best.poll();
+                }
+                neighbours[p] = top;
+
+                for (int t = 0; t < touchedCount; t++) {
+                    scores[touched[t]] = 0;
+                }
+            }
+        }
+    }
+}
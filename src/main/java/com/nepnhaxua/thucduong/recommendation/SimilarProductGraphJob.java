@@ -0,0 +1,144 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import com.nepnhaxua.thucduong.cache.EntityCacheEvictionListener;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.service.ScheduledJobLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Nightly batch that recomputes {@code related.similar} for every active product from category,
+ * tags, ingredients, health benefits and price band, so detail pages resolve related products with
+ * a single {@code $in} lookup instead of a similarity query per view. Runs on one node per night.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SimilarProductGraphJob {
+
+    // Adjacent bands differ by this price ratio
+    private static final double PRICE_BAND_RATIO = 1.5;
+    private static final int BULK_BATCH_SIZE = 500;
+    // Well below the daily cron period, well above a run
+    private static final Duration LOCK_PERIOD = Duration.ofHours(12);
+
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+    private final ScheduledJobLock jobLock;
+
+    @Value("${app.similar.top-k:12}")
+    private int topK;
+
+    @Value("${app.similar.parallelism:0}")
+    private int parallelism;
+
+    @Scheduled(cron = "${app.similar.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        jobLock.runOncePer("similar-products", LOCK_PERIOD, this::run);
+    }
+
+    public void run() {
+        long start = System.currentTimeMillis();
+        SimilarProductGraph graph = new SimilarProductGraph();
+
+        Query query = new Query(Criteria.where("flags.isActive").is(true));
+        query.fields().include("category", "tags", "ingredients.name", "healthBenefits.bodyPart", "pricing.regular");
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(product -> graph.add(product.getId(), features(product)));
+        }
+
+        ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+        Map<String, List<String>> neighbours;
+        try {
+            neighbours = graph.topNeighbours(topK, pool);
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
+        }
+
+        int written = persist(neighbours);
+        // Products deactivated since the last run are not in the graph; drop their stale lists
+        written += (int) mongoTemplate.updateMulti(
+                Query.query(Criteria.where("flags.isActive").ne(true).and("related.similar.0").exists(true)),
+                new Update().unset("related.similar").inc(Product.REVISION, 1), Product.class).getModifiedCount();
+
+        // Bulk writes bypass the Mongo lifecycle events, so drop cached product documents here
+        Cache cache = cacheManager.getCache(EntityCacheEvictionListener.PRODUCTS);
+        if (cache != null) {
+            cache.clear();
+        }
+        log.info("Similar product graph rebuilt for {} products ({} updated) in {} ms",
+                graph.size(), written, System.currentTimeMillis() - start);
+    }
+
+    private int persist(Map<String, List<String>> neighbours) {
+        int written = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        int pending = 0;
+        for (Map.Entry<String, List<String>> entry : neighbours.entrySet()) {
+            bulk.updateOne(Query.query(Criteria.where("_id").is(entry.getKey())),
+                    new Update().set("related.similar", entry.getValue()).inc(Product.REVISION, 1));
+            if (++pending == BULK_BATCH_SIZE) {
+                written += bulk.execute().getModifiedCount();
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            written += bulk.execute().getModifiedCount();
+        }
+        return written;
+    }
+
+    static Map<String, Float> features(Product product) {
+        Map<String, Float> features = new HashMap<>();
+        if (product.getCategory() != null) {
+            if (product.getCategory().getMain() != null) {
+                features.put("category:" + product.getCategory().getMain(), 3f);
+            }
+            if (product.getCategory().getSub() != null) {
+                features.put("sub:" + product.getCategory().getSub(), 2f);
+            }
+        }
+        if (product.getTags() != null) {
+            product.getTags().forEach(tag -> features.put("tag:" + tag, 1f));
+        }
+        if (product.getIngredients() != null) {
+            product.getIngredients().stream()
+                    .filter(ingredient -> ingredient.getName() != null)
+                    .forEach(ingredient -> features.put("ingredient:" + ingredient.getName().toLowerCase(), 1f));
+        }
+        if (product.getHealthBenefits() != null) {
+            product.getHealthBenefits().stream()
+                    .filter(benefit -> benefit.getBodyPart() != null)
+                    .forEach(benefit -> features.put("body:" + benefit.getBodyPart(), 1.5f));
+        }
+        if (product.getPricing() != null && product.getPricing().getRegular() != null
+                && product.getPricing().getRegular() > 0) {
+            // Neighbouring bands share a weaker feature so close prices across a boundary still match
+            int band = (int) Math.floor(Math.log(product.getPricing().getRegular()) / Math.log(PRICE_BAND_RATIO));
+            features.put("price:" + band, 2f);
+            features.merge("price:" + (band - 1), 1f, Float::sum);
+            features.merge("price:" + (band + 1), 1f, Float::sum);
+        }
+        return features;
+    }
+}
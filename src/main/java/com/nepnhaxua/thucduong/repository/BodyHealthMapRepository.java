@@ -17,7 +17,4 @@ public interface BodyHealthMapRepository extends MongoRepository<BodyHealthMap,
     
     @Query("{ 'recommendations.products.productId': ?0, 'isActive': true }")
     List<BodyHealthMap> findByRecommendedProduct(String productId);
-    
-    @Query("{ 'healthInfo.commonIssues.symptoms': { $in: ?0 }, 'isActive': true }")
-    List<BodyHealthMap> findBySymptoms(List<String> symptoms);
 }
@@ -10,11 +10,12 @@ import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends MongoRepository<Product, String> {
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
 
     // Basic queries
     Optional<Product> findBySlug(String slug);
@@ -70,11 +71,26 @@ public interface ProductRepository extends MongoRepository<Product, String> {
     })
     Slice<Product> searchProductsWithScore(String searchTerm, Pageable pageable);
 
-    // Update operations
-    @Query("{ '_id': ?0 }")
-    @Update("{ $inc: { 'inventory.quantity': ?1, 'inventory.reserved': ?2 } }")
-    void updateInventory(String productId, int quantityChange, int reservedChange);
+    // Listing cards: same filters as above, reading only ProductSummary.FIELDS
+    @Query(value = "{ 'category.main': ?0, 'flags.isActive': true }", fields = ProductSummary.FIELDS)
+    Page<ProductSummary> findSummariesByCategory(String category, Pageable pageable);
+
+    @Query(value = "{}", fields = ProductSummary.FIELDS)
+    Page<ProductSummary> findAllSummaries(Pageable pageable);
+
+    @Query(value = "{ 'flags.isFeatured': true, 'flags.isActive': true }",
+            fields = ProductSummary.FIELDS, sort = "{ 'createdAt': -1 }")
+    List<ProductSummary> findFeaturedSummaries();
+
+    @Query(value = "{ $text: { $search: ?0 }, 'flags.isActive': true }", fields = ProductSummary.FIELDS)
+    Page<ProductSummary> searchSummaries(String searchTerm, Pageable pageable);
+
+    @Query(value = "{ '_id': { $in: ?0 }, 'flags.isActive': true }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesByIdIn(Collection<String> productIds);
 
+    // Update operations (stock changes go through InventoryReservationService)
+
+    // Prefer ProductCounterService for traffic-driven counters; these write one document per call
     @Query("{ '_id': ?0 }")
     @Update("{ $inc: { 'analytics.views': 1 } }")
     void incrementViews(String productId);
@@ -83,18 +99,11 @@ public interface ProductRepository extends MongoRepository<Product, String> {
     @Update("{ $inc: { 'analytics.addedToCart': 1 } }")
     void incrementAddedToCart(String productId);
 
+    // Through ProductService, which publishes the change event
     @Query("{ '_id': ?0 }")
-    @Update("{ $set: { 'ratings.average': ?1, 'ratings.count': ?2 } }")
+    @Update("{ $set: { 'ratings.average': ?1, 'ratings.count': ?2 }, $inc: { 'revision': 1 } }")
     void updateRatings(String productId, Double average, Integer count);
 
-    // Bestsellers (based on purchase count)
-    @Aggregation(pipeline = {
-            "{ $match: { 'flags.isActive': true } }",
-            "{ $sort: { 'analytics.purchased': -1 } }",
-            "{ $limit: ?0 }"
-    })
-    List<Product> findBestsellers(int limit);
-
     // New arrivals
     @Query("{ 'flags.isNew': true, 'flags.isActive': true }")
     Page<Product> findNewArrivals(Pageable pageable);
@@ -107,8 +116,8 @@ public interface ProductRepository extends MongoRepository<Product, String> {
     @Query("{ '_id': { $in: ?0 }, 'flags.isActive': true }")
     List<Product> findRelatedProducts(List<String> productIds);
 
-    // Bulk operations
+    // Bulk operations (through ProductService, which publishes the change events)
     @Query("{ '_id': { $in: ?0 } }")
-    @Update("{ $set: { 'flags.isActive': ?1 } }")
+    @Update("{ $set: { 'flags.isActive': ?1 }, $inc: { 'revision': 1 } }")
     void updateActiveStatusBulk(List<String> productIds, boolean isActive);
 }
@@ -8,10 +8,16 @@ import java.util.List;
 
 // Custom repository interface for complex queries
 public interface ProductRepositoryCustom {
-    Page<Product> searchWithFilters(String searchTerm, String category,
+    Page<ProductSummary> searchWithFilters(String searchTerm, String category,
                                     Double minPrice, Double maxPrice,
                                     List<String> tags, String sortBy,
                                     Pageable pageable);
+
+    // Same filters as searchWithFilters, plus facet counts for the sidebar filters
+    ProductSearchResult searchWithFacets(String searchTerm, String category,
+                                         Double minPrice, Double maxPrice,
+                                         List<String> tags, String sortBy,
+                                         Pageable pageable);
     
     List<Product> findSimilarProducts(String productId, int limit);
     
@@ -0,0 +1,43 @@
+package com.nepnhaxua.thucduong.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Page of a filtered product search plus the facet counts for the sidebar filters
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResult {
+    private Page<ProductSummary> page;
+    private Facets facets;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Facets {
+        private List<FacetBucket> categories = new ArrayList<>();
+        private List<FacetBucket> subCategories = new ArrayList<>();
+        private List<FacetBucket> tags = new ArrayList<>();
+        private List<FacetBucket> certifications = new ArrayList<>();
+        private List<FacetBucket> priceRanges = new ArrayList<>();
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetBucket {
+        private String value;
+        private long count;
+        private Double min; // price ranges only
+        private Double max; // price ranges only, null for the open-ended bucket
+    }
+}
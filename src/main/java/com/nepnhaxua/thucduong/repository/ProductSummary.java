@@ -0,0 +1,54 @@
+package com.nepnhaxua.thucduong.repository;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.nepnhaxua.thucduong.entity.Product;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Card view of a product for listing pages: only the fields in FIELDS are read from MongoDB
+@Data
+@NoArgsConstructor
+public class ProductSummary {
+
+    /**
+     * Projection used by every listing query. createdAt is kept because it is a keyset sort key.
+     */
+    public static final String FIELDS = "{ 'name': 1, 'slug': 1, 'category.main': 1, 'category.sub': 1, "
+            + "'pricing.regular': 1, 'pricing.sale': 1, 'pricing.currency': 1, "
+            + "'media.images.url': 1, 'media.images.alt': 1, 'media.images.isPrimary': 1, "
+            + "'ratings.average': 1, 'ratings.count': 1, 'badges': 1, 'flags': 1, 'createdAt': 1 }";
+
+    private String id;
+    private String name;
+    private String slug;
+    private Product.Category category;
+    private Product.Pricing pricing;
+    @JsonIgnore
+    private Product.Media media;
+    private Product.Ratings ratings;
+    private List<String> badges = new ArrayList<>();
+    private Product.Flags flags;
+    private LocalDateTime createdAt;
+
+    public static Document projection() {
+        return Document.parse(FIELDS);
+    }
+
+    /**
+     * The image flagged as primary, otherwise the first one
+     */
+    public Product.Image getPrimaryImage() {
+        if (media == null || media.getImages() == null || media.getImages().isEmpty()) {
+            return null;
+        }
+        return media.getImages().stream()
+                .filter(Product.Image::isPrimary)
+                .findFirst()
+                .orElse(media.getImages().get(0));
+    }
+}
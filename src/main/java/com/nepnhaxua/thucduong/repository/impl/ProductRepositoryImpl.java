@@ -1,9 +1,13 @@
 package com.nepnhaxua.thucduong.repository.impl;
 
 import com.nepnhaxua.thucduong.entity.Product;
-import lombok.Getter;
-import lombok.Setter;
+import com.nepnhaxua.thucduong.entity.User;
+import com.nepnhaxua.thucduong.repository.ProductRepositoryCustom;
+import com.nepnhaxua.thucduong.repository.ProductSearchResult;
+import com.nepnhaxua.thucduong.repository.ProductSearchResult.FacetBucket;
+import com.nepnhaxua.thucduong.repository.ProductSummary;
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -12,33 +16,48 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 @Repository
 @RequiredArgsConstructor
-public class ProductRepositoryImpl {
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    // Lower bounds of the price range facet (VND); anything above the last one is open-ended
+    private static final Double[] PRICE_BOUNDARIES = {0d, 50_000d, 100_000d, 200_000d, 500_000d, 1_000_000d};
+    private static final String PRICE_OVERFLOW_BUCKET = "1000000+";
+    private static final int TAG_FACET_LIMIT = 30;
 
     private final MongoTemplate mongoTemplate;
 
-    public Page<Product> searchWithFilters(String searchTerm, String category,
+    @Override
+    public Page<ProductSummary> searchWithFilters(String searchTerm, String category,
                                            Double minPrice, Double maxPrice,
                                            List<String> tags, String sortBy,
                                            Pageable pageable) {
-        List<AggregationOperation> operations = new ArrayList<>();
+        return searchWithFacets(searchTerm, category, minPrice, maxPrice, tags, sortBy, pageable).getPage();
+    }
 
-        Criteria criteria = new Criteria();
-        criteria.and("flags.isActive").is(true);
+    /**
+     * Page, total and facet counts in one $facet aggregation. The category facet ignores the
+     * selected category so the sidebar can still show sibling categories with their counts.
+     * Result documents are trimmed to the card fields before they leave the server.
+     */
+    @Override
+    public ProductSearchResult searchWithFacets(String searchTerm, String category,
+                                                Double minPrice, Double maxPrice,
+                                                List<String> tags, String sortBy,
+                                                Pageable pageable) {
+        List<AggregationOperation> operations = new ArrayList<>();
 
+        // $text has to be in the first stage of the pipeline
         if (searchTerm != null && !searchTerm.isEmpty()) {
-            criteria.and("$text").is(new Criteria().where("$search").is(searchTerm));
+            operations.add(Aggregation.match(TextCriteria.forDefaultLanguage().matching(searchTerm)));
         }
 
-        if (category != null && !category.isEmpty()) {
-            criteria.and("category.main").is(category);
-        }
+        Criteria criteria = Criteria.where("flags.isActive").is(true);
 
         if (minPrice != null || maxPrice != null) {
             Criteria priceCriteria = new Criteria("pricing.regular");
@@ -53,62 +72,89 @@ public class ProductRepositoryImpl {
 
         operations.add(Aggregation.match(criteria));
 
-        // Sorting
-        Sort.Direction direction = Sort.Direction.DESC;
-        String sortField = "createdAt";
-        if (sortBy != null) {
-            switch (sortBy) {
-                case "price_asc":
-                    sortField = "pricing.regular";
-                    direction = Sort.Direction.ASC;
-                    break;
-                case "price_desc":
-                    sortField = "pricing.regular";
-                    break;
-                case "rating":
-                    sortField = "ratings.average";
-                    break;
-                case "popularity":
-                    sortField = "analytics.purchased";
-                    break;
-                case "newest":
-                    sortField = "createdAt";
-                    break;
-            }
-        }
-
-        operations.add(Aggregation.sort(Sort.by(direction, sortField)));
+        MatchOperation categoryMatch = Aggregation.match(category != null && !category.isEmpty()
+                ? Criteria.where("category.main").is(category)
+                : new Criteria());
 
-        List<AggregationOperation> countOps = new ArrayList<>(operations);
-        countOps.add(Aggregation.count().as("total"));
+        FacetOperation facet = Aggregation.facet(
+                        categoryMatch,
+                        Aggregation.sort(resolveSort(sortBy)),
+                        Aggregation.skip(pageable.getOffset()),
+                        Aggregation.limit(pageable.getPageSize()),
+                        context -> new Document("$project", ProductSummary.projection())).as("results")
+                .and(categoryMatch, Aggregation.count().as("total")).as("total")
+                .and(Aggregation.sortByCount("category.main")).as("categories")
+                .and(categoryMatch,
+                        Aggregation.match(Criteria.where("category.sub").ne(null)),
+                        Aggregation.sortByCount("category.sub")).as("subCategories")
+                .and(categoryMatch,
+                        Aggregation.unwind("tags"),
+                        Aggregation.sortByCount("tags"),
+                        Aggregation.limit(TAG_FACET_LIMIT)).as("tags")
+                .and(categoryMatch,
+                        Aggregation.unwind("certifications"),
+                        Aggregation.sortByCount("certifications.name")).as("certifications")
+                .and(categoryMatch,
+                        Aggregation.match(Criteria.where("pricing.regular").ne(null)),
+                        Aggregation.bucket("pricing.regular")
+                                .withBoundaries((Object[]) PRICE_BOUNDARIES)
+                                .withDefaultBucket(PRICE_OVERFLOW_BUCKET)
+                                .andOutputCount().as("count")).as("priceRanges");
+        operations.add(facet);
 
-        AggregationResults<CountResult> countResults = mongoTemplate.aggregate(
-                Aggregation.newAggregation(countOps),
+        Document result = mongoTemplate.aggregate(
+                Aggregation.newAggregation(operations),
                 "products",
-                CountResult.class
-        );
+                Document.class
+        ).getUniqueMappedResult();
 
-        long total = countResults.getMappedResults().isEmpty() ? 0 :
-                countResults.getMappedResults().get(0).getTotal();
+        if (result == null) {
+            return ProductSearchResult.builder()
+                    .page(new PageImpl<>(new ArrayList<>(), pageable, 0))
+                    .facets(new ProductSearchResult.Facets())
+                    .build();
+        }
 
-        operations.add(Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()));
-        operations.add(Aggregation.limit(pageable.getPageSize()));
+        List<ProductSummary> products = result.getList("results", Document.class).stream()
+                .map(doc -> mongoTemplate.getConverter().read(ProductSummary.class, doc))
+                .toList();
+        List<Document> totalDocs = result.getList("total", Document.class);
+        long total = totalDocs.isEmpty() ? 0 : ((Number) totalDocs.get(0).get("total")).longValue();
 
-        AggregationResults<Product> results = mongoTemplate.aggregate(
-                Aggregation.newAggregation(operations),
-                "products",
-                Product.class
-        );
+        ProductSearchResult.Facets facets = ProductSearchResult.Facets.builder()
+                .categories(toBuckets(result.getList("categories", Document.class)))
+                .subCategories(toBuckets(result.getList("subCategories", Document.class)))
+                .tags(toBuckets(result.getList("tags", Document.class)))
+                .certifications(toBuckets(result.getList("certifications", Document.class)))
+                .priceRanges(toPriceBuckets(result.getList("priceRanges", Document.class)))
+                .build();
 
-        return new PageImpl<>(results.getMappedResults(), pageable, total);
+        return ProductSearchResult.builder()
+                .page(new PageImpl<>(products, pageable, total))
+                .facets(facets)
+                .build();
     }
 
+    /**
+     * Precomputed neighbours from related.similar (see SimilarProductGraphJob) in rank order;
+     * products the batch has not reached yet fall back to a same-category price band query.
+     */
+    @Override
     public List<Product> findSimilarProducts(String productId, int limit) {
         Product product = mongoTemplate.findById(productId, Product.class);
         if (product == null) {
             return new ArrayList<>();
         }
 
+        List<String> similar = product.getRelated() != null ? product.getRelated().getSimilar() : null;
+        if (similar != null && !similar.isEmpty()) {
+            List<String> ids = similar.subList(0, Math.min(limit, similar.size()));
+            Map<String, Product> byId = new HashMap<>();
+            mongoTemplate.find(new Query(Criteria.where("_id").in(ids).and("flags.isActive").is(true)), Product.class)
+                    .forEach(p -> byId.put(p.getId(), p));
+            return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+        }
+
         Criteria criteria = new Criteria();
         criteria.and("_id").ne(productId);
         criteria.and("flags.isActive").is(true);
@@ -124,9 +170,118 @@ public class ProductRepositoryImpl {
         return mongoTemplate.find(query, Product.class);
     }
 
-    @Setter
-    @Getter
-    private static class CountResult {
-        private long total;
+    /**
+     * Baseline "for you" list for users without candidates; see ForYouRecommendationService
+     */
+    @Override
+    public List<Product> getPersonalizedRecommendations(String userId, int limit) {
+        return baselineRecommendations(mongoTemplate.findById(userId, User.class), limit);
+    }
+
+    /**
+     * Best rated active products from the categories of the user's wishlist and recently
+     * viewed products, excluding the ones already seen.
+     */
+    private List<Product> baselineRecommendations(User user, int limit) {
+        Set<String> seen = new HashSet<>();
+        if (user != null) {
+            seen.addAll(user.getWishlist());
+            user.getRecentlyViewed().forEach(viewed -> seen.add(viewed.getProductId()));
+        }
+
+        Criteria criteria = Criteria.where("flags.isActive").is(true);
+        if (!seen.isEmpty()) {
+            Query seenQuery = new Query(Criteria.where("_id").in(seen));
+            seenQuery.fields().include("category.main");
+            List<String> categories = mongoTemplate.find(seenQuery, Product.class).stream()
+                    .filter(p -> p.getCategory() != null && p.getCategory().getMain() != null)
+                    .map(p -> p.getCategory().getMain())
+                    .distinct()
+                    .toList();
+            criteria.and("_id").nin(seen);
+            if (!categories.isEmpty()) {
+                criteria.and("category.main").in(categories);
+            }
+        }
+
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "ratings.average", "ratings.count"))
+                .limit(limit);
+        return mongoTemplate.find(query, Product.class);
+    }
+
+    private static Sort resolveSort(String sortBy) {
+        Sort.Direction direction = Sort.Direction.DESC;
+        String sortField = "createdAt";
+        if (sortBy != null) {
+            switch (sortBy) {
+                case "price_asc":
+                    sortField = "pricing.regular";
+                    direction = Sort.Direction.ASC;
+                    break;
+                case "price_desc":
+                    sortField = "pricing.regular";
+                    break;
+                case "rating":
+                    sortField = "ratings.average";
+                    break;
+                case "popularity":
+                    sortField = "analytics.purchased";
+                    break;
+                case "name":
+                    sortField = "name";
+                    direction = Sort.Direction.ASC;
+                    break;
+                case "newest":
+                    sortField = "createdAt";
+                    break;
+            }
+        }
+        // _id keeps skip/limit pages stable when sort keys tie
+        return Sort.by(direction, sortField).and(Sort.by(direction, "_id"));
+    }
+
+    private static List<FacetBucket> toBuckets(List<Document> docs) {
+        return docs.stream()
+                .filter(doc -> doc.get("_id") != null)
+                .map(doc -> FacetBucket.builder()
+                        .value(doc.get("_id").toString())
+                        .count(((Number) doc.get("count")).longValue())
+                        .build())
+                .toList();
+    }
+
+    private static List<FacetBucket> toPriceBuckets(List<Document> docs) {
+        List<FacetBucket> buckets = new ArrayList<>();
+        for (Document doc : docs) {
+            Object id = doc.get("_id");
+            long count = ((Number) doc.get("count")).longValue();
+            if (id instanceof Number lower) {
+                int index = indexOfBoundary(lower.doubleValue());
+                Double upper = index + 1 < PRICE_BOUNDARIES.length ? PRICE_BOUNDARIES[index + 1] : null;
+                buckets.add(FacetBucket.builder()
+                        .value(String.valueOf(lower.longValue()))
+                        .count(count)
+                        .min(lower.doubleValue())
+                        .max(upper)
+                        .build());
+            } else {
+                buckets.add(FacetBucket.builder()
+                        .value(PRICE_OVERFLOW_BUCKET)
+                        .count(count)
+                        .min(PRICE_BOUNDARIES[PRICE_BOUNDARIES.length - 1])
+                        .build());
+            }
+        }
+        return buckets;
+    }
+
+    private static int indexOfBoundary(double lower) {
+        for (int i = 0; i < PRICE_BOUNDARIES.length; i++) {
+            if (PRICE_BOUNDARIES[i] == lower) {
+                return i;
+            }
+        }
+        return PRICE_BOUNDARIES.length - 1;
     }
 }
@@ -0,0 +1,363 @@
+package com.nepnhaxua.thucduong.search;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.mongodb.core.index.TextIndexed;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over active products with BM25 ranking.
+ * Field weights are the ones declared with {@link TextIndexed} on {@link Product}, so ranking
+ * stays in line with the MongoDB text index. Terms are accent-folded; the last query token also
+ * matches as a prefix and unknown tokens fall back to edit-distance matching.
+ */
+public class ProductSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float PREFIX_FACTOR = 0.8f;
+    private static final float FUZZY_FACTOR = 0.6f;
+    private static final int MAX_EXPANSIONS = 32;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private final float nameWeight;
+    private final float keywordWeight;
+    private final float synonymWeight;
+    private final float tagWeight;
+    private final float ingredientWeight;
+    private final float descriptionWeight;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final TreeSet<String> vocabulary = new TreeSet<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private String[] ids = new String[64];
+    private String[][] termsBySlot = new String[64][];
+    private float[] lengths = new float[64];
+    private int slotCount;
+    private double totalLength;
+
+    public ProductSearchIndex() {
+        this.nameWeight = declaredWeight(Product.class, "name", 1);
+        this.keywordWeight = declaredWeight(Product.class, "searchKeywords", 1);
+        // synonyms are not part of the Mongo text index; treat them like search keywords
+        this.synonymWeight = declaredWeight(Product.class, "synonyms", keywordWeight);
+        this.tagWeight = declaredWeight(Product.class, "tags", 1);
+        this.ingredientWeight = declaredWeight(Product.Ingredient.class, "name", 1);
+        this.descriptionWeight = declaredWeight(Product.class, "description", 1);
+    }
+
+    /**
+     * Add or replace a product. Inactive products are removed from the index.
+     */
+    public void index(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        if (product.getFlags() != null && !product.getFlags().isActive()) {
+            remove(product.getId());
+            return;
+        }
+
+        Map<String, Float> frequencies = new HashMap<>();
+        float length = 0;
+        length += addField(frequencies, product.getName(), nameWeight);
+        length += addFields(frequencies, product.getSearchKeywords(), keywordWeight);
+        length += addFields(frequencies, product.getSynonyms(), synonymWeight);
+        length += addFields(frequencies, product.getTags(), tagWeight);
+        if (product.getIngredients() != null) {
+            for (Product.Ingredient ingredient : product.getIngredients()) {
+                length += addField(frequencies, ingredient.getName(), ingredientWeight);
+            }
+        }
+        if (product.getDescription() != null) {
+            length += addField(frequencies, product.getDescription().getShortDesc(), descriptionWeight);
+            length += addField(frequencies, product.getDescription().getDetailed(), descriptionWeight);
+        }
+        if (frequencies.isEmpty()) {
+            remove(product.getId());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.getId());
+            int slot = allocateSlot();
+            ids[slot] = product.getId();
+            lengths[slot] = length;
+            termsBySlot[slot] = frequencies.keySet().toArray(new String[0]);
+            slotById.put(product.getId(), slot);
+            totalLength += length;
+            frequencies.forEach((term, tf) -> {
+                postings.computeIfAbsent(term, t -> new Postings()).add(slot, tf);
+                vocabulary.add(term);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotById.clear();
+            postings.clear();
+            vocabulary.clear();
+            freeSlots.clear();
+            ids = new String[64];
+            termsBySlot = new String[64][];
+            lengths = new float[64];
+            slotCount = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked product ids for a query, paged by offset/limit
+     */
+    public Hits search(String query, int offset, int limit) {
+        List<String> tokens = VietnameseTextNormalizer.tokenize(query);
+        if (tokens.isEmpty()) {
+            return new Hits(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            int docCount = slotById.size();
+            if (docCount == 0) {
+                return new Hits(List.of(), 0);
+            }
+            double avgLength = totalLength / docCount;
+            float[] scores = new float[slotCount];
+            int[] matchedTokens = new int[slotCount];
+            int[] lastToken = new int[slotCount];
+
+            for (int t = 0; t < tokens.size(); t++) {
+                boolean last = t == tokens.size() - 1;
+                for (Map.Entry<String, Float> expansion : expand(tokens.get(t), last).entrySet()) {
+                    Postings list = postings.get(expansion.getKey());
+                    double idf = Math.log(1 + (docCount - list.size + 0.5) / (list.size + 0.5));
+                    float factor = expansion.getValue();
+                    for (int i = 0; i < list.size; i++) {
+                        int slot = list.slots[i];
+                        float tf = list.frequencies[i];
+                        double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[slot] / avgLength));
+                        scores[slot] += (float) (factor * idf * norm);
+                        if (lastToken[slot] != t + 1) {
+                            lastToken[slot] = t + 1;
+                            matchedTokens[slot]++;
+                        }
+                    }
+                }
+            }
+
+            // Documents covering more of the query rank above partial matches
+            List<Integer> hits = new ArrayList<>();
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (matchedTokens[slot] > 0) {
+                    float coverage = (float) matchedTokens[slot] / tokens.size();
+                    scores[slot] *= coverage * coverage;
+                    hits.add(slot);
+                }
+            }
+            hits.sort((a, b) -> {
+                int byScore = Float.compare(scores[b], scores[a]);
+                return byScore != 0 ? byScore : ids[a].compareTo(ids[b]);
+            });
+
+            int from = Math.min(Math.max(offset, 0), hits.size());
+            int to = Math.min(from + Math.max(limit, 0), hits.size());
+            List<String> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                page.add(ids[hits.get(i)]);
+            }
+            return new Hits(page, hits.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Exact term, prefix completions for the last token, and edit-distance matches for unknown terms
+    private Map<String, Float> expand(String token, boolean last) {
+        Map<String, Float> expansions = new LinkedHashMap<>();
+        boolean exact = postings.containsKey(token);
+        if (exact) {
+            expansions.put(token, 1f);
+        }
+        if (last && token.length() >= MIN_PREFIX_LENGTH) {
+            for (String term : vocabulary.subSet(token, false, token + Character.MAX_VALUE, false)) {
+                if (expansions.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                expansions.put(term, PREFIX_FACTOR);
+            }
+        }
+        if (!exact && token.length() >= MIN_FUZZY_LENGTH) {
+            int maxEdits = token.length() >= 8 ? 2 : 1;
+            char first = token.charAt(0);
+            for (String term : vocabulary.subSet(String.valueOf(first), true, first + String.valueOf(Character.MAX_VALUE), false)) {
+                if (expansions.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                if (Math.abs(term.length() - token.length()) > maxEdits || expansions.containsKey(term)) {
+                    continue;
+                }
+                int distance = editDistance(token, term, maxEdits);
+                if (distance <= maxEdits) {
+                    expansions.put(term, FUZZY_FACTOR / distance);
+                }
+            }
+        }
+        return expansions;
+    }
+
+    private void removeLocked(String productId) {
+        Integer slot = slotById.remove(productId);
+        if (slot == null) {
+            return;
+        }
+        for (String term : termsBySlot[slot]) {
+            Postings list = postings.get(term);
+            list.remove(slot);
+            if (list.size == 0) {
+                postings.remove(term);
+                vocabulary.remove(term);
+            }
+        }
+        totalLength -= lengths[slot];
+        ids[slot] = null;
+        termsBySlot[slot] = null;
+        lengths[slot] = 0;
+        freeSlots.push(slot);
+    }
+
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            termsBySlot = Arrays.copyOf(termsBySlot, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        return slotCount++;
+    }
+
+    private static float addFields(Map<String, Float> frequencies, List<String> values, float weight) {
+        float length = 0;
+        if (values != null) {
+            for (String value : values) {
+                length += addField(frequencies, value, weight);
+            }
+        }
+        return length;
+    }
+
+    private static float addField(Map<String, Float> frequencies, String value, float weight) {
+        List<String> tokens = VietnameseTextNormalizer.tokenize(value);
+        for (String token : tokens) {
+            frequencies.merge(token, weight, Float::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    // Optimal string alignment distance, giving up once it exceeds maxEdits
+    static int editDistance(String a, String b, int maxEdits) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], previous2[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    private static float declaredWeight(Class<?> type, String field, float fallback) {
+        try {
+            TextIndexed textIndexed = type.getDeclaredField(field).getAnnotation(TextIndexed.class);
+            return textIndexed != null ? textIndexed.weight() : fallback;
+        } catch (NoSuchFieldException e) {
+            return fallback;
+        }
+    }
+
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private float[] frequencies = new float[4];
+        private int size;
+
+        void add(int slot, float frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            slots[size] = slot;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    size--;
+                    slots[i] = slots[size];
+                    frequencies[i] = frequencies[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Hits {
+        private final List<String> ids;
+        private final int total;
+    }
+}
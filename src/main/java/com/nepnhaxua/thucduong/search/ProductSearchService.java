@@ -0,0 +1,145 @@
+package com.nepnhaxua.thucduong.search;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import com.nepnhaxua.thucduong.repository.ProductRepository;
+import com.nepnhaxua.thucduong.repository.ProductSummary;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Product search served from the in-memory {@link ProductSearchIndex}.
+ * The index is loaded once the application is ready and then follows product change events,
+ * including the ones relayed from other nodes. Until it is loaded, searches use the MongoDB text index.
+ * Full rebuilds fill a fresh index off to the side and swap it in, so searches never see a
+ * half-built one; changes that arrive meanwhile are replayed onto it before the swap.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductSearchService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductRepository productRepository;
+
+    private volatile ProductSearchIndex index = new ProductSearchIndex();
+    private volatile boolean ready;
+
+    // Guards incremental updates, the change journal and the swap
+    private final Object updateLock = new Object();
+    // Ids changed while a rebuild is streaming; null when no rebuild runs
+    private Set<String> changedDuringRebuild;
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "product-search-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (updateLock) {
+            changedDuringRebuild = new HashSet<>();
+        }
+        ProductSearchIndex fresh = new ProductSearchIndex();
+        Query query = new Query(Criteria.where("flags.isActive").is(true));
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(fresh::index);
+        } catch (Exception e) {
+            synchronized (updateLock) {
+                changedDuringRebuild = null;
+            }
+            // Keep serving the previous index if there is one
+            log.error("Could not build product search index{}", ready ? "" : ", falling back to MongoDB text search", e);
+            return;
+        }
+        synchronized (updateLock) {
+            changedDuringRebuild.forEach(id -> apply(fresh, id, false));
+            changedDuringRebuild = null;
+            index = fresh;
+            ready = true;
+        }
+        log.info("Product search index built with {} products in {} ms",
+                fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getProductId() == null) {
+            // Multi-document delete or bulk import: the affected ids are unknown.
+            // Rebuilt off the publishing thread; a burst of such events collapses into one rebuild.
+            if (rebuildQueued.compareAndSet(false, true)) {
+                rebuildExecutor.execute(() -> {
+                    rebuildQueued.set(false);
+                    rebuild();
+                });
+            }
+            return;
+        }
+        synchronized (updateLock) {
+            apply(index, event.getProductId(), event.isDeleted());
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event.getProductId());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private void apply(ProductSearchIndex target, String productId, boolean deleted) {
+        if (deleted) {
+            target.remove(productId);
+            return;
+        }
+        productRepository.findById(productId)
+                .ifPresentOrElse(target::index, () -> target.remove(productId));
+    }
+
+    /**
+     * Ranked, accent-insensitive search over active products
+     */
+    public Page<ProductSummary> search(String query, Pageable pageable) {
+        if (!ready) {
+            return productRepository.searchSummaries(query, pageable);
+        }
+        ProductSearchIndex.Hits hits = index.search(query, (int) pageable.getOffset(), pageable.getPageSize());
+        if (hits.getIds().isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, hits.getTotal());
+        }
+
+        // $in does not keep the ranking order
+        Map<String, ProductSummary> byId = productRepository.findSummariesByIdIn(hits.getIds()).stream()
+                .collect(Collectors.toMap(ProductSummary::getId, Function.identity()));
+        List<ProductSummary> products = hits.getIds().stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(products, pageable, hits.getTotal());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+}
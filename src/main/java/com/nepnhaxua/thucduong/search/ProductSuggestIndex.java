@@ -0,0 +1,164 @@
+package com.nepnhaxua.thucduong.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Immutable typeahead index: accent-folded keys in one sorted array, so a prefix is a contiguous
+ * range found by binary search. Every word start of a phrase is a key ("gao lut do", "lut do", "do").
+ * One and two character prefixes, whose ranges are the widest, have their top suggestions precomputed.
+ */
+public final class ProductSuggestIndex {
+
+    public static final ProductSuggestIndex EMPTY = new Builder().build();
+
+    static final int MAX_LIMIT = 20;
+    private static final int PRECOMPUTED_PREFIX_LENGTH = 2;
+    private static final float INNER_WORD_FACTOR = 0.7f;
+
+    private final String[] keys;
+    private final int[] targets;
+    private final float[] scores;
+    private final Suggestion[] suggestions;
+    private final Map<String, int[]> shortPrefixTop;
+
+    private ProductSuggestIndex(String[] keys, int[] targets, float[] scores, Suggestion[] suggestions) {
+        this.keys = keys;
+        this.targets = targets;
+        this.scores = scores;
+        this.suggestions = suggestions;
+        this.shortPrefixTop = precomputeShortPrefixes();
+    }
+
+    public int size() {
+        return suggestions.length;
+    }
+
+    /**
+     * Best suggestions whose phrase has a word starting with the (folded) query
+     */
+    public List<Suggestion> suggest(String query, int limit) {
+        String prefix = String.join(" ", VietnameseTextNormalizer.tokenize(query));
+        limit = Math.min(limit, MAX_LIMIT);
+        if (prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        int[] top = prefix.length() <= PRECOMPUTED_PREFIX_LENGTH
+                ? shortPrefixTop.getOrDefault(prefix, new int[0])
+                : topInRange(lowerBound(prefix), lowerBound(prefix + Character.MAX_VALUE), limit);
+
+        List<Suggestion> result = new ArrayList<>(Math.min(limit, top.length));
+        for (int i = 0; i < top.length && i < limit; i++) {
+            result.add(suggestions[top[i]]);
+        }
+        return result;
+    }
+
+    // Best score per suggestion within [from, to), highest first
+    private int[] topInRange(int from, int to, int limit) {
+        Map<Integer, Float> best = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            best.merge(targets[i], scores[i], Math::max);
+        }
+        return best.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Float>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private Map<String, int[]> precomputeShortPrefixes() {
+        Map<String, int[]> top = new HashMap<>();
+        int i = 0;
+        while (i < keys.length) {
+            for (int length = 1; length <= PRECOMPUTED_PREFIX_LENGTH; length++) {
+                if (keys[i].length() < length) {
+                    continue;
+                }
+                String prefix = keys[i].substring(0, length);
+                if (!top.containsKey(prefix)) {
+                    top.put(prefix, topInRange(i, lowerBound(prefix + Character.MAX_VALUE), MAX_LIMIT));
+                }
+            }
+            i++;
+        }
+        return top;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Suggestion {
+        private final String type; // product | category
+        private final String text;
+        private final String slug;
+    }
+
+    public static class Builder {
+        private final List<Suggestion> suggestions = new ArrayList<>();
+        private final List<String> keys = new ArrayList<>();
+        private final List<Integer> targets = new ArrayList<>();
+        private final List<Float> scores = new ArrayList<>();
+
+        /**
+         * Register a suggestion; returns its handle for {@link #phrase}
+         */
+        public int add(Suggestion suggestion) {
+            suggestions.add(suggestion);
+            return suggestions.size() - 1;
+        }
+
+        /**
+         * Make the suggestion reachable through every word start of the phrase
+         */
+        public Builder phrase(int suggestion, String phrase, float score) {
+            List<String> tokens = VietnameseTextNormalizer.tokenize(phrase);
+            for (int i = 0; i < tokens.size(); i++) {
+                keys.add(String.join(" ", tokens.subList(i, tokens.size())));
+                targets.add(suggestion);
+                scores.add(i == 0 ? score : score * INNER_WORD_FACTOR);
+            }
+            return this;
+        }
+
+        public ProductSuggestIndex build() {
+            Integer[] order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(keys::get));
+
+            String[] sortedKeys = new String[order.length];
+            int[] sortedTargets = new int[order.length];
+            float[] sortedScores = new float[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedKeys[i] = keys.get(order[i]);
+                sortedTargets[i] = targets.get(order[i]);
+                sortedScores[i] = scores.get(order[i]);
+            }
+            return new ProductSuggestIndex(sortedKeys, sortedTargets, sortedScores,
+                    suggestions.toArray(new Suggestion[0]));
+        }
+    }
+}
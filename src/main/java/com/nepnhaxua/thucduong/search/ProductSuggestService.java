@@ -0,0 +1,118 @@
+package com.nepnhaxua.thucduong.search;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import com.nepnhaxua.thucduong.service.ProductCategories;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Search box suggestions served from {@link ProductSuggestIndex} without touching MongoDB.
+ * The index is rebuilt off the request path: shortly after product changes and periodically,
+ * so that popularity from {@code Product.analytics} stays reasonably fresh.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductSuggestService {
+
+    private static final float NAME_WEIGHT = 1.0f;
+    private static final float KEYWORD_WEIGHT = 0.8f;
+    private static final float SYNONYM_WEIGHT = 0.7f;
+    private static final float CATEGORY_WEIGHT = 1.2f;
+
+    private final MongoTemplate mongoTemplate;
+
+    private volatile ProductSuggestIndex index = ProductSuggestIndex.EMPTY;
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    public List<ProductSuggestIndex.Suggestion> suggest(String query, int limit) {
+        return index.suggest(query, limit);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.suggest.refresh-interval:600000}",
+            initialDelayString = "${app.suggest.refresh-interval:600000}")
+    public void rebuild() {
+        stale.set(false);
+        long start = System.currentTimeMillis();
+        ProductSuggestIndex.Builder builder = ProductSuggestIndex.builder();
+        Map<String, Integer> productsPerCategory = new HashMap<>();
+
+        Query query = new Query(Criteria.where("flags.isActive").is(true));
+        query.fields().include("name", "slug", "searchKeywords", "synonyms", "category.main", "analytics");
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(product -> {
+                if (product.getName() == null || product.getSlug() == null) {
+                    return;
+                }
+                float popularity = popularity(product.getAnalytics());
+                int handle = builder.add(new ProductSuggestIndex.Suggestion("product", product.getName(), product.getSlug()));
+                builder.phrase(handle, product.getName(), NAME_WEIGHT * popularity);
+                if (product.getSearchKeywords() != null) {
+                    product.getSearchKeywords().forEach(k -> builder.phrase(handle, k, KEYWORD_WEIGHT * popularity));
+                }
+                if (product.getSynonyms() != null) {
+                    product.getSynonyms().forEach(s -> builder.phrase(handle, s, SYNONYM_WEIGHT * popularity));
+                }
+                if (product.getCategory() != null && product.getCategory().getMain() != null) {
+                    productsPerCategory.merge(product.getCategory().getMain(), 1, Integer::sum);
+                }
+            });
+        } catch (Exception e) {
+            // Keep serving the previous index
+            log.warn("Could not rebuild product suggestions", e);
+            return;
+        }
+
+        productsPerCategory.forEach((slug, count) -> {
+            String label = ProductCategories.label(slug);
+            int handle = builder.add(new ProductSuggestIndex.Suggestion("category", label, slug));
+            builder.phrase(handle, label, CATEGORY_WEIGHT * (1 + (float) Math.log1p(count)));
+        });
+
+        index = builder.build();
+        log.info("Product suggestions rebuilt with {} entries in {} ms",
+                index.size(), System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        stale.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${app.suggest.change-debounce:5000}")
+    public void rebuildIfStale() {
+        if (stale.get()) {
+            rebuild();
+        }
+    }
+
+    // Purchases weigh most, then add-to-cart, then views; log-damped so bestsellers don't drown exact matches
+    private static float popularity(Product.Analytics analytics) {
+        if (analytics == null) {
+            return 1;
+        }
+        double signal = 5.0 * valueOf(analytics.getPurchased())
+                + 2.0 * valueOf(analytics.getAddedToCart())
+                + 0.1 * valueOf(analytics.getViews());
+        return 1 + (float) Math.log1p(signal);
+    }
+
+    private static int valueOf(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,150 @@
+package com.nepnhaxua.thucduong.search;
+
+import com.nepnhaxua.thucduong.entity.BodyHealthMap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Immutable inverted index from accent-folded symptoms to the common issues of every body part.
+ * Each symptom maps to a bitset over issue ids; an assessment walks the bitsets of the given
+ * symptoms, counts matches per issue and ranks by matches, severity and coverage.
+ */
+public final class SymptomIndex {
+
+    public static final SymptomIndex EMPTY = new Builder().build();
+
+    private static final Map<String, Integer> SEVERITY = Map.of("mild", 1, "moderate", 2, "severe", 3);
+
+    private final Map<String, Integer> vocabulary;
+    private final long[][] postings; // symptom id -> issue bitset
+    private final Map<String, long[]> bodyPartIssues;
+    private final Issue[] issues;
+
+    private SymptomIndex(Map<String, Integer> vocabulary, long[][] postings,
+                         Map<String, long[]> bodyPartIssues, Issue[] issues) {
+        this.vocabulary = vocabulary;
+        this.postings = postings;
+        this.bodyPartIssues = bodyPartIssues;
+        this.issues = issues;
+    }
+
+    public int size() {
+        return issues.length;
+    }
+
+    public int vocabularySize() {
+        return vocabulary.size();
+    }
+
+    /**
+     * Issues sharing at least one symptom, best first; restricted to one body part unless it is null
+     */
+    public List<Match> assess(Collection<String> symptoms, String bodyPart, int limit) {
+        long[] scope = bodyPart != null ? bodyPartIssues.get(bodyPart) : null;
+        if (symptoms == null || (bodyPart != null && scope == null)) {
+            return List.of();
+        }
+        int[] matched = new int[issues.length];
+        Set<Integer> seen = new HashSet<>();
+        for (String symptom : symptoms) {
+            Integer id = vocabulary.get(normalize(symptom));
+            if (id == null || !seen.add(id)) {
+                continue;
+            }
+            long[] bits = postings[id];
+            for (int w = 0; w < bits.length; w++) {
+                long word = scope != null ? bits[w] & scope[w] : bits[w];
+                while (word != 0) {
+                    matched[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+                    word &= word - 1;
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i] > 0) {
+                matches.add(new Match(issues[i].bodyPart, issues[i].issue, matched[i],
+                        (double) matched[i] / issues[i].symptomCount));
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::getMatchedSymptoms).reversed()
+                .thenComparing(Comparator.comparingInt((Match m) -> severity(m.getIssue())).reversed())
+                .thenComparing(Comparator.comparingDouble(Match::getCoverage).reversed()));
+        return matches.size() <= limit ? matches : new ArrayList<>(matches.subList(0, limit));
+    }
+
+    public static int severity(BodyHealthMap.CommonIssue issue) {
+        return issue.getSeverity() == null ? 0 : SEVERITY.getOrDefault(issue.getSeverity().toLowerCase(Locale.ROOT), 0);
+    }
+
+    static String normalize(String symptom) {
+        return String.join(" ", VietnameseTextNormalizer.tokenize(symptom));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Match {
+        private final String bodyPart;
+        private final BodyHealthMap.CommonIssue issue;
+        private final int matchedSymptoms;
+        private final double coverage; // matched / symptoms listed for the issue
+    }
+
+    @AllArgsConstructor
+    private static class Issue {
+        private final String bodyPart;
+        private final BodyHealthMap.CommonIssue issue;
+        private final int symptomCount;
+    }
+
+    public static class Builder {
+        private final Map<String, Integer> vocabulary = new HashMap<>();
+        private final List<Set<Integer>> issueSymptoms = new ArrayList<>();
+        private final List<Issue> issues = new ArrayList<>();
+
+        public Builder add(BodyHealthMap healthMap) {
+            if (healthMap.getBodyPart() == null || healthMap.getHealthInfo() == null
+                    || healthMap.getHealthInfo().getCommonIssues() == null) {
+                return this;
+            }
+            for (BodyHealthMap.CommonIssue issue : healthMap.getHealthInfo().getCommonIssues()) {
+                if (issue.getSymptoms() == null || issue.getSymptoms().isEmpty()) {
+                    continue;
+                }
+                Set<Integer> symptomIds = new HashSet<>();
+                for (String symptom : issue.getSymptoms()) {
+                    String term = normalize(symptom);
+                    if (!term.isEmpty()) {
+                        symptomIds.add(vocabulary.computeIfAbsent(term, t -> vocabulary.size()));
+                    }
+                }
+                if (!symptomIds.isEmpty()) {
+                    issueSymptoms.add(symptomIds);
+                    issues.add(new Issue(healthMap.getBodyPart(), issue, symptomIds.size()));
+                }
+            }
+            return this;
+        }
+
+        public SymptomIndex build() {
+            int words = (issues.size() + 63) >>> 6;
+            long[][] postings = new long[vocabulary.size()][words];
+            Map<String, long[]> bodyPartIssues = new HashMap<>();
+            for (int i = 0; i < issues.size(); i++) {
+                for (int symptom : issueSymptoms.get(i)) {
+                    postings[symptom][i >>> 6] |= 1L << i;
+                }
+                bodyPartIssues.computeIfAbsent(issues.get(i).bodyPart, b -> new long[words])[i >>> 6] |= 1L << i;
+            }
+            return new SymptomIndex(Map.copyOf(vocabulary), postings, Map.copyOf(bodyPartIssues),
+                    issues.toArray(new Issue[0]));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.nepnhaxua.thucduong.search;
+
+import com.nepnhaxua.thucduong.entity.BodyHealthMap;
+import com.nepnhaxua.thucduong.event.BodyHealthMapChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Symptom assessments answered from an in-memory {@link SymptomIndex} over all active body
+ * parts. The index is rebuilt shortly after health map content changes on any node.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SymptomIndexService {
+
+    private final MongoTemplate mongoTemplate;
+
+    private volatile SymptomIndex index = SymptomIndex.EMPTY;
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    /**
+     * Matching issues ranked by matched symptoms, then severity; bodyPart null searches every body part
+     */
+    public List<SymptomIndex.Match> assess(Collection<String> symptoms, String bodyPart, int limit) {
+        return index.assess(symptoms, bodyPart, limit);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        stale.set(false);
+        SymptomIndex.Builder builder = SymptomIndex.builder();
+        Query query = new Query(Criteria.where("isActive").is(true));
+        query.fields().include("bodyPart", "healthInfo.commonIssues");
+        try {
+            mongoTemplate.find(query, BodyHealthMap.class).forEach(builder::add);
+        } catch (Exception e) {
+            // Keep answering from the previous index
+            log.warn("Could not rebuild symptom index", e);
+            return;
+        }
+        index = builder.build();
+        log.info("Symptom index rebuilt: {} issues, {} distinct symptoms", index.size(), index.vocabularySize());
+    }
+
+    @EventListener
+    public void onBodyHealthMapChanged(BodyHealthMapChangedEvent event) {
+        stale.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${app.symptoms.change-debounce:2000}")
+    public void rebuildIfStale() {
+        if (stale.get()) {
+            rebuild();
+        }
+    }
+}
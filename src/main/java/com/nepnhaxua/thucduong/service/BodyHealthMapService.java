@@ -1,14 +1,17 @@
 package com.nepnhaxua.thucduong.service;
 
+import com.nepnhaxua.thucduong.analytics.AnalyticsPipeline;
 import com.nepnhaxua.thucduong.entity.BodyHealthMap;
 import com.nepnhaxua.thucduong.entity.Product;
 import com.nepnhaxua.thucduong.entity.User;
-import com.nepnhaxua.thucduong.repository.BodyHealthMapRepository;
+import com.nepnhaxua.thucduong.recommendation.PersonalizationEngine;
 import com.nepnhaxua.thucduong.repository.ProductRepository;
 import com.nepnhaxua.thucduong.repository.UserRepository;
+import com.nepnhaxua.thucduong.search.SymptomIndex;
+import com.nepnhaxua.thucduong.search.SymptomIndexService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,27 +23,42 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class BodyHealthMapService {
     
-    private final BodyHealthMapRepository bodyHealthMapRepository;
+    private static final float EDITORIAL_DECAY = 0.05f;
+    private static final int MAX_ASSESSMENT_ISSUES = 10;
+    
+    private final HealthMapSnapshotService healthMapSnapshotService;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final AnalyticsPipeline analyticsPipeline;
+    private final PersonalizationEngine personalizationEngine;
+    private final SymptomIndexService symptomIndexService;
+    private final InteractiveContentCatalog interactiveContentCatalog;
+    
+    @Value("${app.health-map.max-batch-size:20}")
+    private int maxBatchSize;
     
     /**
-     * Get all active body parts for the health map
+     * Get all active body parts for the health map (in-memory snapshot, read-only)
      */
-    @Cacheable(value = "bodyHealthMap", key = "'all'")
     public List<BodyHealthMap> getAllBodyParts() {
-        return bodyHealthMapRepository.findByIsActiveTrueOrderByDisplayOrder();
+        return healthMapSnapshotService.getSnapshot().getBodyParts();
     }
     
     /**
-     * Get detailed information for a specific body part
+     * Get detailed information for a specific body part (in-memory snapshot, read-only)
      */
-    @Cacheable(value = "bodyHealthMap", key = "#bodyPart")
     public BodyHealthMap getBodyPartDetails(String bodyPart) {
-        return bodyHealthMapRepository.findByBodyPartAndIsActiveTrue(bodyPart)
+        return healthMapSnapshotService.getSnapshot().find(bodyPart)
                 .orElseThrow(() -> new NoSuchElementException("Body part not found: " + bodyPart));
     }
     
+    /**
+     * Body parts with their texts resolved for one language (vi, en)
+     */
+    public List<HealthMapSnapshot.LocalizedBodyPart> getLocalizedBodyParts(String language) {
+        return healthMapSnapshotService.getSnapshot().views(language);
+    }
+    
     /**
      * Get personalized recommendations for a body part based on user profile
      */
@@ -50,59 +68,50 @@ public class BodyHealthMapService {
         
         BodyHealthMap healthMap = getBodyPartDetails(bodyPart);
         User user = userId != null ? userRepository.findById(userId).orElse(null) : null;
+        Map<String, Product> products = productsById(productRepository.findRelatedProducts(editorialOrder(healthMap)));
+        return buildRecommendations(healthMap, user, language, products);
+    }
+    
+    /**
+     * Recommendations for several body parts at once, keyed by body part in request order: the
+     * user and all recommended products are loaded once, then each body part is scored in parallel
+     */
+    @Transactional(readOnly = true)
+    public Map<String, PersonalizedRecommendations> getBatchRecommendations(
+            List<String> bodyParts, String userId, String language) {
         
-        PersonalizedRecommendations recommendations = new PersonalizedRecommendations();
-        recommendations.setBodyPart(bodyPart);
-        recommendations.setLanguage(language);
-        
-        // Get base product recommendations
-        List<String> productIds = healthMap.getRecommendations().getProducts().stream()
-                .map(BodyHealthMap.ProductRecommendation::getProductId)
-                .collect(Collectors.toList());
-        
-        List<Product> products = productRepository.findRelatedProducts(productIds);
-        
-        // Apply personalization if user is logged in
-        if (user != null) {
-            products = personalizeProducts(products, user, healthMap);
-            recommendations.setPersonalized(true);
+        if (bodyParts == null || bodyParts.isEmpty()) {
+            throw new IllegalArgumentException("At least one body part is required");
+        }
+        Set<String> distinct = new LinkedHashSet<>(bodyParts);
+        if (distinct.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " body parts per batch");
         }
+        List<BodyHealthMap> healthMaps = distinct.stream()
+                .map(this::getBodyPartDetails)
+                .collect(Collectors.toList());
+        User user = userId != null ? userRepository.findById(userId).orElse(null) : null;
         
-        // Set recommendations
-        recommendations.setProducts(products);
-        recommendations.setBundles(getBundlesForBodyPart(healthMap, products));
-        recommendations.setHealthTips(getHealthTipsForUser(healthMap, user, language));
-        recommendations.setDidYouKnow(getRandomDidYouKnow(healthMap, language));
+        Set<String> productIds = new LinkedHashSet<>();
+        healthMaps.forEach(healthMap -> productIds.addAll(editorialOrder(healthMap)));
+        Map<String, Product> products = productIds.isEmpty()
+                ? Map.of()
+                : productsById(productRepository.findRelatedProducts(new ArrayList<>(productIds)));
         
-        return recommendations;
+        // Scoring is CPU only (snapshot + feature table), so it fans out on the common pool
+        List<PersonalizedRecommendations> results = healthMaps.parallelStream()
+                .map(healthMap -> buildRecommendations(healthMap, user, language, products))
+                .collect(Collectors.toList());
+        Map<String, PersonalizedRecommendations> byBodyPart = new LinkedHashMap<>();
+        results.forEach(r -> byBodyPart.put(r.getBodyPart(), r));
+        return byBodyPart;
     }
     
     /**
-     * Get interactive content for body part hover/click
+     * Get interactive content for body part hover/click, prerendered per action and language
      */
     public InteractiveContent getInteractiveContent(String bodyPart, String action, String language) {
-        BodyHealthMap healthMap = getBodyPartDetails(bodyPart);
-        InteractiveContent content = new InteractiveContent();
-        
-        switch (action) {
-            case "hover":
-                content.setType("tooltip");
-                content.setContent(getTooltipContent(healthMap, language));
-                break;
-            case "click":
-                content.setType("detailed");
-                content.setContent(getDetailedContent(healthMap, language));
-                break;
-            case "quiz":
-                content.setType("quiz");
-                content.setContent(getQuizContent(healthMap, language));
-                break;
-            default:
-                content.setType("basic");
-                content.setContent(getBasicContent(healthMap, language));
-        }
-        
-        return content;
+        return interactiveContentCatalog.payload(bodyPart, action, language).getContent();
     }
     
     /**
@@ -110,93 +119,82 @@ public class BodyHealthMapService {
      */
     @Transactional
     public void trackInteraction(String bodyPart, String userId, String action) {
-        // Log interaction for analytics
-        log.info("User {} performed {} on body part {}", userId, action, bodyPart);
-        
-        // Update user's recently viewed if applicable
-        // If needed, implement recording in analytics later
-        
-        // Could also update analytics collection here
+        // Queued for the analytics writer; never blocks the request
+        log.debug("User {} performed {} on body part {}", userId, action, bodyPart);
+        analyticsPipeline.trackHealthMapInteraction(bodyPart, action, userId);
     }
     
     /**
      * Get health assessment based on user's symptoms
      */
     public HealthAssessment getHealthAssessment(String bodyPart, List<String> symptoms) {
-        BodyHealthMap healthMap = getBodyPartDetails(bodyPart);
-        HealthAssessment assessment = new HealthAssessment();
-        
-        // Match symptoms with common issues
-        List<BodyHealthMap.CommonIssue> matchedIssues = healthMap.getHealthInfo()
-                .getCommonIssues().stream()
-                .filter(issue -> !Collections.disjoint(issue.getSymptoms(), symptoms))
-                .collect(Collectors.toList());
-        
-        assessment.setPossibleIssues(matchedIssues);
-        assessment.setRecommendedProducts(getProductsForIssues(matchedIssues));
-        assessment.setUrgencyLevel(calculateUrgencyLevel(symptoms, healthMap));
-        assessment.setPreventiveMeasures(getPreventiveMeasures(matchedIssues));
-        
-        return assessment;
+        getBodyPartDetails(bodyPart); // 404 for unknown body parts
+        return assess(symptomIndexService.assess(symptoms, bodyPart, MAX_ASSESSMENT_ISSUES));
+    }
+    
+    /**
+     * Assess symptoms against the common issues of every body part
+     */
+    public HealthAssessment getCrossBodyAssessment(List<String> symptoms) {
+        return assess(symptomIndexService.assess(symptoms, null, MAX_ASSESSMENT_ISSUES));
     }
     
     // Helper methods
     
-    private List<Product> personalizeProducts(List<Product> products, User user, BodyHealthMap healthMap) {
-        // Score products based on user profile
-        Map<String, Double> productScores = new HashMap<>();
+    private PersonalizedRecommendations buildRecommendations(
+            BodyHealthMap healthMap, User user, String language, Map<String, Product> productsById) {
         
-        for (Product product : products) {
-            double score = 1.0;
-            
-            // Age-based scoring
-            if (user.getProfile() != null && user.getProfile().getDateOfBirth() != null) {
-                // Calculate age and adjust score
-                score *= getAgeRelevanceScore(product, user);
-            }
-            
-            // Health condition scoring
-            if (user.getProfile() != null && !user.getProfile().getHealthConditions().isEmpty()) {
-                score *= getHealthConditionScore(product, user.getProfile().getHealthConditions());
-            }
-            
-            // Dietary preference scoring
-            if (user.getProfile() != null && !user.getProfile().getDietaryPreferences().isEmpty()) {
-                score *= getDietaryPreferenceScore(product, user.getProfile().getDietaryPreferences());
-            }
-            
-            // Purchase history scoring
-            score *= getPurchaseHistoryScore(product, user);
-            
-            productScores.put(product.getId(), score);
-        }
+        PersonalizedRecommendations recommendations = new PersonalizedRecommendations();
+        recommendations.setBodyPart(healthMap.getBodyPart());
+        recommendations.setLanguage(language);
         
-        // Sort products by score
-        return products.stream()
-                .sorted((p1, p2) -> Double.compare(
-                        productScores.getOrDefault(p2.getId(), 0.0),
-                        productScores.getOrDefault(p1.getId(), 0.0)))
+        // Base product recommendations in editorial order
+        List<String> productIds = editorialOrder(healthMap);
+        List<Product> products = productIds.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
+        
+        // Apply personalization if user is logged in
+        if (user != null) {
+            products = personalizeProducts(products, user, productIds);
+            recommendations.setPersonalized(true);
+        }
+        
+        recommendations.setProducts(products);
+        recommendations.setBundles(getBundlesForBodyPart(healthMap, products));
+        recommendations.setHealthTips(getHealthTipsForUser(healthMap, user, language));
+        recommendations.setDidYouKnow(getRandomDidYouKnow(healthMap, language));
+        return recommendations;
     }
     
-    private double getAgeRelevanceScore(Product product, User user) {
-        // Implementation for age-based scoring
-        return 1.0;
-    }
-    
-    private double getHealthConditionScore(Product product, List<String> conditions) {
-        // Implementation for health condition scoring
-        return 1.0;
+    private List<String> editorialOrder(BodyHealthMap healthMap) {
+        if (healthMap.getRecommendations() == null || healthMap.getRecommendations().getProducts() == null) {
+            return List.of();
+        }
+        return healthMap.getRecommendations().getProducts().stream()
+                .sorted(Comparator.comparing(BodyHealthMap.ProductRecommendation::getPriority,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .map(BodyHealthMap.ProductRecommendation::getProductId)
+                .collect(Collectors.toList());
     }
     
-    private double getDietaryPreferenceScore(Product product, List<String> preferences) {
-        // Implementation for dietary preference scoring
-        return 1.0;
+    private static Map<String, Product> productsById(List<Product> products) {
+        return products.stream().collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
     }
     
-    private double getPurchaseHistoryScore(Product product, User user) {
-        // Implementation for purchase history scoring
-        return 1.0;
+    private List<Product> personalizeProducts(List<Product> products, User user, List<String> editorialOrder) {
+        // Editorial order stays a prior: later picks need a better profile match to move up
+        float[] weights = new float[editorialOrder.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 1f / (1 + EDITORIAL_DECAY * i);
+        }
+        List<String> ranked = personalizationEngine.rank(editorialOrder, weights, user, editorialOrder.size());
+        Map<String, Product> byId = productsById(products);
+        return ranked.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
     
     private List<Bundle> getBundlesForBodyPart(BodyHealthMap healthMap, List<Product> products) {
@@ -214,27 +212,18 @@ public class BodyHealthMapService {
         return new DidYouKnow();
     }
     
-    private Map<String, Object> getTooltipContent(BodyHealthMap healthMap, String language) {
-        Map<String, Object> content = new HashMap<>();
-        content.put("title", healthMap.getDisplayName().get(language));
-        content.put("primaryFunction", healthMap.getHealthInfo().getPrimaryFunctions().get(0));
-        content.put("quickTip", "Click for more information");
-        return content;
-    }
-    
-    private Map<String, Object> getDetailedContent(BodyHealthMap healthMap, String language) {
-        // Implementation for detailed content
-        return new HashMap<>();
-    }
-    
-    private Map<String, Object> getQuizContent(BodyHealthMap healthMap, String language) {
-        // Implementation for quiz content
-        return new HashMap<>();
-    }
-    
-    private Map<String, Object> getBasicContent(BodyHealthMap healthMap, String language) {
-        // Implementation for basic content
-        return new HashMap<>();
+    private HealthAssessment assess(List<SymptomIndex.Match> matches) {
+        List<BodyHealthMap.CommonIssue> matchedIssues = matches.stream()
+                .map(SymptomIndex.Match::getIssue)
+                .collect(Collectors.toList());
+        
+        HealthAssessment assessment = new HealthAssessment();
+        assessment.setMatches(matches);
+        assessment.setPossibleIssues(matchedIssues);
+        assessment.setRecommendedProducts(getProductsForIssues(matchedIssues));
+        assessment.setUrgencyLevel(calculateUrgencyLevel(matchedIssues));
+        assessment.setPreventiveMeasures(getPreventiveMeasures(matchedIssues));
+        return assessment;
     }
     
     private List<Product> getProductsForIssues(List<BodyHealthMap.CommonIssue> issues) {
@@ -242,9 +231,10 @@ public class BodyHealthMapService {
         return new ArrayList<>();
     }
     
-    private String calculateUrgencyLevel(List<String> symptoms, BodyHealthMap healthMap) {
-        // Implementation for urgency calculation
-        return "moderate";
+    private String calculateUrgencyLevel(List<BodyHealthMap.CommonIssue> matchedIssues) {
+        // Most severe matched issue decides
+        int severity = matchedIssues.stream().mapToInt(SymptomIndex::severity).max().orElse(0);
+        return severity >= 3 ? "high" : severity == 2 ? "moderate" : "low";
     }
     
     private List<String> getPreventiveMeasures(List<BodyHealthMap.CommonIssue> issues) {
@@ -265,6 +255,12 @@ public class BodyHealthMapService {
         private DidYouKnow didYouKnow;
     }
     
+    @lombok.Data
+    public static class BatchRecommendationRequest {
+        private List<String> bodyParts;
+        private String language = "vi";
+    }
+    
     @lombok.Data
     public static class InteractiveContent {
         private String type;
@@ -273,6 +269,7 @@ public class BodyHealthMapService {
     
     @lombok.Data
     public static class HealthAssessment {
+        private List<SymptomIndex.Match> matches; // ranked, with body part and matched symptom count
         private List<BodyHealthMap.CommonIssue> possibleIssues;
         private List<Product> recommendedProducts;
         private String urgencyLevel;
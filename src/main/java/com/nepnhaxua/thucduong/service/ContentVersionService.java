@@ -0,0 +1,130 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * HTTP validators (ETag / Last-Modified) for products and body parts, resolved without loading the
+ * full document. A product's version is {@code updatedAt} plus its {@code revision}, which partial
+ * writes (stock, flags) bump instead of updatedAt; view counters bump neither, so the counts in a
+ * revalidated product may lag. Since updatedAt alone misses partial writes, products are validated
+ * by ETag only, never Last-Modified. Product lookups are memoised per node for a short time, since
+ * those writes publish no change events; saves drop them right away, including the ones relayed
+ * from other nodes. Body parts are read from the health map snapshot.
+ */
+@Service
+public class ContentVersionService {
+
+    private final MongoTemplate mongoTemplate;
+    private final HealthMapSnapshotService healthMapSnapshotService;
+    private final Cache<String, Optional<Version>> versions;
+
+    public ContentVersionService(MongoTemplate mongoTemplate,
+                                 HealthMapSnapshotService healthMapSnapshotService,
+                                 @Value("${app.http.version-cache.max-size:50000}") long maxSize,
+                                 @Value("${app.http.version-cache.time-to-live:5000}") long ttlMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.healthMapSnapshotService = healthMapSnapshotService;
+        this.versions = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    /**
+     * Version of the product with this slug; empty if it does not exist or has never been saved with auditing
+     */
+    public Optional<Version> productVersion(String slug) {
+        return lookup("p:" + slug, () -> {
+            Query query = new Query(Criteria.where("slug").is(slug));
+            query.fields().include("_id", "updatedAt", Product.REVISION);
+            Product product = mongoTemplate.findOne(query, Product.class);
+            return product == null ? null : version(product.getId(), product.getUpdatedAt(), product.getRevision(), null);
+        });
+    }
+
+    /**
+     * Version of an active body part; the editorial metadata.version is part of the tag
+     */
+    public Optional<Version> bodyPartVersion(String bodyPart) {
+        // Straight from the in-memory snapshot, which is already swapped on change events
+        return healthMapSnapshotService.getSnapshot().find(bodyPart).map(healthMap -> {
+            Integer contentVersion = healthMap.getMetadata() != null ? healthMap.getMetadata().getVersion() : null;
+            return version(healthMap.getId(), healthMap.getUpdatedAt(), null, contentVersion);
+        });
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getSlug() != null) {
+            versions.invalidate("p:" + event.getSlug());
+        } else {
+            versions.invalidateAll();
+        }
+    }
+
+    private Optional<Version> lookup(String key, Supplier<Version> loader) {
+        try {
+            return versions.get(key, () -> Optional.ofNullable(loader.get()));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Version version(String id, LocalDateTime updatedAt, Long revision, Integer contentVersion) {
+        if (updatedAt == null) {
+            return null;
+        }
+        long lastModified = epochMillis(updatedAt);
+        long rev = revision != null ? revision : 0;
+        String tag = id + "-" + Long.toHexString(lastModified) + (rev > 0 ? "-r" + rev : "")
+                + (contentVersion != null ? "-" + contentVersion : "");
+        return new Version(id, tag, lastModified, rev);
+    }
+
+    private static long epochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Version {
+        private final String id;
+        private final String tag;
+        private final long lastModified;
+        private final long revision;
+
+        /**
+         * Whether a (cached) product predates this version, so serving it would pair an old body with this tag
+         */
+        public boolean isAheadOf(Product product) {
+            long productRevision = product.getRevision() != null ? product.getRevision() : 0;
+            long productModified = product.getUpdatedAt() != null ? epochMillis(product.getUpdatedAt()) : 0;
+            return revision > productRevision || lastModified > productModified;
+        }
+
+        /**
+         * Quoted strong ETag for one representation (route) of the resource
+         */
+        public String etag(String representation) {
+            return "\"" + representation + "-" + tag + "\"";
+        }
+    }
+}
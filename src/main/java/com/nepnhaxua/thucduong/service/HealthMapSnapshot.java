@@ -0,0 +1,92 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.nepnhaxua.thucduong.entity.BodyHealthMap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Immutable copy of all active body parts plus their per-language views, replaced as a whole
+ * when health map content changes. The documents are shared with callers and must be treated
+ * as read-only.
+ */
+@Getter
+public final class HealthMapSnapshot {
+
+    public static final List<String> LANGUAGES = List.of("vi", "en");
+    static final String DEFAULT_LANGUAGE = "vi";
+
+    private final List<BodyHealthMap> bodyParts;
+    private final Instant builtAt;
+    private final Map<String, BodyHealthMap> byBodyPart;
+    private final Map<String, List<LocalizedBodyPart>> views; // language -> views in display order
+
+    HealthMapSnapshot(List<BodyHealthMap> bodyParts, Instant builtAt) {
+        this.bodyParts = List.copyOf(bodyParts);
+        this.builtAt = builtAt;
+        Map<String, BodyHealthMap> byBodyPart = new HashMap<>();
+        bodyParts.forEach(b -> byBodyPart.put(b.getBodyPart(), b));
+        this.byBodyPart = Map.copyOf(byBodyPart);
+        Map<String, List<LocalizedBodyPart>> views = new HashMap<>();
+        for (String language : LANGUAGES) {
+            views.put(language, bodyParts.stream().map(b -> LocalizedBodyPart.of(b, language)).toList());
+        }
+        this.views = Map.copyOf(views);
+    }
+
+    public Optional<BodyHealthMap> find(String bodyPart) {
+        return Optional.ofNullable(byBodyPart.get(bodyPart));
+    }
+
+    /**
+     * Views for a language, falling back to Vietnamese for unsupported languages
+     */
+    public List<LocalizedBodyPart> views(String language) {
+        List<LocalizedBodyPart> localized = language != null ? views.get(language) : null;
+        return localized != null ? localized : views.get(DEFAULT_LANGUAGE);
+    }
+
+    public Optional<LocalizedBodyPart> view(String bodyPart, String language) {
+        return views(language).stream().filter(v -> v.getBodyPart().equals(bodyPart)).findFirst();
+    }
+
+    /**
+     * Body part with its texts resolved for one language
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class LocalizedBodyPart {
+        private final String bodyPart;
+        private final String code;
+        private final String displayName;
+        private final Integer displayOrder;
+        private final List<String> primaryFunctions;
+        private final Map<String, Object> tooltip;
+
+        static LocalizedBodyPart of(BodyHealthMap healthMap, String language) {
+            String displayName = localize(healthMap.getDisplayName(), language);
+            List<String> functions = healthMap.getHealthInfo() == null || healthMap.getHealthInfo().getPrimaryFunctions() == null
+                    ? List.of()
+                    : healthMap.getHealthInfo().getPrimaryFunctions().stream()
+                            .map(f -> localize(f.getTitle(), language))
+                            .filter(Objects::nonNull)
+                            .toList();
+            Map<String, Object> tooltip = new LinkedHashMap<>();
+            tooltip.put("title", displayName);
+            tooltip.put("primaryFunction", functions.isEmpty() ? null : functions.get(0));
+            tooltip.put("quickTip", "en".equals(language) ? "Click for more information" : "Nhấn để xem thêm thông tin");
+            return new LocalizedBodyPart(healthMap.getBodyPart(), healthMap.getCode(), displayName,
+                    healthMap.getDisplayOrder(), functions, Collections.unmodifiableMap(tooltip));
+        }
+
+        private static String localize(Map<String, String> texts, String language) {
+            if (texts == null) {
+                return null;
+            }
+            String text = texts.get(language);
+            return text != null ? text : texts.get(DEFAULT_LANGUAGE);
+        }
+    }
+}
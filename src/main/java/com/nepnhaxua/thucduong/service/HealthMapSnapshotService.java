@@ -0,0 +1,57 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.nepnhaxua.thucduong.entity.BodyHealthMap;
+import com.nepnhaxua.thucduong.event.BodyHealthMapChangedEvent;
+import com.nepnhaxua.thucduong.repository.BodyHealthMapRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Holds the whole (small) body health map collection in memory as a {@link HealthMapSnapshot}.
+ * Loaded on first use, swapped atomically after changes on any node and re-read periodically
+ * as a safety net for writes that bypass the change events.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HealthMapSnapshotService {
+
+    private final BodyHealthMapRepository bodyHealthMapRepository;
+
+    private volatile HealthMapSnapshot snapshot;
+
+    public HealthMapSnapshot getSnapshot() {
+        HealthMapSnapshot current = snapshot;
+        return current != null ? current : load();
+    }
+
+    @EventListener
+    public void onBodyHealthMapChanged(BodyHealthMapChangedEvent event) {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${app.health-map.refresh-interval:600000}",
+            initialDelayString = "${app.health-map.refresh-interval:600000}")
+    public void reload() {
+        try {
+            load();
+        } catch (Exception e) {
+            // Keep serving the previous snapshot
+            log.warn("Could not reload body health map snapshot", e);
+        }
+    }
+
+    private synchronized HealthMapSnapshot load() {
+        List<BodyHealthMap> bodyParts = bodyHealthMapRepository.findByIsActiveTrueOrderByDisplayOrder();
+        HealthMapSnapshot loaded = new HealthMapSnapshot(bodyParts, Instant.now());
+        snapshot = loaded;
+        log.debug("Body health map snapshot loaded with {} body parts", bodyParts.size());
+        return loaded;
+    }
+}
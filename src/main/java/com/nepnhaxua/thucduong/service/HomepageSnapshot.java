@@ -0,0 +1,29 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.nepnhaxua.thucduong.repository.ProductSummary;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable set of homepage product blocks, replaced as a whole on every refresh.
+ */
+@Getter
+public final class HomepageSnapshot {
+
+    static final HomepageSnapshot EMPTY = new HomepageSnapshot(List.of(), List.of(), List.of(), Instant.EPOCH);
+
+    private final List<ProductSummary> featured;
+    private final List<ProductSummary> newArrivals;
+    private final List<ProductSummary> bestsellers;
+    private final Instant builtAt;
+
+    HomepageSnapshot(List<ProductSummary> featured, List<ProductSummary> newArrivals,
+                     List<ProductSummary> bestsellers, Instant builtAt) {
+        this.featured = List.copyOf(featured);
+        this.newArrivals = List.copyOf(newArrivals);
+        this.bestsellers = List.copyOf(bestsellers);
+        this.builtAt = builtAt;
+    }
+}
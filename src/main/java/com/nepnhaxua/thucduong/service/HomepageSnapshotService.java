@@ -0,0 +1,83 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.nepnhaxua.thucduong.analytics.BestsellerWindow;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import com.nepnhaxua.thucduong.repository.ProductSummary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Precomputed featured / new arrival / bestseller blocks for the homepage and the featured API.
+ * Bestsellers come from the 30 day {@link com.nepnhaxua.thucduong.analytics.BestsellerLeaderboard}.
+ * Requests read the current {@link HomepageSnapshot} without touching MongoDB; the snapshot is
+ * rebuilt on a fixed schedule and shortly after product changes, coalescing bursts of writes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HomepageSnapshotService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductService productService;
+
+    @Value("${app.homepage.block-size:8}")
+    private int blockSize;
+
+    private volatile HomepageSnapshot snapshot = HomepageSnapshot.EMPTY;
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    public HomepageSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.homepage.refresh-interval:300000}",
+            initialDelayString = "${app.homepage.refresh-interval:300000}")
+    public void refresh() {
+        stale.set(false);
+        try {
+            Criteria active = Criteria.where("flags.isActive").is(true);
+            snapshot = new HomepageSnapshot(
+                    block(Criteria.where("flags.isFeatured").is(true).andOperator(active), "createdAt"),
+                    block(Criteria.where("flags.isNew").is(true).andOperator(active), "createdAt"),
+                    productService.getBestsellers(BestsellerWindow.DAYS_30, null, blockSize),
+                    Instant.now());
+        } catch (Exception e) {
+            // Keep serving the previous snapshot
+            log.warn("Could not refresh homepage snapshot", e);
+        }
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        stale.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${app.homepage.change-debounce:5000}")
+    public void refreshIfStale() {
+        if (stale.get()) {
+            refresh();
+        }
+    }
+
+    private List<ProductSummary> block(Criteria criteria, String sortField) {
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, sortField))
+                .limit(blockSize);
+        query.fields().include(ProductSummary.projection().keySet().toArray(String[]::new));
+        return mongoTemplate.find(query, ProductSummary.class, "products");
+    }
+}
@@ -0,0 +1,238 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.nepnhaxua.thucduong.api.ApiResponse;
+import com.nepnhaxua.thucduong.entity.BodyHealthMap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Every (body part, action, language) interactive payload rendered ahead of time: the content
+ * object, its JSON response body, a gzip variant and a content-hash ETag per encoding. Payloads of
+ * a body part are re-rendered only when the content of its document changed in the health map snapshot.
+ */
+@Service
+@RequiredArgsConstructor
+public class InteractiveContentCatalog {
+
+    public static final List<String> ACTIONS = List.of("hover", "click", "quiz", "basic");
+    private static final String DEFAULT_ACTION = "basic";
+
+    private final HealthMapSnapshotService healthMapSnapshotService;
+    private final ObjectMapper objectMapper;
+
+    private volatile Catalog catalog = new Catalog(null, Map.of());
+
+    /**
+     * Prebuilt payload; unknown actions get the basic content like before, unknown languages Vietnamese
+     */
+    public Payload payload(String bodyPart, String action, String language) {
+        Map<String, Payload> payloads = current().byBodyPart.get(bodyPart);
+        if (payloads == null) {
+            throw new NoSuchElementException("Body part not found: " + bodyPart);
+        }
+        String resolvedAction = ACTIONS.contains(action) ? action : DEFAULT_ACTION;
+        String resolvedLanguage = HealthMapSnapshot.LANGUAGES.contains(language) ? language : HealthMapSnapshot.DEFAULT_LANGUAGE;
+        return payloads.get(key(resolvedAction, resolvedLanguage));
+    }
+
+    private Catalog current() {
+        HealthMapSnapshot snapshot = healthMapSnapshotService.getSnapshot();
+        Catalog current = catalog;
+        return current.snapshot == snapshot ? current : rebuild(snapshot);
+    }
+
+    private synchronized Catalog rebuild(HealthMapSnapshot snapshot) {
+        Catalog previous = catalog;
+        if (previous.snapshot == snapshot) {
+            return previous;
+        }
+        Map<String, Map<String, Payload>> byBodyPart = new HashMap<>();
+        Map<String, String> versions = new HashMap<>();
+        for (BodyHealthMap healthMap : snapshot.getBodyParts()) {
+            // Hash of the whole document: not every edit bumps updatedAt
+            String version = contentHash(healthMap);
+            Map<String, Payload> unchanged = version.equals(previous.versions.get(healthMap.getBodyPart()))
+                    ? previous.byBodyPart.get(healthMap.getBodyPart())
+                    : null;
+            byBodyPart.put(healthMap.getBodyPart(), unchanged != null ? unchanged : render(snapshot, healthMap));
+            versions.put(healthMap.getBodyPart(), version);
+        }
+        Catalog rebuilt = new Catalog(snapshot, Map.copyOf(byBodyPart), Map.copyOf(versions));
+        catalog = rebuilt;
+        return rebuilt;
+    }
+
+    private Map<String, Payload> render(HealthMapSnapshot snapshot, BodyHealthMap healthMap) {
+        Map<String, Payload> payloads = new HashMap<>();
+        for (String language : HealthMapSnapshot.LANGUAGES) {
+            HealthMapSnapshot.LocalizedBodyPart view = snapshot.view(healthMap.getBodyPart(), language).orElseThrow();
+            for (String action : ACTIONS) {
+                BodyHealthMapService.InteractiveContent content = new BodyHealthMapService.InteractiveContent();
+                switch (action) {
+                    case "hover" -> {
+                        content.setType("tooltip");
+                        content.setContent(view.getTooltip());
+                    }
+                    case "click" -> {
+                        content.setType("detailed");
+                        content.setContent(detailed(healthMap, view, language));
+                    }
+                    case "quiz" -> {
+                        content.setType("quiz");
+                        content.setContent(quiz(healthMap));
+                    }
+                    default -> {
+                        content.setType("basic");
+                        content.setContent(basic(view));
+                    }
+                }
+                payloads.put(key(action, language), payload(content));
+            }
+        }
+        return Map.copyOf(payloads);
+    }
+
+    private Payload payload(BodyHealthMapService.InteractiveContent content) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(ApiResponse.ok(content));
+            String hash = "ic-" + Hashing.murmur3_128().hashBytes(json);
+            // Strong validators must differ between the identity and gzip bodies
+            return new Payload(content, json, gzip(json), "\"" + hash + "\"", "\"" + hash + "-gz\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not render interactive content", e);
+        }
+    }
+
+    private String contentHash(BodyHealthMap healthMap) {
+        try {
+            return Hashing.murmur3_128().hashBytes(objectMapper.writeValueAsBytes(healthMap)).toString();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash body part " + healthMap.getBodyPart(), e);
+        }
+    }
+
+    private static Map<String, Object> detailed(BodyHealthMap healthMap, HealthMapSnapshot.LocalizedBodyPart view,
+                                                String language) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("title", view.getDisplayName());
+        List<Map<String, Object>> functions = new ArrayList<>();
+        List<Map<String, Object>> issues = new ArrayList<>();
+        if (healthMap.getHealthInfo() != null) {
+            for (BodyHealthMap.Function function : nullToEmpty(healthMap.getHealthInfo().getPrimaryFunctions())) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("title", localize(function.getTitle(), language));
+                item.put("description", localize(function.getDescription(), language));
+                item.put("importance", function.getImportance());
+                item.put("iconClass", function.getIconClass());
+                functions.add(item);
+            }
+            for (BodyHealthMap.CommonIssue issue : nullToEmpty(healthMap.getHealthInfo().getCommonIssues())) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("name", localize(issue.getName(), language));
+                item.put("severity", issue.getSeverity());
+                item.put("symptoms", issue.getSymptoms());
+                issues.add(item);
+            }
+        }
+        content.put("functions", functions);
+        content.put("commonIssues", issues);
+        List<Map<String, Object>> tips = new ArrayList<>();
+        if (healthMap.getInteractions() != null) {
+            for (BodyHealthMap.HealthTip tip : nullToEmpty(healthMap.getInteractions().getTips())) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("title", localize(tip.getTitle(), language));
+                item.put("content", localize(tip.getContent(), language));
+                item.put("category", tip.getCategory());
+                tips.add(item);
+            }
+        }
+        content.put("tips", tips);
+        return content;
+    }
+
+    private static Map<String, Object> quiz(BodyHealthMap healthMap) {
+        BodyHealthMap.Quiz quiz = healthMap.getInteractions() != null ? healthMap.getInteractions().getQuiz() : null;
+        Map<String, Object> content = new LinkedHashMap<>();
+        if (quiz != null) {
+            content.put("title", quiz.getTitle());
+            content.put("questions", nullToEmpty(quiz.getQuestions()));
+            content.put("passingScore", quiz.getPassingScore());
+            content.put("completionMessage", quiz.getCompletionMessage());
+        }
+        return content;
+    }
+
+    private static Map<String, Object> basic(HealthMapSnapshot.LocalizedBodyPart view) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("title", view.getDisplayName());
+        content.put("code", view.getCode());
+        content.put("primaryFunctions", view.getPrimaryFunctions());
+        return content;
+    }
+
+    private static String localize(Map<String, String> texts, String language) {
+        if (texts == null) {
+            return null;
+        }
+        String text = texts.get(language);
+        return text != null ? text : texts.get(HealthMapSnapshot.DEFAULT_LANGUAGE);
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return list != null ? list : List.of();
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String key(String action, String language) {
+        return action + "|" + language;
+    }
+
+    /**
+     * One rendered payload; the byte arrays are shared and must not be modified
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Payload {
+        private final BodyHealthMapService.InteractiveContent content;
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String etag;
+        private final String gzipEtag;
+    }
+
+    private static class Catalog {
+        private final HealthMapSnapshot snapshot;
+        private final Map<String, Map<String, Payload>> byBodyPart;
+        private final Map<String, String> versions; // bodyPart -> hash of the document the payloads were rendered from
+
+        Catalog(HealthMapSnapshot snapshot, Map<String, Map<String, Payload>> byBodyPart) {
+            this(snapshot, byBodyPart, Map.of());
+        }
+
+        Catalog(HealthMapSnapshot snapshot, Map<String, Map<String, Payload>> byBodyPart, Map<String, String> versions) {
+            this.snapshot = snapshot;
+            this.byBodyPart = byBodyPart;
+            this.versions = versions;
+        }
+    }
+}
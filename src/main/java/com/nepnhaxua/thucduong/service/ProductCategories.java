@@ -0,0 +1,25 @@
+package com.nepnhaxua.thucduong.service;
+
+import java.util.Map;
+
+/**
+ * Display names of the main product categories, keyed by the slug stored in {@code category.main}.
+ */
+public final class ProductCategories {
+
+    public static final Map<String, String> LABELS = Map.of(
+            "gao-lut", "Gạo lứt",
+            "bun-pho", "Bún, phở",
+            "bot-ngu-coc", "Bột ngũ cốc",
+            "hat-dinh-duong", "Hạt dinh dưỡng",
+            "tra-thao-moc", "Trà thảo mộc",
+            "gia-vi", "Gia vị",
+            "dau-an", "Dầu ăn");
+
+    private ProductCategories() {
+    }
+
+    public static String label(String slug) {
+        return LABELS.getOrDefault(slug, slug.replace('-', ' '));
+    }
+}
@@ -0,0 +1,200 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.google.common.hash.Hashing;
+import com.nepnhaxua.thucduong.entity.Product;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for product view and add-to-cart counters.
+ * Increments land in per-product {@link LongAdder}s and are flushed periodically as one unordered
+ * bulk write, so a hot product costs one update per flush instead of one per page view.
+ * Unique viewers are counted with a Redis HyperLogLog per product; the flush also refreshes
+ * {@code analytics.uniqueViews}. The conversion rate comes from the analytics rollups.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductCounterService {
+
+    private static final String UNIQUE_VIEWERS_KEY = "thucduong:hll:product-viewers:";
+    // Bounds memory for a product hammered by distinct visitors between two flushes
+    private static final int MAX_PENDING_VISITORS = 10_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final StringRedisTemplate redisTemplate;
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public void recordView(String productId, String visitorId) {
+        Counters c = counters.computeIfAbsent(productId, id -> new Counters());
+        c.views.increment();
+        if (visitorId != null && c.visitors.size() < MAX_PENDING_VISITORS) {
+            c.visitors.add(visitorId);
+        }
+    }
+
+    /**
+     * Stable per-visitor id for unique view counting: the user name when logged in,
+     * otherwise a hash of client address and user agent
+     */
+    public static String visitorId(HttpServletRequest request) {
+        if (request.getUserPrincipal() != null) {
+            return "u:" + request.getUserPrincipal().getName();
+        }
+        String client = request.getRemoteAddr() + "|" + request.getHeader(HttpHeaders.USER_AGENT);
+        return "a:" + Hashing.murmur3_128().hashString(client, StandardCharsets.UTF_8);
+    }
+
+    public void recordAddedToCart(String productId) {
+        counters.computeIfAbsent(productId, id -> new Counters()).addedToCart.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.counters.flush-interval:5000}")
+    public synchronized void flush() {
+        List<Delta> deltas = new ArrayList<>();
+        counters.forEach((productId, c) -> {
+            long views = c.views.sumThenReset();
+            long addedToCart = c.addedToCart.sumThenReset();
+            List<String> visitors = drain(c.visitors);
+            if (views > 0 || addedToCart > 0 || !visitors.isEmpty()) {
+                deltas.add(new Delta(productId, views, addedToCart, visitors));
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> uniqueViews = countUniqueViewers(deltas);
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Delta delta : deltas) {
+            bulk.updateOne(Query.query(Criteria.where("_id").is(delta.productId)),
+                    analyticsUpdate(delta, uniqueViews.get(delta.productId)));
+        }
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            // Put the increments and visitors back so the next flush retries them (PFADD is idempotent)
+            log.warn("Could not flush product counters for {} products, retrying next time", deltas.size(), e);
+            deltas.forEach(delta -> {
+                Counters c = counters.computeIfAbsent(delta.productId, id -> new Counters());
+                c.views.add(delta.views);
+                c.addedToCart.add(delta.addedToCart);
+            });
+            restoreVisitors(deltas);
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    // PFADD the new visitors and PFCOUNT each touched product in one pipeline
+    private Map<String, Long> countUniqueViewers(List<Delta> deltas) {
+        List<Delta> viewed = deltas.stream().filter(d -> d.views > 0 || !d.visitors.isEmpty()).toList();
+        if (viewed.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Delta delta : viewed) {
+                    byte[] key = (UNIQUE_VIEWERS_KEY + delta.productId).getBytes(StandardCharsets.UTF_8);
+                    if (!delta.visitors.isEmpty()) {
+                        connection.hyperLogLogCommands().pfAdd(key, toBytes(delta.visitors));
+                    }
+                    connection.hyperLogLogCommands().pfCount(key);
+                }
+                return null;
+            });
+            Map<String, Long> counts = new HashMap<>();
+            int i = 0;
+            for (Delta delta : viewed) {
+                if (!delta.visitors.isEmpty()) {
+                    i++;
+                }
+                counts.put(delta.productId, ((Number) results.get(i++)).longValue());
+            }
+            return counts;
+        } catch (Exception e) {
+            // Keep the visitors for the next flush; PFADD is idempotent
+            log.warn("Could not update unique viewer counts", e);
+            restoreVisitors(viewed);
+            return Map.of();
+        }
+    }
+
+    private void restoreVisitors(List<Delta> deltas) {
+        deltas.stream().filter(delta -> !delta.visitors.isEmpty()).forEach(delta ->
+                counters.computeIfAbsent(delta.productId, id -> new Counters()).visitors.addAll(delta.visitors));
+    }
+
+    private static AggregationUpdate analyticsUpdate(Delta delta, Long uniqueViews) {
+        Document counts = new Document()
+                .append("analytics.views", increment("$analytics.views", delta.views))
+                .append("analytics.addedToCart", increment("$analytics.addedToCart", delta.addedToCart));
+        if (uniqueViews != null) {
+            counts.append("analytics.uniqueViews", uniqueViews);
+        }
+        // No revision bump: counters change every flush and would keep product ETags from ever matching
+        List<AggregationOperation> stages = List.of(context -> new Document("$set", counts));
+        return AggregationUpdate.from(stages);
+    }
+
+    private static Document increment(String field, long amount) {
+        return new Document("$add", List.of(new Document("$ifNull", List.of(field, 0)), amount));
+    }
+
+    private static List<String> drain(Set<String> visitors) {
+        List<String> drained = new ArrayList<>();
+        Iterator<String> it = visitors.iterator();
+        while (it.hasNext()) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    private static byte[][] toBytes(List<String> values) {
+        byte[][] bytes = new byte[values.size()][];
+        for (int i = 0; i < values.size(); i++) {
+            bytes[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    private static class Counters {
+        private final LongAdder views = new LongAdder();
+        private final LongAdder addedToCart = new LongAdder();
+        private final Set<String> visitors = ConcurrentHashMap.newKeySet();
+    }
+
+    @AllArgsConstructor
+    private static class Delta {
+        private final String productId;
+        private final long views;
+        private final long addedToCart;
+        private final List<String> visitors;
+    }
+}
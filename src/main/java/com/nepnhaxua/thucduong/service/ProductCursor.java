@@ -0,0 +1,154 @@
+package com.nepnhaxua.thucduong.service;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opaque cursor tokens for keyset pagination over products.
+ * A token carries the sort it was issued for plus the last sort key and {@code _id} seen,
+ * so a page is resolved with a range query instead of skip/limit. Products without a sort value
+ * (no price or ratings yet) sort lowest, as in MongoDB's own order, and are paged by {@code _id}.
+ */
+public final class ProductCursor {
+
+    public static final Set<String> SORT_FIELDS = Set.of("createdAt", "pricing.regular", "ratings.average");
+
+    private static final String VERSION = "v1";
+    private static final String FIELD_SEP = "\u001e";
+    private static final String PART_SEP = "\u001f";
+
+    private ProductCursor() {
+    }
+
+    /**
+     * Sort used for keyset pagination: the requested field with {@code _id} as tie-breaker
+     */
+    public static Sort sort(String field, Sort.Direction direction) {
+        if (!SORT_FIELDS.contains(field)) {
+            throw new IllegalArgumentException("Unsupported cursor sort field: " + field);
+        }
+        return Sort.by(direction, field).and(Sort.by(direction, "_id"));
+    }
+
+    /**
+     * Keys of the last product of a page
+     */
+    public static KeysetScrollPosition position(String field, Object value, String id) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put(field, value);
+        keys.put("_id", ObjectId.isValid(id) ? new ObjectId(id) : id);
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * Products after a (non-initial) position. $gt/$lt never match a missing value, so products
+     * without one get their own branch: first when ascending, last when descending.
+     */
+    public static Criteria after(String field, Sort.Direction direction, KeysetScrollPosition position) {
+        Object value = position.getKeys().get(field);
+        Object id = position.getKeys().get("_id");
+        boolean ascending = direction.isAscending();
+        Criteria sameValue = ascending
+                ? Criteria.where(field).is(value).and("_id").gt(id)
+                : Criteria.where(field).is(value).and("_id").lt(id);
+        if (value == null) {
+            return ascending ? new Criteria().orOperator(sameValue, Criteria.where(field).ne(null)) : sameValue;
+        }
+        Criteria beyond = ascending ? Criteria.where(field).gt(value) : Criteria.where(field).lt(value);
+        return ascending
+                ? new Criteria().orOperator(beyond, sameValue)
+                : new Criteria().orOperator(beyond, sameValue, Criteria.where(field).is(null));
+    }
+
+    public static String encode(String field, Sort.Direction direction, KeysetScrollPosition position) {
+        StringBuilder token = new StringBuilder(VERSION)
+                .append(FIELD_SEP).append(field)
+                .append(FIELD_SEP).append(direction.name());
+        position.getKeys().forEach((key, value) -> token.append(FIELD_SEP)
+                .append(key).append(PART_SEP).append(encodeValue(value)));
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token issued for the same sort. A blank token starts from the beginning.
+     */
+    public static KeysetScrollPosition decode(String cursor, String field, Sort.Direction direction) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(FIELD_SEP);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        if (parts.length < 3 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (!parts[1].equals(field) || !parts[2].equals(direction.name())) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (int i = 3; i < parts.length; i++) {
+            String[] entry = parts[i].split(PART_SEP, 2);
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            keys.put(entry[0], decodeValue(entry[1]));
+        }
+        if (!keys.containsKey(field) || !keys.containsKey("_id")) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    private static String encodeValue(Object value) {
+        if (value == null) {
+            return "n:";
+        } else if (value instanceof LocalDateTime dateTime) {
+            return "t:" + dateTime;
+        } else if (value instanceof Date date) {
+            return "D:" + date.getTime();
+        } else if (value instanceof Double number) {
+            return "d:" + number;
+        } else if (value instanceof Integer number) {
+            return "i:" + number;
+        } else if (value instanceof Long number) {
+            return "l:" + number;
+        } else if (value instanceof ObjectId objectId) {
+            return "o:" + objectId.toHexString();
+        }
+        return "s:" + value;
+    }
+
+    private static Object decodeValue(String encoded) {
+        try {
+            String value = encoded.substring(2);
+            return switch (encoded.charAt(0)) {
+                case 'n' -> null;
+                case 't' -> LocalDateTime.parse(value);
+                case 'D' -> new Date(Long.parseLong(value));
+                case 'd' -> Double.valueOf(value);
+                case 'i' -> Integer.valueOf(value);
+                case 'l' -> Long.valueOf(value);
+                case 'o' -> new ObjectId(value);
+                case 's' -> value;
+                default -> throw new IllegalArgumentException("Malformed cursor");
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
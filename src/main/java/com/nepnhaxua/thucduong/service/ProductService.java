@@ -0,0 +1,179 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.nepnhaxua.thucduong.analytics.BestsellerLeaderboard;
+import com.nepnhaxua.thucduong.analytics.BestsellerWindow;
+import com.nepnhaxua.thucduong.api.CursorPage;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import com.nepnhaxua.thucduong.repository.ProductRepository;
+import com.nepnhaxua.thucduong.repository.ProductSummary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class ProductService {
+
+    private final ProductRepository productRepository;
+    private final MongoTemplate mongoTemplate;
+    private final BestsellerLeaderboard bestsellerLeaderboard;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.pagination.max-page-size:100}")
+    private int maxPageSize;
+
+    /**
+     * Get a product by slug, served from the near cache when possible
+     */
+    @Cacheable(value = "products", key = "#slug", sync = true)
+    public Product getBySlug(String slug) {
+        return productRepository.findBySlug(slug)
+                .orElseThrow(() -> new NoSuchElementException("Product not found"));
+    }
+
+    /**
+     * Re-read a product whose cached copy is behind its current version; partial writes
+     * (stock, counters, flags) do not evict the cache
+     */
+    @CachePut(value = "products", key = "#slug")
+    public Product reload(String slug) {
+        return productRepository.findBySlug(slug)
+                .orElseThrow(() -> new NoSuchElementException("Product not found"));
+    }
+
+    /**
+     * Activate or deactivate products. The @Update write bypasses the Mongo lifecycle callbacks, so
+     * the change events that move search, suggestions, homepage sections and caches are published here.
+     */
+    public void updateActiveStatus(List<String> productIds, boolean active) {
+        productRepository.updateActiveStatusBulk(productIds, active);
+        publishChanged(productIds);
+    }
+
+    public void updateRatings(String productId, Double average, Integer count) {
+        productRepository.updateRatings(productId, average, count);
+        publishChanged(List.of(productId));
+    }
+
+    private void publishChanged(List<String> productIds) {
+        Query query = Query.query(Criteria.where("_id").in(productIds));
+        query.fields().include("slug");
+        mongoTemplate.find(query, Product.class).forEach(product ->
+                eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), product.getSlug(), false)));
+    }
+
+    /**
+     * Bestseller cards in leaderboard order, globally or for one main category. Sorts by
+     * analytics.purchased only while the leaderboard has no data (e.g. Redis unavailable at startup).
+     */
+    public List<ProductSummary> getBestsellers(BestsellerWindow window, String category, int limit) {
+        // Over-fetch a little: ranked products may have been deactivated since
+        List<String> ids = bestsellerLeaderboard.top(window, category, limit * 2).stream()
+                .map(BestsellerLeaderboard.Ranked::getProductId)
+                .toList();
+        if (ids.isEmpty()) {
+            Criteria criteria = Criteria.where("flags.isActive").is(true);
+            if (category != null) {
+                criteria.and("category.main").is(category);
+            }
+            Query query = new Query(criteria)
+                    .with(Sort.by(Sort.Direction.DESC, "analytics.purchased"))
+                    .limit(limit);
+            query.fields().include(ProductSummary.projection().keySet().toArray(String[]::new));
+            return mongoTemplate.find(query, ProductSummary.class, "products");
+        }
+        Map<String, ProductSummary> byId = productRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductSummary::getId, Function.identity()));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).limit(limit).toList();
+    }
+
+    /**
+     * Related product cards from the precomputed related.similar list, in rank order.
+     * Falls back to other products of the same category until the similarity batch has run.
+     */
+    public List<ProductSummary> getSimilarSummaries(Product product, int limit) {
+        List<String> similar = product.getRelated() != null ? product.getRelated().getSimilar() : null;
+        if (similar != null && !similar.isEmpty()) {
+            // The whole list (top-k, small) is fetched so inactive neighbours don't shrink the result
+            Map<String, ProductSummary> byId = productRepository.findSummariesByIdIn(similar).stream()
+                    .collect(Collectors.toMap(ProductSummary::getId, Function.identity()));
+            return similar.stream().map(byId::get).filter(Objects::nonNull).limit(limit).toList();
+        }
+        if (product.getCategory() == null) {
+            return List.of();
+        }
+        return productRepository.findSummariesByCategory(product.getCategory().getMain(), PageRequest.of(0, limit + 1))
+                .stream()
+                .filter(p -> !p.getId().equals(product.getId()))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Keyset-paginated listing of active products, optionally within a category.
+     * Resolves each window with a range query on (sort field, _id) and never counts;
+     * products without the sort value come first ascending, last descending.
+     * Only the card fields are read.
+     */
+    public CursorPage<ProductSummary> scrollActive(String category, String sortField, Sort.Direction direction,
+                                            String cursor, int size) {
+        Sort sort = ProductCursor.sort(sortField, direction);
+        KeysetScrollPosition position = ProductCursor.decode(cursor, sortField, direction);
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+
+        Criteria criteria = Criteria.where("flags.isActive").is(true);
+        if (category != null && !category.isBlank()) {
+            criteria.and("category.main").is(category);
+        }
+        Query query = new Query(criteria);
+        if (!position.isInitial()) {
+            query.addCriteria(ProductCursor.after(sortField, direction, position));
+        }
+        query.fields().include(ProductSummary.projection().keySet().toArray(String[]::new));
+        // One extra row tells whether there is a next page
+        query.with(sort).limit(limit + 1);
+
+        List<ProductSummary> products = mongoTemplate.find(query, ProductSummary.class, "products");
+        boolean hasNext = products.size() > limit;
+        List<ProductSummary> content = hasNext ? products.subList(0, limit) : products;
+
+        String nextCursor = null;
+        if (hasNext) {
+            ProductSummary last = content.get(content.size() - 1);
+            nextCursor = ProductCursor.encode(sortField, direction,
+                    ProductCursor.position(sortField, sortKey(last, sortField), last.getId()));
+        }
+        return CursorPage.<ProductSummary>builder()
+                .content(content)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .size(content.size())
+                .build();
+    }
+
+    private static Object sortKey(ProductSummary product, String sortField) {
+        return switch (sortField) {
+            case "createdAt" -> product.getCreatedAt();
+            case "pricing.regular" -> product.getPricing() != null ? product.getPricing().getRegular() : null;
+            case "ratings.average" -> product.getRatings() != null ? product.getRatings().getAverage() : null;
+            default -> throw new IllegalArgumentException("Unsupported cursor sort field: " + sortField);
+        };
+    }
+}
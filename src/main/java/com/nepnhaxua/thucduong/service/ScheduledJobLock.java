@@ -0,0 +1,46 @@
+package com.nepnhaxua.thucduong.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+/**
+ * Lets one node run a scheduled job that writes shared state, per period. The lock is a Redis
+ * key set with NX and a TTL of about one period, and is left to expire rather than deleted, so
+ * the other nodes' timers firing a little later in the same period skip too. A node that dies
+ * mid-run blocks the job for at most that long.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ScheduledJobLock {
+
+    private static final String KEY_PREFIX = "thucduong:job-lock:";
+    private static final String HOLDER = ManagementFactory.getRuntimeMXBean().getName();
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * Run the job unless another node has run it within {@code period}. Returns false when skipped;
+     * when Redis is unreachable the run is skipped as well.
+     */
+    public boolean runOncePer(String job, Duration period, Runnable task) {
+        Boolean acquired;
+        try {
+            acquired = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + job, HOLDER, period);
+        } catch (Exception e) {
+            log.warn("Could not take the {} job lock, skipping this run", job, e);
+            return false;
+        }
+        if (!Boolean.TRUE.equals(acquired)) {
+            log.debug("Job {} already ran on another node this period", job);
+            return false;
+        }
+        task.run();
+        return true;
+    }
+}
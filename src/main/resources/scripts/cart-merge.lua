@@ -0,0 +1,23 @@
+-- Merge a guest cart into a user's cart and drop the guest cart.
+-- KEYS: guest cart, user cart
+-- ARGV: max quantity per line, max lines, ttl millis
+-- Returns the number of guest lines merged; new lines that do not fit in the user's cart are dropped
+local guest = redis.call('HGETALL', KEYS[1])
+local maxQuantity = tonumber(ARGV[1])
+local lines = redis.call('HLEN', KEYS[2])
+local merged = 0
+for i = 1, #guest, 2 do
+    local current = tonumber(redis.call('HGET', KEYS[2], guest[i]) or '0')
+    if current > 0 or lines < tonumber(ARGV[2]) then
+        if current == 0 then
+            lines = lines + 1
+        end
+        redis.call('HSET', KEYS[2], guest[i], math.min(current + tonumber(guest[i + 1]), maxQuantity))
+        merged = merged + 1
+    end
+end
+redis.call('DEL', KEYS[1])
+if lines > 0 then
+    redis.call('PEXPIRE', KEYS[2], ARGV[3])
+end
+return merged
@@ -0,0 +1,23 @@
+-- Change one line of a cart and refresh the cart's TTL.
+-- KEYS: cart (hash productId -> quantity)
+-- ARGV: productId, quantity, mode ("add" adds to the line, "set" replaces an existing line),
+--       max quantity per line, max lines, ttl millis
+-- Returns the line's new quantity (0: removed), -1 when the cart is full, -2 when "set" finds no line
+local current = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+local quantity = tonumber(ARGV[2])
+if ARGV[3] == 'add' then
+    quantity = current + quantity
+elseif current == 0 then
+    return -2
+end
+quantity = math.min(quantity, tonumber(ARGV[4]))
+if quantity <= 0 then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+    return 0
+end
+if current == 0 and redis.call('HLEN', KEYS[1]) >= tonumber(ARGV[5]) then
+    return -1
+end
+redis.call('HSET', KEYS[1], ARGV[1], quantity)
+redis.call('PEXPIRE', KEYS[1], ARGV[6])
+return quantity
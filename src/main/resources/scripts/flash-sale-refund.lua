@@ -0,0 +1,12 @@
+-- Give released flash sale units back to the pool and to the customer's cap.
+-- KEYS: stock, per-user purchases (hash)
+-- ARGV: userId, quantity
+-- Returns the new stock, or -1 when the sale is over (nothing to refund into)
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return -1
+end
+local bought = tonumber(redis.call('HINCRBY', KEYS[2], ARGV[1], -tonumber(ARGV[2])))
+if bought <= 0 then
+    redis.call('HDEL', KEYS[2], ARGV[1])
+end
+return redis.call('INCRBY', KEYS[1], ARGV[2])
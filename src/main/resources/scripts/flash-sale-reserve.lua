@@ -0,0 +1,23 @@
+-- Atomically take flash sale stock for one customer.
+-- KEYS: stock, per-user purchases (hash), reservation log (stream)
+-- ARGV: userId, quantity, per-user cap (0 = none), reservation id, expiresAt (epoch millis)
+-- Returns the remaining stock, or -1 no sale, -2 customer cap reached, -3 sold out
+local stock = tonumber(redis.call('GET', KEYS[1]))
+if not stock then
+    return -1
+end
+local quantity = tonumber(ARGV[2])
+local cap = tonumber(ARGV[3])
+if cap > 0 then
+    local bought = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+    if bought + quantity > cap then
+        return -2
+    end
+end
+if stock < quantity then
+    return -3
+end
+redis.call('DECRBY', KEYS[1], quantity)
+redis.call('HINCRBY', KEYS[2], ARGV[1], quantity)
+redis.call('XADD', KEYS[3], '*', 'id', ARGV[4], 'user', ARGV[1], 'qty', ARGV[2], 'exp', ARGV[5])
+return stock - quantity
@@ -7,6 +7,7 @@ document.addEventListener('DOMContentLoaded', function() {
     initSortDropdown();
     initWishlist();
     initMobileFilters();
+    initSearchSuggest();
 });
 
 // View Modes (Grid/List)
@@ -285,6 +286,37 @@ function initPriceFilter() {
     });
 }
 
+// Search Suggestions (typeahead)
+function initSearchSuggest() {
+    const input = document.querySelector('.search-input[list="searchSuggestions"]');
+    const datalist = document.getElementById('searchSuggestions');
+    if (!input || !datalist) return;
+
+    let timer;
+    input.addEventListener('input', function() {
+        clearTimeout(timer);
+        const q = this.value.trim();
+        if (!q) {
+            datalist.innerHTML = '';
+            return;
+        }
+        timer = setTimeout(async () => {
+            try {
+                const response = await fetch(`/api/products/suggest?q=${encodeURIComponent(q)}`);
+                const result = await response.json();
+                datalist.innerHTML = '';
+                (result.data || []).forEach(suggestion => {
+                    const option = document.createElement('option');
+                    option.value = suggestion.text;
+                    datalist.appendChild(option);
+                });
+            } catch (error) {
+                console.error('Error loading suggestions:', error);
+            }
+        }, 120);
+    });
+}
+
 // Sort Dropdown
 function initSortDropdown() {
     const sortSelect = document.getElementById('sort');
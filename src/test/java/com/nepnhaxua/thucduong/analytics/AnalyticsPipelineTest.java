@@ -0,0 +1,39 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AnalyticsPipelineTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void listenersSeeBatchesTheStoreRejectedAndPurchasesBypassTheBound() throws InterruptedException {
+		MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+		when(mongoTemplate.insert(anyCollection(), eq(AnalyticsEvent.class))).thenThrow(new IllegalStateException("down"));
+		Queue<AnalyticsEvent> seen = new ConcurrentLinkedQueue<>();
+		ObjectProvider<AnalyticsBatchListener> listeners = mock(ObjectProvider.class);
+		when(listeners.orderedStream()).thenReturn(Stream.of(seen::addAll));
+		AnalyticsPipeline pipeline = new AnalyticsPipeline(mongoTemplate, mock(ObjectProvider.class), listeners, 1, 10, 5);
+
+		assertThat(pipeline.record(AnalyticsEvent.PRODUCT_VIEW, null, "s1", Map.of("productId", "p1"))).isTrue();
+		assertThat(pipeline.record(AnalyticsEvent.PRODUCT_VIEW, null, "s1", Map.of("productId", "p2"))).isFalse();
+		pipeline.trackPurchase("p1", null, 2, "u1", "s1");
+		pipeline.start();
+		pipeline.stop();
+
+		assertThat(seen).extracting(AnalyticsEvent::getType)
+				.containsExactly(AnalyticsEvent.PRODUCT_VIEW, AnalyticsEvent.PURCHASE);
+		assertThat(pipeline.getDroppedCount()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,88 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import com.mongodb.client.result.UpdateResult;
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import com.nepnhaxua.thucduong.service.ScheduledJobLock;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AnalyticsRollupServiceTest {
+
+	private static final LocalDateTime CHECKPOINT = LocalDateTime.of(2025, 8, 10, 14, 0);
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final ScheduledJobLock jobLock = mock(ScheduledJobLock.class);
+	private final AnalyticsRollupService service = new AnalyticsRollupService(mongoTemplate, jobLock,
+			"cursor", 2, 0, 60000, 7, 180, 30);
+
+	@BeforeEach
+	void setUp() {
+		when(jobLock.runOncePer(eq("rollup-cursor"), any(), any())).thenAnswer(invocation -> {
+			invocation.getArgument(2, Runnable.class).run();
+			return true;
+		});
+		when(mongoTemplate.findById(eq("cursor"), eq(Document.class), eq("analytics_rollup_state")))
+				.thenReturn(new Document("_id", "cursor")
+						.append("timestamp", Date.from(CHECKPOINT.atZone(ZoneId.systemDefault()).toInstant()))
+						.append("lastId", "e0"));
+		when(mongoTemplate.find(any(Query.class), eq(AnalyticsEvent.class)))
+				.thenReturn(List.of(view("e1", CHECKPOINT.plusMinutes(1))));
+		when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class)))
+				.thenReturn(mock(BulkOperations.class));
+	}
+
+	@Test
+	void claimsThePageFromThePreviousCheckpointBeforeApplyingIt() {
+		when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq("analytics_rollup_state")))
+				.thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+		service.catchUp();
+
+		ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).updateFirst(claim.capture(), any(UpdateDefinition.class), eq("analytics_rollup_state"));
+		assertThat(claim.getValue().getQueryObject()).containsEntry("lastId", "e0");
+		verify(mongoTemplate).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+	}
+
+	@Test
+	void skipsThePageWhenAnotherNodeMovedTheCheckpoint() {
+		when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq("analytics_rollup_state")))
+				.thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+		service.catchUp();
+
+		verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+	}
+
+	@Test
+	void streamModeLeavesTheCursorAlone() {
+		new AnalyticsRollupService(mongoTemplate, jobLock, "stream", 2, 0, 60000, 7, 180, 30).catchUp();
+
+		verifyNoInteractions(jobLock);
+	}
+
+	private static AnalyticsEvent view(String id, LocalDateTime time) {
+		return AnalyticsEvent.builder()
+				.id(id)
+				.type(AnalyticsEvent.PRODUCT_VIEW)
+				.timestamp(time)
+				.data(Map.of("productId", "p1"))
+				.build();
+	}
+}
@@ -0,0 +1,65 @@
+package com.nepnhaxua.thucduong.analytics;
+
+import com.nepnhaxua.thucduong.entity.AnalyticsEvent;
+import com.nepnhaxua.thucduong.entity.AnalyticsRollup;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollupAccumulatorTest {
+
+	@Test
+	void foldsEventsIntoOneDeltaPerBucket() {
+		LocalDateTime time = LocalDateTime.of(2025, 8, 10, 14, 37, 12);
+		RollupAccumulator accumulator = new RollupAccumulator()
+				.add(view("p1", time))
+				.add(view("p1", time.plusMinutes(1)))
+				.add(view("p2", time));
+
+		// 3 granularities x (all, p1, p2)
+		assertThat(accumulator.deltas()).hasSize(9);
+
+		RollupAccumulator.Delta minutes = delta(accumulator, RollupGranularity.MINUTE, "p1");
+		assertThat(minutes.getStart()).isEqualTo(LocalDateTime.of(2025, 8, 10, 14, 0));
+		assertThat(minutes.getSlots()).containsExactly(Map.entry(37, 1L), Map.entry(38, 1L));
+		assertThat(minutes.getTotal()).isEqualTo(2);
+
+		RollupAccumulator.Delta days = delta(accumulator, RollupGranularity.DAY, "*");
+		assertThat(days.getStart()).isEqualTo(LocalDateTime.of(2025, 8, 1, 0, 0));
+		assertThat(days.getSlots()).containsExactly(Map.entry(10, 3L));
+	}
+
+	@Test
+	void keysBodyPartEventsByBodyPart() {
+		AnalyticsEvent event = AnalyticsEvent.builder()
+				.type(AnalyticsEvent.HEALTH_MAP_INTERACTION)
+				.timestamp(LocalDateTime.of(2025, 8, 10, 9, 5))
+				.data(Map.of("bodyPart", "gan", "action", "click"))
+				.build();
+
+		RollupAccumulator accumulator = new RollupAccumulator().add(event);
+
+		assertThat(accumulator.deltas())
+				.extracting(RollupAccumulator.Delta::getDimension)
+				.containsOnly(AnalyticsRollup.DIMENSION_ALL, AnalyticsRollup.DIMENSION_BODY_PART);
+		assertThat(delta(accumulator, RollupGranularity.HOUR, "gan").getSlots()).containsExactly(Map.entry(9, 1L));
+	}
+
+	private static AnalyticsEvent view(String productId, LocalDateTime time) {
+		return AnalyticsEvent.builder()
+				.type(AnalyticsEvent.PRODUCT_VIEW)
+				.timestamp(time)
+				.data(Map.of("productId", productId))
+				.build();
+	}
+
+	private static RollupAccumulator.Delta delta(RollupAccumulator accumulator, RollupGranularity granularity, String key) {
+		return accumulator.deltas().stream()
+				.filter(d -> d.getGranularity() == granularity && d.getKey().equals(key))
+				.findFirst()
+				.orElseThrow();
+	}
+}
@@ -0,0 +1,86 @@
+package com.nepnhaxua.thucduong.cart;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the cart scripts against a local Redis (localhost:6379, or -Dredis.host / -Dredis.port);
+ * skipped when none is reachable
+ */
+class CartScriptTest {
+
+	private static final String GUEST = "thucduong:cart-script-test:guest";
+	private static final String USER = "thucduong:cart-script-test:user";
+
+	private JedisConnectionFactory connectionFactory;
+	private StringRedisTemplate redis;
+
+	@BeforeEach
+	void connect() {
+		RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+				System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+		connectionFactory = new JedisConnectionFactory(config);
+		connectionFactory.afterPropertiesSet();
+		redis = new StringRedisTemplate(connectionFactory);
+		boolean reachable;
+		try {
+			reachable = "PONG".equals(redis.execute(connection -> connection.ping(), true));
+		} catch (Exception e) {
+			reachable = false;
+		}
+		assumeTrue(reachable, "no local Redis");
+		redis.delete(List.of(GUEST, USER));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		if (redis != null) {
+			try {
+				redis.delete(List.of(GUEST, USER));
+			} catch (Exception ignored) {
+				// Redis was not reachable
+			}
+		}
+		connectionFactory.destroy();
+	}
+
+	@Test
+	void capsQuantitiesAndLines() {
+		assertThat(update(USER, "p1", 3, "add")).isEqualTo(3);
+		assertThat(update(USER, "p1", 5, "add")).isEqualTo(5);
+		assertThat(update(USER, "p2", 1, "add")).isEqualTo(1);
+		assertThat(update(USER, "p3", 1, "add")).isEqualTo(-1);
+		assertThat(update(USER, "p3", 1, "set")).isEqualTo(-2);
+		assertThat(update(USER, "p1", 0, "set")).isZero();
+		assertThat(redis.opsForHash().entries(USER)).isEqualTo(Map.of("p2", "1"));
+	}
+
+	@Test
+	void mergesGuestCartIntoUserCart() {
+		update(USER, "p1", 2, "add");
+		update(GUEST, "p1", 4, "add");
+		update(GUEST, "p2", 1, "add");
+		update(GUEST, "p3", 1, "add");
+
+		Long merged = redis.execute(CartService.MERGE_SCRIPT, List.of(GUEST, USER), "5", "2", "60000");
+
+		assertThat(merged).isEqualTo(2);
+		assertThat(redis.opsForHash().entries(USER)).isEqualTo(Map.of("p1", "5", "p2", "1"));
+		assertThat(redis.hasKey(GUEST)).isFalse();
+	}
+
+	private long update(String cart, String productId, int quantity, String mode) {
+		return redis.execute(CartService.UPDATE_SCRIPT, List.of(cart), productId, String.valueOf(quantity), mode,
+				"5", "2", "60000");
+	}
+}
@@ -0,0 +1,78 @@
+package com.nepnhaxua.thucduong.catalog;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductExportServiceTest {
+
+	@Test
+	void csvExportImportsBackUnchanged() throws Exception {
+		Document product = new Document("sku", "TD-1")
+				.append("slug", "tra-gung")
+				.append("name", "Trà Gừng, \"Mật Ong\"")
+				.append("tags", List.of("trà", "gừng"))
+				.append("pricing", new Document("regular", 45000.0).append("sale", 39500.5))
+				.append("media", new Document("images", List.of(
+						new Document("url", "https://cdn/a.jpg").append("isPrimary", true),
+						new Document("url", "https://cdn/b.jpg").append("isPrimary", false))))
+				.append("flags", new Document("isActive", false));
+		List<String> columns = ProductExportService.selectColumns(List.of());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertThat(ProductExportService.csv(List.of(product).iterator(), columns, out)).isEqualTo(1);
+
+		List<Map<String, String>> rows = new ArrayList<>();
+		ProductRows.csv(new ByteArrayInputStream(out.toByteArray()), (number, values) -> rows.add(values));
+		assertThat(rows).hasSize(1);
+		assertThat(rows.get(0)).containsEntry("sku", "TD-1")
+				.containsEntry("name", "Trà Gừng, \"Mật Ong\"")
+				.containsEntry("price", "45000")
+				.containsEntry("sale_price", "39500.5")
+				.containsEntry("images", "https://cdn/a.jpg; https://cdn/b.jpg")
+				.containsEntry("active", "false")
+				.doesNotContainKey("quantity");
+
+		Document set = ProductRowMapper.map(rows.get(0), LocalDateTime.now()).getUpdate().getUpdateObject()
+				.get("$set", Document.class);
+		assertThat(set).containsEntry("tags", List.of("trà", "gừng"))
+				.containsEntry("pricing.regular", 45000.0)
+				.containsEntry("flags.isActive", false);
+	}
+
+	@Test
+	void quantityRoundTripsOnlyWhereTheImporterAcceptsIt() throws Exception {
+		Document plain = new Document("sku", "TD-1")
+				.append("inventory", new Document("quantity", 12).append("reserved", 0));
+		Document warehouses = new Document("sku", "TD-2")
+				.append("inventory", new Document("quantity", 40).append("reserved", 0)
+						.append("locations", List.of(new Document("warehouse", "hanoi").append("quantity", 40))));
+		Document reserved = new Document("sku", "TD-3")
+				.append("inventory", new Document("quantity", 5).append("reserved", 2));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		ProductExportService.csv(List.of(plain, warehouses, reserved).iterator(), List.of("sku", "quantity"), out);
+
+		List<Map<String, String>> rows = new ArrayList<>();
+		ProductRows.csv(new ByteArrayInputStream(out.toByteArray()), (number, values) -> rows.add(values));
+		assertThat(rows).extracting(row -> row.get("quantity")).containsExactly("12", null, null);
+		assertThat(rows).extracting(row -> ProductRowMapper.map(row, LocalDateTime.now()).getQuantity())
+				.containsExactly(12, null, null);
+	}
+
+	@Test
+	void selectsFieldsInColumnOrder() {
+		assertThat(ProductExportService.selectColumns(List.of("Price", "sku"))).containsExactly("sku", "price");
+		assertThatThrownBy(() -> ProductExportService.selectColumns(List.of("password")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
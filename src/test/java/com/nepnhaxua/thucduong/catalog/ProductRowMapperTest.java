@@ -0,0 +1,60 @@
+package com.nepnhaxua.thucduong.catalog;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductRowMapperTest {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+	@Test
+	void setsOnlyGivenColumnsAndKeysBySku() {
+		ProductRowMapper.Mapped mapped = ProductRowMapper.map(Map.of(
+				"sku", "TD-1",
+				"name", "Trà Gừng Mật Ong",
+				"price", "45,000",
+				"tags", "trà; gừng | trà",
+				"active", "no"), NOW);
+
+		assertThat(mapped.getKey()).isEqualTo("TD-1");
+		assertThat(mapped.getQuery().getQueryObject()).isEqualTo(new Document("sku", "TD-1"));
+		Document set = mapped.getUpdate().getUpdateObject().get("$set", Document.class);
+		assertThat(set).containsEntry("name", "Trà Gừng Mật Ong")
+				.containsEntry("pricing.regular", 45000.0)
+				.containsEntry("tags", List.of("trà", "gừng"))
+				.containsEntry("flags.isActive", false)
+				.doesNotContainKey("pricing.sale");
+		Document setOnInsert = mapped.getUpdate().getUpdateObject().get("$setOnInsert", Document.class);
+		assertThat(setOnInsert).containsEntry("slug", "tra-gung-mat-ong")
+				.doesNotContainKey("flags.isActive");
+	}
+
+	@Test
+	void setsQuantityOnlyOnProductsWithoutLocations() {
+		ProductRowMapper.Mapped mapped = ProductRowMapper.map(Map.of("sku", "TD-1", "quantity", "12"), NOW);
+
+		assertThat(mapped.getQuantity()).isEqualTo(12);
+		assertThat(mapped.getQuery().getQueryObject()).isEqualTo(new Document("sku", "TD-1")
+				.append("inventory.locations.0", new Document("$exists", false)));
+		assertThat(ProductRowMapper.map(Map.of("sku", "TD-1", "price", "1"), NOW).getQuantity()).isNull();
+	}
+
+	@Test
+	void rejectsInvalidRows() {
+		assertThatThrownBy(() -> ProductRowMapper.map(Map.of("price", "1"), NOW))
+				.hasMessageContaining("required");
+		assertThatThrownBy(() -> ProductRowMapper.map(Map.of("sku", "A", "quantity", "2.5"), NOW))
+				.hasMessageStartingWith("quantity:");
+		assertThatThrownBy(() -> ProductRowMapper.map(Map.of("sku", "A", "price", "10", "sale_price", "12"), NOW))
+				.hasMessageContaining("above price");
+		assertThatThrownBy(() -> ProductRowMapper.map(Map.of("slug", "Not A Slug"), NOW))
+				.hasMessageContaining("Invalid slug");
+	}
+}
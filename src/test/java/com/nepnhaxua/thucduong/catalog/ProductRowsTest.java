@@ -0,0 +1,65 @@
+package com.nepnhaxua.thucduong.catalog;
+
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductRowsTest {
+
+	@Test
+	void readsCsvWithQuotedCellsAndSkipsBlankRows() throws Exception {
+		String csv = "\uFEFFSKU,Name,Sale Price\n"
+				+ "TD-1,\"Trà gừng, hộp 20 gói\",45000\n"
+				+ ",,\n"
+				+ "TD-2,Mật ong,\n";
+		List<Map<String, String>> rows = new ArrayList<>();
+		List<Long> numbers = new ArrayList<>();
+
+		ProductRows.csv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), (number, values) -> {
+			numbers.add(number);
+			rows.add(values);
+		});
+
+		assertThat(numbers).containsExactly(2L, 4L);
+		assertThat(rows.get(0)).containsEntry("sku", "TD-1")
+				.containsEntry("name", "Trà gừng, hộp 20 gói")
+				.containsEntry("sale_price", "45000");
+		assertThat(rows.get(1)).containsOnlyKeys("sku", "name");
+	}
+
+	@Test
+	void streamsFirstXlsxSheet(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("products.xlsx");
+		try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+			XSSFSheet sheet = workbook.createSheet("products");
+			XSSFRow header = sheet.createRow(0);
+			header.createCell(0).setCellValue("sku");
+			header.createCell(2).setCellValue("price");
+			XSSFRow row = sheet.createRow(1);
+			row.createCell(0).setCellValue("TD-1");
+			row.createCell(2).setCellValue(125000);
+			workbook.write(out);
+		}
+		List<Map<String, String>> rows = new ArrayList<>();
+
+		ProductRows.read(file, ProductRows.Format.XLSX, (number, values) -> {
+			assertThat(number).isEqualTo(2L);
+			rows.add(values);
+		});
+
+		assertThat(rows).containsExactly(Map.of("sku", "TD-1", "price", "125000"));
+	}
+}
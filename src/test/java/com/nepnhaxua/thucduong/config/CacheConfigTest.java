@@ -0,0 +1,40 @@
+package com.nepnhaxua.thucduong.config;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nepnhaxua.thucduong.entity.Product;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheConfigTest {
+
+	private final ObjectMapper mapper = CacheConfig.redisObjectMapper();
+
+	@Test
+	void roundTripsCachedProducts() throws Exception {
+		Product product = new Product();
+		product.setSlug("tra-gung");
+		product.setTags(List.of("trà", "gừng"));
+		product.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 8, 30));
+
+		Object read = mapper.readValue(mapper.writeValueAsString(product), Object.class);
+
+		assertThat(read).isInstanceOf(Product.class);
+		assertThat(((Product) read).getTags()).containsExactly("trà", "gừng");
+		assertThat(((Product) read).getUpdatedAt()).isEqualTo(LocalDateTime.of(2024, 1, 1, 8, 30));
+	}
+
+	@Test
+	void rejectsTypesOutsideTheAllowList() {
+		String gadget = "[\"java.net.URL\",\"http://example.com\"]";
+
+		assertThatThrownBy(() -> mapper.readValue(gadget, Object.class))
+				.isInstanceOf(JsonMappingException.class)
+				.hasMessageContaining("PolymorphicTypeValidator");
+	}
+}
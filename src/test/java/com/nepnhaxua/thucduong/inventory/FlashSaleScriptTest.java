@@ -0,0 +1,101 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the flash sale scripts against a local Redis (localhost:6379, or -Dredis.host / -Dredis.port);
+ * skipped when none is reachable
+ */
+class FlashSaleScriptTest {
+
+	private static final String PRODUCT = "flash-sale-script-test";
+
+	private JedisConnectionFactory connectionFactory;
+	private StringRedisTemplate redis;
+	private FlashSaleService.Keys keys;
+
+	@BeforeEach
+	void connect() {
+		RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+				System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+		connectionFactory = new JedisConnectionFactory(config);
+		connectionFactory.afterPropertiesSet();
+		redis = new StringRedisTemplate(connectionFactory);
+		boolean reachable;
+		try {
+			reachable = "PONG".equals(redis.execute(connection -> connection.ping(), true));
+		} catch (Exception e) {
+			reachable = false;
+		}
+		assumeTrue(reachable, "no local Redis");
+		keys = FlashSaleService.keys(PRODUCT);
+		redis.delete(List.of(keys.stock, keys.users, keys.log));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		if (keys != null) {
+			redis.delete(List.of(keys.stock, keys.users, keys.log));
+		}
+		connectionFactory.destroy();
+	}
+
+	@Test
+	void enforcesCustomerCapAndRefunds() {
+		redis.opsForValue().set(keys.stock, "10");
+
+		assertThat(reserve("u1", 2, 3)).isEqualTo(8);
+		assertThat(reserve("u1", 2, 3)).isEqualTo(-2);
+		assertThat(reserve("u1", 1, 3)).isEqualTo(7);
+		assertThat(redis.opsForStream().size(keys.log)).isEqualTo(2);
+
+		redis.execute(FlashSaleService.REFUND_SCRIPT, List.of(keys.stock, keys.users), "u1", "3");
+		assertThat(redis.opsForValue().get(keys.stock)).isEqualTo("10");
+		assertThat(reserve("u1", 3, 3)).isEqualTo(7);
+
+		redis.delete(keys.stock);
+		assertThat(reserve("u2", 1, 3)).isEqualTo(-1);
+	}
+
+	@Test
+	void neverSellsMoreThanTheStock() throws Exception {
+		redis.opsForValue().set(keys.stock, "25");
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<Long>> results = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			String user = "u" + i;
+			results.add(pool.submit(() -> reserve(user, 1, 1)));
+		}
+		int sold = 0;
+		for (Future<Long> result : results) {
+			if (result.get() >= 0) {
+				sold++;
+			}
+		}
+		pool.shutdown();
+
+		assertThat(sold).isEqualTo(25);
+		assertThat(redis.opsForValue().get(keys.stock)).isEqualTo("0");
+		assertThat(redis.opsForStream().size(keys.log)).isEqualTo(25);
+	}
+
+	private long reserve(String user, int quantity, int cap) {
+		return redis.execute(FlashSaleService.RESERVE_SCRIPT, List.of(keys.stock, keys.users, keys.log),
+				user, String.valueOf(quantity), String.valueOf(cap), "id-" + System.nanoTime(),
+				String.valueOf(System.currentTimeMillis() + 60_000));
+	}
+}
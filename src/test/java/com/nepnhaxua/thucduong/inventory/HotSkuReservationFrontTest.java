@@ -0,0 +1,33 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotSkuReservationFrontTest {
+
+	@Test
+	void takesAcrossStripesAndKeepsUnitsWhenShort() {
+		HotSkuReservationFront.Escrow escrow = new HotSkuReservationFront.Escrow("p1", "lease-1", null);
+		escrow.add(10);
+
+		assertThat(escrow.take(7)).isTrue();
+		assertThat(escrow.take(4)).isFalse();
+		assertThat(escrow.available()).isEqualTo(3);
+		assertThat(escrow.drain()).isEqualTo(3);
+	}
+
+	@Test
+	void stopsBeingUsableWhenRenewalIsTooOld() {
+		HotSkuReservationFront.Escrow escrow = new HotSkuReservationFront.Escrow("p1", "lease-1", null);
+		assertThat(escrow.usable()).isFalse();
+
+		escrow.renewed(System.currentTimeMillis(), Duration.ofMinutes(1));
+		assertThat(escrow.usable()).isTrue();
+
+		escrow.renewed(System.currentTimeMillis() - 120_000, Duration.ofMinutes(1));
+		assertThat(escrow.usable()).isFalse();
+	}
+}
@@ -0,0 +1,56 @@
+package com.nepnhaxua.thucduong.inventory;
+
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import com.nepnhaxua.thucduong.entity.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class WarehouseAllocatorTest {
+
+	@Test
+	void prefersSmallestWarehouseThatShipsEverything() {
+		Product.Inventory inventory = inventory(
+				location("hanoi", 40, 5),
+				location("hcm", 12, 2),
+				location("danang", 8, 0));
+
+		assertThat(WarehouseAllocator.allocate(inventory, 9))
+				.extracting(InventoryReservation.Allocation::getWarehouse, InventoryReservation.Allocation::getQuantity)
+				.containsExactly(tuple("hcm", 9));
+	}
+
+	@Test
+	void splitsLargestFirstAndRefusesWhenShort() {
+		Product.Inventory inventory = inventory(
+				location("hanoi", 10, 4),
+				location("hcm", 5, 0),
+				location("danang", 3, 3));
+
+		assertThat(WarehouseAllocator.allocate(inventory, 8))
+				.extracting(InventoryReservation.Allocation::getWarehouse, InventoryReservation.Allocation::getQuantity)
+				.containsExactly(tuple("hanoi", 6), tuple("hcm", 2));
+		assertThat(WarehouseAllocator.allocate(inventory, 12)).isEmpty();
+	}
+
+	private static Product.Inventory inventory(Product.Location... locations) {
+		Product.Inventory inventory = new Product.Inventory();
+		int quantity = 0;
+		int reserved = 0;
+		for (Product.Location location : locations) {
+			quantity += location.getQuantity();
+			reserved += location.getReserved();
+		}
+		inventory.setQuantity(quantity);
+		inventory.setReserved(reserved);
+		inventory.setLocations(List.of(locations));
+		return inventory;
+	}
+
+	private static Product.Location location(String warehouse, int quantity, int reserved) {
+		return new Product.Location(warehouse, quantity, reserved);
+	}
+}
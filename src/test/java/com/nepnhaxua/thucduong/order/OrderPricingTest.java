@@ -0,0 +1,65 @@
+package com.nepnhaxua.thucduong.order;
+
+import com.nepnhaxua.thucduong.entity.Order;
+import com.nepnhaxua.thucduong.entity.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderPricingTest {
+
+	@Test
+	void usesCheapestOfSaleAndReachedBulkTier() {
+		Product product = product("p1", 100_000.0, 90_000.0, false);
+		product.getPricing().setBulkPricing(List.of(
+				new Product.BulkPricing(5, 85_000.0),
+				new Product.BulkPricing(10, 80_000.0)));
+
+		assertThat(OrderPricing.unitPrice(product, 1)).isEqualTo(90_000.0);
+		assertThat(OrderPricing.unitPrice(product, 7)).isEqualTo(85_000.0);
+		assertThat(OrderPricing.unitPrice(product, 10)).isEqualTo(80_000.0);
+	}
+
+	@Test
+	void waivesShippingAboveThresholdOrWhenEverythingShipsFree() {
+		Product paid = product("p1", 100_000.0, null, false);
+		Product free = product("p2", 50_000.0, null, true);
+		Map<String, Product> products = Map.of("p1", paid, "p2", free);
+
+		Order.Pricing small = OrderPricing.total(List.of(item("p1", 2, 100_000.0), item("p2", 1, 50_000.0)),
+				products, 30_000, 500_000);
+		assertThat(small.getSubtotal()).isEqualTo(250_000.0);
+		assertThat(small.getShipping()).isEqualTo(30_000.0);
+		assertThat(small.getTotal()).isEqualTo(280_000.0);
+
+		assertThat(OrderPricing.total(List.of(item("p1", 5, 100_000.0)), products, 30_000, 500_000).getShipping())
+				.isZero();
+		assertThat(OrderPricing.total(List.of(item("p2", 1, 50_000.0)), products, 30_000, 500_000).getShipping())
+				.isZero();
+	}
+
+	private static Product product(String id, Double regular, Double sale, boolean freeShipping) {
+		Product product = new Product();
+		product.setId(id);
+		Product.Pricing pricing = new Product.Pricing();
+		pricing.setRegular(regular);
+		pricing.setSale(sale);
+		product.setPricing(pricing);
+		Product.Shipping shipping = new Product.Shipping();
+		shipping.setFreeShipping(freeShipping);
+		product.setShipping(shipping);
+		return product;
+	}
+
+	private static Order.Item item(String productId, int quantity, double unitPrice) {
+		return Order.Item.builder()
+				.productId(productId)
+				.quantity(quantity)
+				.unitPrice(unitPrice)
+				.total(unitPrice * quantity)
+				.build();
+	}
+}
@@ -0,0 +1,97 @@
+package com.nepnhaxua.thucduong.order;
+
+import com.nepnhaxua.thucduong.analytics.AnalyticsPipeline;
+import com.nepnhaxua.thucduong.cart.CartService;
+import com.nepnhaxua.thucduong.entity.Cart;
+import com.nepnhaxua.thucduong.entity.InventoryReservation;
+import com.nepnhaxua.thucduong.entity.Order;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.entity.User;
+import com.nepnhaxua.thucduong.inventory.InventoryReservationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final CartService cartService = mock(CartService.class);
+	private final InventoryReservationService reservationService = mock(InventoryReservationService.class);
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+	private final CartService.Owner owner = CartService.Owner.user("u1");
+	private OrderService orderService;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+		ObjectProvider<MeterRegistry> meterRegistry = mock(ObjectProvider.class);
+		when(meterRegistry.getIfAvailable(any())).thenReturn(new SimpleMeterRegistry());
+		orderService = new OrderService(mongoTemplate, cartService, reservationService, mock(AnalyticsPipeline.class),
+				meterRegistry, transactionManager, 900000, 30000, 500000);
+
+		CartService.CartView cart = new CartService.CartView();
+		cart.setItems(List.of(new Cart.Item("p1", 2)));
+		when(cartService.get(owner)).thenReturn(cart);
+		Product product = new Product();
+		product.setId("p1");
+		Product.Pricing pricing = new Product.Pricing();
+		pricing.setRegular(100_000.0);
+		product.setPricing(pricing);
+		when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(product));
+		when(reservationService.reserve(eq("p1"), eq(2), anyString(), eq("u1"), any(Duration.class)))
+				.thenReturn(InventoryReservation.builder().id("r1").build());
+	}
+
+	@Test
+	void failedOrderWriteReleasesTheReservations() {
+		when(mongoTemplate.insert(any(Order.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+		assertThatThrownBy(() -> orderService.place(owner, "key-1", checkout("bank_transfer")))
+				.isInstanceOf(DataAccessResourceFailureException.class);
+
+		verify(reservationService).release("r1");
+		verify(cartService, never()).clear(any());
+	}
+
+	@Test
+	void unpaidOrdersDoNotCountTowardsActivity() {
+		Order order = orderService.place(owner, "key-1", checkout("bank_transfer"));
+
+		assertThat(order.getStatus()).isEqualTo(Order.PENDING);
+		verify(reservationService, never()).commit(any());
+		verify(mongoTemplate, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(User.class));
+	}
+
+	@Test
+	void cashOnDeliveryCommitsAndCountsTowardsActivity() {
+		Order order = orderService.place(owner, "key-1", checkout(Order.METHOD_COD));
+
+		assertThat(order.getStatus()).isEqualTo(Order.CONFIRMED);
+		verify(reservationService).commit("r1");
+		verify(mongoTemplate).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(User.class));
+	}
+
+	private static OrderService.CheckoutRequest checkout(String paymentMethod) {
+		OrderService.CheckoutRequest request = new OrderService.CheckoutRequest();
+		request.setPaymentMethod(paymentMethod);
+		request.setShippingAddress(User.Address.builder().recipientName("An").recipientPhone("0900000000").build());
+		return request;
+	}
+}
@@ -0,0 +1,57 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.entity.User;
+import com.nepnhaxua.thucduong.repository.ProductRepository;
+import com.nepnhaxua.thucduong.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ForYouRecommendationServiceTest {
+
+	private final UserRepository userRepository = mock(UserRepository.class);
+	private final ProductRepository productRepository = mock(ProductRepository.class);
+	private final ForYouCandidateStore candidateStore = mock(ForYouCandidateStore.class);
+	private final PersonalizationEngine personalizationEngine = mock(PersonalizationEngine.class);
+	private final ForYouRecommendationService service = new ForYouRecommendationService(
+			userRepository, productRepository, candidateStore, personalizationEngine);
+
+	@Test
+	void keepsRankedOrderAndSkipsDeactivatedCandidates() {
+		User user = new User();
+		user.setId("u1");
+		when(userRepository.findById("u1")).thenReturn(Optional.of(user));
+		when(candidateStore.candidates(user, 6)).thenReturn(List.of(
+				new ForYouCandidateStore.Candidate("p1", 4.0),
+				new ForYouCandidateStore.Candidate("p2", 2.0),
+				new ForYouCandidateStore.Candidate("p3", 1.0)));
+		when(personalizationEngine.rank(eq(List.of("p1", "p2", "p3")), any(), eq(user), eq(3)))
+				.thenReturn(List.of("p3", "p2", "p1"));
+		when(productRepository.findRelatedProducts(List.of("p3", "p2", "p1")))
+				.thenReturn(List.of(product("p1"), product("p3")));
+
+		assertThat(service.recommend("u1", 2)).extracting(Product::getId).containsExactly("p3", "p1");
+		verify(productRepository, never()).getPersonalizedRecommendations(any(), anyInt());
+	}
+
+	@Test
+	void usersWithoutCandidatesGetTheBaseline() {
+		when(userRepository.findById("u1")).thenReturn(Optional.empty());
+		when(productRepository.getPersonalizedRecommendations("u1", 4)).thenReturn(List.of(product("p9")));
+
+		assertThat(service.recommend("u1", 4)).extracting(Product::getId).containsExactly("p9");
+		verifyNoInteractions(candidateStore, personalizationEngine);
+	}
+
+	private static Product product(String id) {
+		Product product = new Product();
+		product.setId(id);
+		return product;
+	}
+}
@@ -0,0 +1,63 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductFeatureTableTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2025, 8, 10);
+
+	private final ProductFeatureTable table = ProductFeatureTable.builder()
+			.add(product("plain", List.of(), "Gạo trắng"))
+			.add(product("diabetes", List.of("Tiểu đường", "chay"), "Gạo lứt"))
+			.add(product("peanut", List.of("Tiểu đường"), "Đậu phộng"))
+			.add(product("kids", List.of("trẻ em"), "Sữa"))
+			.build();
+
+	@Test
+	void ranksProfileMatchesFirstAndExcludesAllergens() {
+		User user = user(LocalDateTime.of(1980, 1, 1, 0, 0), List.of("tieu duong"), List.of("Chay"), List.of("đậu phộng"));
+
+		List<String> ranked = table.rank(List.of("plain", "peanut", "diabetes", "kids"), null,
+				table.compile(user, TODAY), 10);
+
+		assertThat(ranked).containsExactly("diabetes", "plain", "kids");
+	}
+
+	@Test
+	void keepsOnlyTheTopNAndUnknownCandidates() {
+		User user = user(LocalDateTime.of(2018, 5, 1, 0, 0), List.of(), List.of(), List.of());
+
+		List<String> ranked = table.rank(List.of("plain", "kids", "not-indexed"), null,
+				table.compile(user, TODAY), 2);
+
+		assertThat(ranked).containsExactly("kids", "plain");
+	}
+
+	private static Product product(String id, List<String> tags, String ingredient) {
+		Product product = new Product();
+		product.setId(id);
+		product.setTags(new ArrayList<>(tags));
+		product.setIngredients(List.of(Product.Ingredient.builder().name(ingredient).benefits(List.of()).build()));
+		return product;
+	}
+
+	private static User user(LocalDateTime dateOfBirth, List<String> conditions, List<String> diet, List<String> allergies) {
+		User user = new User();
+		user.setProfile(User.Profile.builder()
+				.dateOfBirth(dateOfBirth)
+				.healthConditions(conditions)
+				.dietaryPreferences(diet)
+				.allergies(allergies)
+				.build());
+		return user;
+	}
+}
@@ -0,0 +1,52 @@
+package com.nepnhaxua.thucduong.recommendation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimilarProductGraphTest {
+
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	void ranksByWeightedSharedFeatures() {
+		SimilarProductGraph graph = new SimilarProductGraph();
+		graph.add("rice-red", Map.of("category:gao-lut", 3f, "tag:organic", 1f, "price:10", 2f));
+		graph.add("rice-black", Map.of("category:gao-lut", 3f, "tag:organic", 1f, "price:11", 2f));
+		graph.add("rice-white", Map.of("category:gao-lut", 3f, "price:20", 2f));
+		graph.add("tea", Map.of("category:tra", 3f, "price:10", 2f));
+		graph.add("oil", Map.of("category:dau-an", 3f));
+
+		Map<String, List<String>> neighbours = graph.topNeighbours(2, ForkJoinPool.commonPool());
+
+		assertThat(neighbours.get("rice-red")).hasSize(2).startsWith("rice-black").doesNotContain("rice-red");
+		assertThat(neighbours.get("oil")).isEmpty();
+	}
+
+	@Test
+	void splitsLargeCatalogsAcrossTasks() {
+		SimilarProductGraph graph = new SimilarProductGraph();
+		for (int i = 0; i < 1000; i++) {
+			graph.add("p" + i, Map.of("category:c" + (i % 10), 3f, "price:" + (i % 7), 2f));
+		}
+
+		Map<String, List<String>> neighbours = graph.topNeighbours(5, pool);
+
+		assertThat(neighbours).hasSize(1000);
+		assertThat(neighbours.get("p0")).hasSize(5).allSatisfy(id -> {
+			int other = Integer.parseInt(id.substring(1));
+			assertThat(other % 10).isZero();
+			assertThat(other % 7).isZero();
+		});
+	}
+}
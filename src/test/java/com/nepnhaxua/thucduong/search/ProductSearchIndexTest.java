@@ -0,0 +1,67 @@
+package com.nepnhaxua.thucduong.search;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTest {
+
+	private final ProductSearchIndex index = new ProductSearchIndex();
+
+	@Test
+	void matchesWithoutDiacritics() {
+		index.index(product("1", "Gạo lứt đỏ hữu cơ", List.of("gao-lut")));
+		index.index(product("2", "Trà gừng", List.of("tra")));
+
+		assertThat(index.search("gao lut", 0, 10).getIds()).containsExactly("1");
+		assertThat(index.search("GẠO LỨT", 0, 10).getIds()).containsExactly("1");
+	}
+
+	@Test
+	void completesLastTokenAndToleratesTypos() {
+		index.index(product("1", "Gạo lứt đỏ hữu cơ", List.of()));
+		index.index(product("2", "Bột ngũ cốc dinh dưỡng", List.of()));
+
+		assertThat(index.search("ngu co", 0, 10).getIds()).startsWith("2");
+		assertThat(index.search("dinh duongg", 0, 10).getIds()).containsExactly("2");
+	}
+
+	@Test
+	void nameOutranksTagsAndFullMatchesOutrankPartial() {
+		index.index(product("1", "Hạt điều rang", List.of("me")));
+		index.index(product("2", "Mè đen rang", List.of()));
+		index.index(product("3", "Dầu mè", List.of()));
+
+		assertThat(index.search("me den", 0, 10).getIds()).startsWith("2");
+		assertThat(index.search("me", 0, 10).getIds()).containsExactlyInAnyOrder("1", "2", "3");
+		assertThat(index.search("me", 0, 10).getIds().get(2)).isEqualTo("1");
+	}
+
+	@Test
+	void followsUpdatesAndRemovals() {
+		Product product = product("1", "Trà gừng", List.of());
+		index.index(product);
+		assertThat(index.search("gung", 0, 10).getTotal()).isEqualTo(1);
+
+		product.setName("Trà sen");
+		index.index(product);
+		assertThat(index.search("gung", 0, 10).getTotal()).isZero();
+		assertThat(index.search("sen", 0, 10).getIds()).containsExactly("1");
+
+		product.getFlags().setActive(false);
+		index.index(product);
+		assertThat(index.size()).isZero();
+	}
+
+	private static Product product(String id, String name, List<String> tags) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(name);
+		product.setTags(tags);
+		product.setFlags(new Product.Flags());
+		return product;
+	}
+}
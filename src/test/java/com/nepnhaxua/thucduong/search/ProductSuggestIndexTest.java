@@ -0,0 +1,33 @@
+package com.nepnhaxua.thucduong.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSuggestIndexTest {
+
+	@Test
+	void matchesWordPrefixesWithoutDiacriticsByScore() {
+		ProductSuggestIndex.Builder builder = ProductSuggestIndex.builder();
+		int red = builder.add(new ProductSuggestIndex.Suggestion("product", "Gạo lứt đỏ", "gao-lut-do"));
+		builder.phrase(red, "Gạo lứt đỏ", 1f);
+		int black = builder.add(new ProductSuggestIndex.Suggestion("product", "Gạo lứt đen", "gao-lut-den"));
+		builder.phrase(black, "Gạo lứt đen", 3f);
+		int tea = builder.add(new ProductSuggestIndex.Suggestion("product", "Trà gừng", "tra-gung"));
+		builder.phrase(tea, "Trà gừng", 2f).phrase(tea, "ginger", 2f);
+		ProductSuggestIndex index = builder.build();
+
+		assertThat(slugs(index.suggest("gạo l", 10))).containsExactly("gao-lut-den", "gao-lut-do");
+		assertThat(slugs(index.suggest("LUT D", 10))).containsExactly("gao-lut-den", "gao-lut-do");
+		assertThat(slugs(index.suggest("g", 10))).containsExactly("gao-lut-den", "tra-gung", "gao-lut-do");
+		assertThat(slugs(index.suggest("g", 1))).containsExactly("gao-lut-den");
+		assertThat(index.suggest("xyz", 10)).isEmpty();
+		assertThat(ProductSuggestIndex.EMPTY.suggest("g", 10)).isEmpty();
+	}
+
+	private static List<String> slugs(List<ProductSuggestIndex.Suggestion> suggestions) {
+		return suggestions.stream().map(ProductSuggestIndex.Suggestion::getSlug).toList();
+	}
+}
@@ -0,0 +1,56 @@
+package com.nepnhaxua.thucduong.search;
+
+import com.nepnhaxua.thucduong.entity.BodyHealthMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SymptomIndexTest {
+
+	private final SymptomIndex index = SymptomIndex.builder()
+			.add(bodyPart("stomach",
+					issue("Đầy hơi", "mild", "Đầy bụng", "Ợ hơi"),
+					issue("Viêm loét dạ dày", "severe", "Đau bụng", "Ợ chua", "Buồn nôn")))
+			.add(bodyPart("liver",
+					issue("Gan nhiễm mỡ", "moderate", "Mệt mỏi", "Buồn nôn", "Đau bụng")))
+			.build();
+
+	@Test
+	void ranksAcrossBodyPartsByMatchesThenSeverity() {
+		List<SymptomIndex.Match> matches = index.assess(List.of("dau bung", "BUỒN NÔN", "ợ hơi"), null, 10);
+
+		assertThat(matches).extracting(m -> m.getIssue().getName().get("vi"))
+				.containsExactly("Viêm loét dạ dày", "Gan nhiễm mỡ", "Đầy hơi");
+		assertThat(matches.get(0).getMatchedSymptoms()).isEqualTo(2);
+		assertThat(matches.get(0).getBodyPart()).isEqualTo("stomach");
+	}
+
+	@Test
+	void restrictsToOneBodyPart() {
+		assertThat(index.assess(List.of("buon non"), "liver", 10))
+				.extracting(SymptomIndex.Match::getBodyPart)
+				.containsExactly("liver");
+		assertThat(index.assess(List.of("buon non"), "heart", 10)).isEmpty();
+		assertThat(index.assess(List.of("ho"), null, 10)).isEmpty();
+	}
+
+	private static BodyHealthMap bodyPart(String name, BodyHealthMap.CommonIssue... issues) {
+		BodyHealthMap healthMap = new BodyHealthMap();
+		healthMap.setBodyPart(name);
+		BodyHealthMap.HealthInfo info = new BodyHealthMap.HealthInfo();
+		info.setCommonIssues(List.of(issues));
+		healthMap.setHealthInfo(info);
+		return healthMap;
+	}
+
+	private static BodyHealthMap.CommonIssue issue(String name, String severity, String... symptoms) {
+		return BodyHealthMap.CommonIssue.builder()
+				.name(Map.of("vi", name))
+				.severity(severity)
+				.symptoms(List.of(symptoms))
+				.build();
+	}
+}
@@ -0,0 +1,54 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.inventory.InventoryLedger;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ContentVersionServiceTest {
+
+	private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2025, 8, 10, 14, 0);
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	// No memo, so each lookup sees the stored revision
+	private final ContentVersionService versionService = new ContentVersionService(mongoTemplate,
+			mock(HealthMapSnapshotService.class), 100, 0);
+
+	@Test
+	void stockWriteChangesTheProductTag() {
+		when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Product.class)))
+				.thenReturn(UpdateResult.acknowledged(1, 1L, null));
+		when(mongoTemplate.findOne(any(Query.class), eq(Product.class)))
+				.thenReturn(product(1L), product(2L));
+
+		String before = versionService.productVersion("tra-gung").orElseThrow().etag("api");
+		new InventoryLedger(mongoTemplate).hold("p1", null, 1, false);
+		String after = versionService.productVersion("tra-gung").orElseThrow().etag("api");
+
+		ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+		verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Product.class));
+		assertThat(update.getValue().getUpdateObject().get("$inc", Document.class))
+				.containsEntry(Product.REVISION, 1);
+		assertThat(after).isNotEqualTo(before);
+		assertThat(versionService.productVersion("tra-gung").orElseThrow().isAheadOf(product(1L))).isTrue();
+	}
+
+	private static Product product(Long revision) {
+		Product product = Product.builder().id("p1").slug("tra-gung").build();
+		product.setUpdatedAt(UPDATED_AT);
+		product.setRevision(revision);
+		return product;
+	}
+}
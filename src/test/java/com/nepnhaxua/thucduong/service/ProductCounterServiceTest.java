@@ -0,0 +1,71 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.nepnhaxua.thucduong.entity.Product;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHyperLogLogCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ProductCounterServiceTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+	private final RedisHyperLogLogCommands hyperLogLog = mock(RedisHyperLogLogCommands.class);
+	private final BulkOperations bulk = mock(BulkOperations.class);
+	private final ProductCounterService counterService = new ProductCounterService(mongoTemplate, redisTemplate);
+
+	@BeforeEach
+	void setUp() {
+		RedisConnection connection = mock(RedisConnection.class);
+		when(connection.hyperLogLogCommands()).thenReturn(hyperLogLog);
+		when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+			invocation.getArgument(0, RedisCallback.class).doInRedis(connection);
+			return List.of(1L, 1L);
+		});
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulk);
+	}
+
+	@Test
+	void flushIncrementsCountersWithoutBumpingTheRevision() {
+		counterService.recordView("p1", "u:an");
+		counterService.recordAddedToCart("p1");
+
+		counterService.flush();
+
+		ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+		verify(bulk).updateOne(any(Query.class), update.capture());
+		Document set = ((AggregationUpdate) update.getValue()).toPipeline(null).get(0).get("$set", Document.class);
+		assertThat(set).containsKeys("analytics.views", "analytics.addedToCart", "analytics.uniqueViews")
+				.doesNotContainKey(Product.REVISION);
+	}
+
+	@Test
+	void failedFlushKeepsCountsAndVisitorsForTheNextOne() {
+		when(bulk.execute()).thenThrow(new IllegalStateException("down")).thenReturn(null);
+		counterService.recordView("p1", "u:an");
+
+		counterService.flush();
+		counterService.flush();
+
+		byte[] visitor = "u:an".getBytes(StandardCharsets.UTF_8);
+		verify(hyperLogLog, times(2)).pfAdd(any(byte[].class), aryEq(visitor));
+		verify(bulk, times(2)).updateOne(any(Query.class), any(UpdateDefinition.class));
+	}
+}
@@ -0,0 +1,85 @@
+package com.nepnhaxua.thucduong.service;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductCursorTest {
+
+	@Test
+	void roundTripsSortKeyAndId() {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		keys.put("createdAt", LocalDateTime.of(2025, 8, 10, 9, 30, 15));
+		keys.put("_id", new ObjectId("66b6f1a2c3d4e5f601234567"));
+
+		String token = ProductCursor.encode("createdAt", Sort.Direction.DESC, ScrollPosition.forward(keys));
+		KeysetScrollPosition decoded = ProductCursor.decode(token, "createdAt", Sort.Direction.DESC);
+
+		assertThat(decoded.getKeys()).containsExactlyEntriesOf(keys);
+	}
+
+	@Test
+	void blankCursorStartsFromTheBeginning() {
+		assertThat(ProductCursor.decode("", "pricing.regular", Sort.Direction.ASC).isInitial()).isTrue();
+	}
+
+	@Test
+	void rejectsCursorIssuedForAnotherSort() {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		keys.put("pricing.regular", 125000.0);
+		keys.put("_id", "p-1");
+		String token = ProductCursor.encode("pricing.regular", Sort.Direction.ASC, ScrollPosition.forward(keys));
+
+		assertThatThrownBy(() -> ProductCursor.decode(token, "ratings.average", Sort.Direction.ASC))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> ProductCursor.decode("not-a-cursor", "createdAt", Sort.Direction.DESC))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsUnsupportedSortField() {
+		assertThatThrownBy(() -> ProductCursor.sort("name", Sort.Direction.ASC))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void productsWithoutThePriceComeFirstAscending() {
+		ObjectId id = new ObjectId("66b6f1a2c3d4e5f601234567");
+		String token = ProductCursor.encode("pricing.regular", Sort.Direction.ASC,
+				ProductCursor.position("pricing.regular", null, id.toHexString()));
+		KeysetScrollPosition position = ProductCursor.decode(token, "pricing.regular", Sort.Direction.ASC);
+
+		assertThat(position.getKeys()).containsEntry("pricing.regular", null).containsEntry("_id", id);
+		// The rest of the unpriced products by _id, then every priced one
+		assertThat(ProductCursor.after("pricing.regular", Sort.Direction.ASC, position).getCriteriaObject())
+				.isEqualTo(new Document("$or", Arrays.asList(
+						new Document("pricing.regular", null).append("_id", new Document("$gt", id)),
+						new Document("pricing.regular", new Document("$ne", null)))));
+	}
+
+	@Test
+	void productsWithoutTheRatingComeLastDescending() {
+		ObjectId id = new ObjectId("66b6f1a2c3d4e5f601234567");
+		KeysetScrollPosition rated = ProductCursor.position("ratings.average", 4.5, id.toHexString());
+		KeysetScrollPosition unrated = ProductCursor.position("ratings.average", null, id.toHexString());
+
+		assertThat(ProductCursor.after("ratings.average", Sort.Direction.DESC, rated).getCriteriaObject())
+				.isEqualTo(new Document("$or", Arrays.asList(
+						new Document("ratings.average", new Document("$lt", 4.5)),
+						new Document("ratings.average", 4.5).append("_id", new Document("$lt", id)),
+						new Document("ratings.average", null))));
+		assertThat(ProductCursor.after("ratings.average", Sort.Direction.DESC, unrated).getCriteriaObject())
+				.isEqualTo(new Document("ratings.average", null).append("_id", new Document("$lt", id)));
+	}
+}
@@ -0,0 +1,73 @@
+package com.nepnhaxua.thucduong.service;
+
+import com.nepnhaxua.thucduong.analytics.BestsellerLeaderboard;
+import com.nepnhaxua.thucduong.api.CursorPage;
+import com.nepnhaxua.thucduong.entity.Product;
+import com.nepnhaxua.thucduong.event.ProductChangedEvent;
+import com.nepnhaxua.thucduong.repository.ProductRepository;
+import com.nepnhaxua.thucduong.repository.ProductSummary;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ProductServiceTest {
+
+	private final ProductRepository productRepository = mock(ProductRepository.class);
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+	private final ProductService productService = new ProductService(productRepository, mongoTemplate,
+			mock(BestsellerLeaderboard.class), eventPublisher);
+
+	@Test
+	void deactivatingPublishesAChangePerProduct() {
+		when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(
+				Product.builder().id("p1").slug("tra-gung").build(),
+				Product.builder().id("p2").slug("mat-ong").build()));
+
+		productService.updateActiveStatus(List.of("p1", "p2"), false);
+
+		verify(productRepository).updateActiveStatusBulk(List.of("p1", "p2"), false);
+		ArgumentCaptor<ProductChangedEvent> events = ArgumentCaptor.forClass(ProductChangedEvent.class);
+		verify(eventPublisher, times(2)).publishEvent(events.capture());
+		assertThat(events.getAllValues())
+				.extracting(ProductChangedEvent::getProductId, ProductChangedEvent::getSlug, ProductChangedEvent::isDeleted)
+				.containsExactly(tuple("p1", "tra-gung", false), tuple("p2", "mat-ong", false));
+	}
+
+	@Test
+	void nextCursorKeepsAMissingPrice() {
+		ReflectionTestUtils.setField(productService, "maxPageSize", 100);
+		when(mongoTemplate.find(any(Query.class), eq(ProductSummary.class), eq("products")))
+				.thenReturn(List.of(summary("p1", 90_000.0), summary("p2", null), summary("p3", null)));
+
+		CursorPage<ProductSummary> page = productService.scrollActive(null, "pricing.regular", Sort.Direction.DESC,
+				null, 2);
+
+		assertThat(page.getContent()).extracting(ProductSummary::getId).containsExactly("p1", "p2");
+		assertThat(page.isHasNext()).isTrue();
+		assertThat(ProductCursor.decode(page.getNextCursor(), "pricing.regular", Sort.Direction.DESC).getKeys())
+				.containsEntry("pricing.regular", null)
+				.containsEntry("_id", "p2");
+	}
+
+	private static ProductSummary summary(String id, Double price) {
+		ProductSummary summary = new ProductSummary();
+		summary.setId(id);
+		Product.Pricing pricing = new Product.Pricing();
+		pricing.setRegular(price);
+		summary.setPricing(pricing);
+		return summary;
+	}
+}